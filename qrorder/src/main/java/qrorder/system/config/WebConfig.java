@@ -6,6 +6,7 @@ import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import qrorder.system.config.tenant.TenantInterceptor;
+import qrorder.system.service.TableSessionService;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
@@ -54,6 +55,7 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedOriginPatterns("*")
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
+                .exposedHeaders(TableSessionService.HEADER, "X-Menu-Version") // [MỚI] Cho phép frontend đọc token phiên bàn, phiên bản thực đơn
                 .allowCredentials(true); // Cho phép gửi token/cookie xác thực
     }
 }
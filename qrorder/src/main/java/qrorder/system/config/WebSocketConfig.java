@@ -1,5 +1,6 @@
 package qrorder.system.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
@@ -10,11 +11,51 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 @EnableWebSocketMessageBroker // Kích hoạt WebSocket
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    // [MỚI] "simple" = broker trong bộ nhớ (một node), "relay" = chuyển /topic qua broker STOMP ngoài
+    // (RabbitMQ, ActiveMQ Artemis...) để client nối vào node nào cũng nhận được sự kiện của mọi node
+    @Value("${app.websocket.broker:simple}")
+    private String brokerMode;
+
+    @Value("${app.websocket.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${app.websocket.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${app.websocket.relay.client-login:guest}")
+    private String relayClientLogin;
+
+    @Value("${app.websocket.relay.client-passcode:guest}")
+    private String relayClientPasscode;
+
+    @Value("${app.websocket.relay.system-login:guest}")
+    private String relaySystemLogin;
+
+    @Value("${app.websocket.relay.system-passcode:guest}")
+    private String relaySystemPasscode;
+
+    public static boolean isRelay(String brokerMode) {
+        return "relay".equalsIgnoreCase(brokerMode);
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
         // Tiền tố cho các "chủ đề" (topics) mà server sẽ gửi (broadcast)
         // Ví dụ: /topic/kitchen/1, /topic/table/12
-        registry.enableSimpleBroker("/topic");
+        if (isRelay(brokerMode)) {
+            registry.enableStompBrokerRelay("/topic")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayClientLogin)
+                    .setClientPasscode(relayClientPasscode)
+                    .setSystemLogin(relaySystemLogin)
+                    .setSystemPasscode(relaySystemPasscode);
+        } else {
+            registry.enableSimpleBroker("/topic");
+        }
+
+        // [MỚI] Giữ đúng thứ tự gửi cho từng client (sự kiện đơn hàng mang seq tăng dần)
+        registry.setPreservePublishOrder(true);
 
         // Tiền tố cho các "điểm đến" (destinations)
         // mà client gửi tin nhắn lên (ví dụ: /app/call-staff)
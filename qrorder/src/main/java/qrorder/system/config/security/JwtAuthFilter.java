@@ -1,20 +1,25 @@
 package qrorder.system.config.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import qrorder.system.config.tenant.TenantContext;
 import qrorder.system.service.JwtService;
 
 import java.io.IOException;
+import java.util.Collections;
 
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
@@ -23,6 +28,12 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     private JwtService jwtService;
     @Autowired
     private UserDetailsService userDetailsService;
+    @Autowired
+    private TokenVersionCache tokenVersionCache;
+
+    // [MỚI] true: dựng StoreUserDetails trực tiếp từ claims (không truy vấn app_user mỗi request)
+    @Value("${app.jwt.stateless:false}")
+    private boolean statelessAuth;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -30,7 +41,6 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
-        final String username;
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             filterChain.doFilter(request, response);
@@ -38,11 +48,12 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         }
 
         jwt = authHeader.substring(7); // Bỏ "Bearer "
-        username = jwtService.extractUsername(jwt);
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-            if (jwtService.isTokenValid(jwt, userDetails)) {
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            // Parse + kiểm tra chữ ký đúng MỘT lần cho mỗi request (có cache)
+            Claims claims = jwtService.verify(jwt);
+            UserDetails userDetails = statelessAuth ? loadFromClaims(claims) : loadFromDatabase(claims);
+            if (userDetails != null) {
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                         userDetails,
                         null, // Không cần credentials
@@ -54,4 +65,50 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         }
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Cách cũ: tải user từ DB rồi đối chiếu với token.
+     */
+    private UserDetails loadFromDatabase(Claims claims) {
+        String username = claims.getSubject();
+        if (username == null) {
+            return null;
+        }
+        UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+        return jwtService.isTokenValid(claims, userDetails) ? userDetails : null;
+    }
+
+    /**
+     * Chế độ stateless: chữ ký và hạn dùng đã được kiểm tra trong JwtService.verify,
+     * chỉ cần đối chiếu chi nhánh và phiên bản token (từ TokenVersionCache).
+     * Token cũ (chưa có uid/ver) sẽ quay về cách tải từ DB.
+     */
+    private UserDetails loadFromClaims(Claims claims) {
+        Long userId = claims.get("uid", Long.class);
+        Integer tokenVersion = claims.get("ver", Integer.class);
+        Long storeId = claims.get("storeId", Long.class);
+        String role = claims.get("role", String.class);
+        if (userId == null || tokenVersion == null || storeId == null || role == null) {
+            return loadFromDatabase(claims);
+        }
+
+        // Bảo mật: token phải thuộc đúng chi nhánh của request (TenantFilter đã set)
+        if (!storeId.equals(TenantContext.getTenantId())) {
+            return null;
+        }
+
+        // User đã bị xóa hoặc đổi role/mật khẩu -> token cũ bị thu hồi
+        if (!tokenVersionCache.isCurrent(userId, tokenVersion)) {
+            return null;
+        }
+
+        return new StoreUserDetails(
+                claims.getSubject(),
+                "", // Không cần mật khẩu khi xác thực bằng JWT
+                Collections.singletonList(new SimpleGrantedAuthority(role)),
+                storeId,
+                userId,
+                tokenVersion
+        );
+    }
 }
@@ -14,20 +14,38 @@ public class StoreUserDetails implements UserDetails {
     private final String username;
     private final String password;
     private final Long storeId;
+    private final Long userId;
+    private final int tokenVersion;
     private final Collection<? extends GrantedAuthority> authorities;
     // Thêm các trường khác nếu cần...
 
     public StoreUserDetails(String username, String password, Collection<? extends GrantedAuthority> authorities, Long storeId) {
+        this(username, password, authorities, storeId, null, 0);
+    }
+
+    public StoreUserDetails(String username, String password, Collection<? extends GrantedAuthority> authorities,
+                            Long storeId, Long userId, int tokenVersion) {
         this.username = username;
         this.password = password;
         this.authorities = authorities;
         this.storeId = storeId;
+        this.userId = userId;
+        this.tokenVersion = tokenVersion;
     }
     // Getter cho storeId để các service khác có thể sử dụng
     public Long getStoreId() {
         return storeId;
     }
 
+    // [MỚI] ID và phiên bản token của user (được đưa vào JWT để xác thực stateless)
+    public Long getUserId() {
+        return userId;
+    }
+
+    public int getTokenVersion() {
+        return tokenVersion;
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
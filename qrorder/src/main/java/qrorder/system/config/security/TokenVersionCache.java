@@ -0,0 +1,79 @@
+package qrorder.system.config.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import qrorder.system.dto.response.CacheStatsResponse;
+import qrorder.system.entity.AppUser;
+import qrorder.system.repository.AppUserRepository;
+import qrorder.system.util.ExpiringCache;
+
+/**
+ * Bộ nhớ đệm nhỏ: userId -> tokenVersion hiện tại.
+ *
+ * Dùng cho chế độ xác thực stateless (JwtAuthFilter dựng StoreUserDetails từ claims):
+ * JWT mang "uid" và "ver"; token chỉ hợp lệ khi "ver" khớp phiên bản hiện tại của user.
+ * Khi Admin xóa user hoặc đổi role/mật khẩu, AppUserService cập nhật cache
+ * nên token cũ bị thu hồi ngay trên node này (các node khác chậm tối đa TTL).
+ *
+ * Giá trị trong cache không bao giờ giảm: lần đọc DB bắt đầu trước khi thay đổi commit có thể trả về
+ * sau khi afterCommit đã ghi phiên bản mới; gộp bằng max nên giá trị cũ đó không ghi đè được.
+ */
+@Component
+public class TokenVersionCache {
+
+    // Đánh dấu user đã bị xóa (lớn hơn mọi phiên bản: không bị lần đọc DB cũ ghi đè)
+    private static final int REVOKED = Integer.MAX_VALUE;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    private final ExpiringCache<Long, Integer> versions = new ExpiringCache<>(10_000, 5 * 60 * 1000L);
+
+    /**
+     * Kiểm tra token có đúng phiên bản hiện tại của user hay không
+     * (chỉ truy vấn DB khi user chưa có trong cache hoặc đã hết hạn).
+     */
+    public boolean isCurrent(Long userId, int tokenVersion) {
+        Integer current = versions.get(userId);
+        if (current == null) {
+            int loaded = appUserRepository.findById(userId)
+                    .map(AppUser::getTokenVersion)
+                    .orElse(REVOKED);
+            current = versions.merge(userId, loaded, Math::max);
+        }
+        return current != REVOKED && current == tokenVersion;
+    }
+
+    /**
+     * Ghi phiên bản mới sau khi transaction commit (đổi role, đổi mật khẩu...).
+     */
+    public void updateAfterCommit(Long userId, int newVersion) {
+        runAfterCommit(() -> versions.merge(userId, newVersion, Math::max));
+    }
+
+    /**
+     * Thu hồi mọi token của user (sau khi xóa user).
+     */
+    public void revokeAfterCommit(Long userId) {
+        runAfterCommit(() -> versions.put(userId, REVOKED));
+    }
+
+    public CacheStatsResponse getStats() {
+        return new CacheStatsResponse("token-version", versions.hitCount(), versions.missCount(), versions.size());
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
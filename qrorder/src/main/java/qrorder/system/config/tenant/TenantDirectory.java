@@ -0,0 +1,126 @@
+package qrorder.system.config.tenant;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import qrorder.system.dto.StoreSettingsDTO;
+import qrorder.system.dto.response.CacheStatsResponse;
+import qrorder.system.entity.Store;
+import qrorder.system.repository.StoreRepository;
+import qrorder.system.util.ExpiringCache;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Danh bạ chi nhánh (tenant) dùng chung cho toàn bộ tiến trình.
+ *
+ * Lưu trong bộ nhớ: subdomain -> storeId và storeId -> cấu hình (StoreSettingsDTO),
+ * để TenantFilter và StoreSettingsController không phải truy vấn bảng store ở mỗi request.
+ * Dữ liệu được nạp lười (lần đầu gặp subdomain) và được làm mới khi
+ * tạo chi nhánh mới hoặc khi Admin cập nhật cấu hình.
+ *
+ * Việc làm mới chỉ xảy ra trên node xử lý request đó; khi chạy nhiều node (broker relay) các node khác
+ * đọc lại DB sau khi hết TTL (cấu hình: SETTINGS_TTL_MILLIS, subdomain: SUBDOMAIN_TTL_MILLIS).
+ * Subdomain không tồn tại được ghi nhớ trong UNKNOWN_TTL_MILLIS: request dồn dập tới subdomain sai
+ * (gõ nhầm, bot dò) không xuống DB mỗi lần, chi nhánh vừa tạo trên node khác vẫn dùng được sau vài giây.
+ */
+@Component
+public class TenantDirectory {
+
+    @Autowired
+    private StoreRepository storeRepository;
+
+    private static final long SUBDOMAIN_TTL_MILLIS = 10 * 60 * 1000L;
+    private static final long SETTINGS_TTL_MILLIS = 60_000;
+    private static final long UNKNOWN_TTL_MILLIS = 10_000;
+
+    private final ExpiringCache<String, Long> storeIdsBySubdomain = new ExpiringCache<>(10_000, SUBDOMAIN_TTL_MILLIS);
+    private final ExpiringCache<Long, StoreSettingsDTO> settingsByStoreId = new ExpiringCache<>(10_000, SETTINGS_TTL_MILLIS);
+    private final ExpiringCache<String, Boolean> unknownSubdomains = new ExpiringCache<>(10_000, UNKNOWN_TTL_MILLIS);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Tìm storeId theo subdomain. Chỉ truy vấn DB khi subdomain chưa có (hoặc hết hạn) trong bộ nhớ.
+     */
+    public Optional<Long> findStoreId(String subdomain) {
+        Long storeId = storeIdsBySubdomain.get(subdomain);
+        if (storeId != null) {
+            hits.increment();
+            return Optional.of(storeId);
+        }
+        if (unknownSubdomains.get(subdomain) != null) {
+            hits.increment();
+            return Optional.empty();
+        }
+
+        misses.increment();
+        Optional<Store> store = storeRepository.findBySubdomain(subdomain);
+        if (store.isPresent()) {
+            refresh(store.get());
+        } else {
+            unknownSubdomains.put(subdomain, Boolean.TRUE);
+        }
+        return store.map(Store::getId);
+    }
+
+    /**
+     * Lấy cấu hình ngân hàng/QR của chi nhánh (đọc từ bộ nhớ nếu đã có).
+     */
+    public StoreSettingsDTO getSettings(Long storeId) {
+        StoreSettingsDTO settings = settingsByStoreId.get(storeId);
+        if (settings != null) {
+            hits.increment();
+            return settings;
+        }
+
+        misses.increment();
+        Store store = storeRepository.findById(storeId)
+                .orElseThrow(() -> new RuntimeException("Store not found"));
+        refresh(store);
+        return toSettings(store);
+    }
+
+    /**
+     * Ghi đè thông tin của một chi nhánh vào danh bạ.
+     */
+    public void refresh(Store store) {
+        unknownSubdomains.invalidate(store.getSubdomain());
+        storeIdsBySubdomain.put(store.getSubdomain(), store.getId());
+        settingsByStoreId.put(store.getId(), toSettings(store));
+    }
+
+    private StoreSettingsDTO toSettings(Store store) {
+        return new StoreSettingsDTO(
+                store.getBankId(),
+                store.getAccountNo(),
+                store.getAccountName(),
+                store.getQrTemplate()
+        );
+    }
+
+    /**
+     * Làm mới danh bạ sau khi transaction hiện tại commit thành công
+     * (tránh lưu một chi nhánh "ma" nếu transaction bị rollback).
+     * Nếu không có transaction, làm mới ngay.
+     */
+    public void refreshAfterCommit(Store store) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh(store);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refresh(store);
+            }
+        });
+    }
+
+    public CacheStatsResponse getStats() {
+        return new CacheStatsResponse("tenant-directory", hits.sum(), misses.sum(), storeIdsBySubdomain.size());
+    }
+}
@@ -7,8 +7,6 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
-import qrorder.system.entity.Store;
-import qrorder.system.repository.StoreRepository;
 
 import java.io.IOException;
 
@@ -23,7 +21,7 @@ import java.io.IOException;
 public class TenantFilter extends OncePerRequestFilter {
 
     @Autowired
-    private StoreRepository storeRepository;
+    private TenantDirectory tenantDirectory;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -33,12 +31,12 @@ public class TenantFilter extends OncePerRequestFilter {
             String serverName = request.getServerName(); // vd: "192.168.1.25" hoặc "gogi.localhost"
             String subdomain = extractSubdomain(serverName);
 
-            // Tìm Store trong DB
-            Store store = storeRepository.findBySubdomain(subdomain)
+            // Tìm storeId trong danh bạ (chỉ xuống DB khi chưa có trong bộ nhớ)
+            Long storeId = tenantDirectory.findStoreId(subdomain)
                     .orElseThrow(() -> new RuntimeException("Chi nhánh không hợp lệ: " + subdomain));
 
             // Lưu storeId vào ThreadLocal
-            TenantContext.setTenantId(store.getId());
+            TenantContext.setTenantId(storeId);
 
             // Tiếp tục chuỗi filter
             filterChain.doFilter(request, response);
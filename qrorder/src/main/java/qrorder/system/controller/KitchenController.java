@@ -8,6 +8,7 @@ import org.springframework.web.bind.annotation.*;
 import qrorder.system.config.security.StoreUserDetails;
 import qrorder.system.dto.request.UpdateOrderStatusRequest;
 import qrorder.system.dto.response.OrderResponse;
+import qrorder.system.dto.response.OrderSnapshotResponse;
 import qrorder.system.service.OrderService;
 
 import java.util.List;
@@ -48,4 +49,15 @@ public class KitchenController {
         List<OrderResponse> activeOrders = orderService.getKitchenActiveOrders(userDetails);
         return ResponseEntity.ok(activeOrders);
     }
+
+    /**
+     * [MỚI] API đồng bộ lại WebSocket: đơn hàng đang hoạt động + seq của /topic/kitchen/{storeId}
+     * GET /api/kitchen/orders/snapshot
+     */
+    @GetMapping("/orders/snapshot")
+    public ResponseEntity<OrderSnapshotResponse> getSnapshot(
+            @AuthenticationPrincipal StoreUserDetails userDetails) {
+
+        return ResponseEntity.ok(orderService.getKitchenSnapshot(userDetails));
+    }
 }
\ No newline at end of file
@@ -1,49 +1,69 @@
 package qrorder.system.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import qrorder.system.config.tenant.TenantContext;
-import qrorder.system.dto.response.CategoryResponse;
-import qrorder.system.dto.response.MenuItemResponse;
-import qrorder.system.service.MenuService;
-
-import java.util.List;
+import qrorder.system.service.MenuCatalog;
 
 @RestController
 @RequestMapping("/api/public") // API công khai, không cần /admin
 public class PublicMenuController {
 
     @Autowired
-    private MenuService menuService;
+    private MenuCatalog menuCatalog; // [MỚI] Thực đơn trong bộ nhớ (ảnh chụp + ETag), không truy vấn DB mỗi lần quét QR
 
     // API lấy tất cả Category của chi nhánh hiện tại
+    // [MỚI] Gửi kèm If-None-Match = ETag lần trước -> 304 nếu thực đơn chưa đổi
     @GetMapping("/categories")
-    public ResponseEntity<List<CategoryResponse>> getPublicCategories() {
+    public ResponseEntity<byte[]> getPublicCategories(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest request) {
         // Tự động lấy storeId mà Interceptor đã lưu
-        Long storeId = TenantContext.getTenantId();
-
-        List<CategoryResponse> categories = menuService.getCategoriesByStore(storeId);
-        return ResponseEntity.ok(categories);
+        MenuCatalog.Snapshot menu = menuCatalog.get(TenantContext.getTenantId());
+        return write(menu, menu.categoriesPayload(), acceptEncoding, request);
     }
 
     // API lấy tất cả MenuItem của chi nhánh hiện tại
     // (Có thể lọc theo category)
     @GetMapping("/menu-items")
-    public ResponseEntity<List<MenuItemResponse>> getPublicMenuItems(
-            @RequestParam(required = false) Long categoryId) {
+    public ResponseEntity<byte[]> getPublicMenuItems(
+            @RequestParam(required = false) Long categoryId,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest request) {
 
-        Long storeId = TenantContext.getTenantId();
+        MenuCatalog.Snapshot menu = menuCatalog.get(TenantContext.getTenantId());
+        MenuCatalog.Payload payload = categoryId != null ? menu.itemsPayloadOf(categoryId) : menu.itemsPayload();
+        return write(menu, payload, acceptEncoding, request);
+    }
+
+    // [MỚI] Ghi thẳng JSON đã serialize sẵn (bản gzip nếu client chấp nhận), không qua Jackson
+    // no-cache: trình duyệt được giữ bản cũ nhưng phải hỏi lại (kèm ETag) mỗi lần dùng
+    private static ResponseEntity<byte[]> write(MenuCatalog.Snapshot menu, MenuCatalog.Payload payload,
+                                                String acceptEncoding, WebRequest request) {
+        boolean gzip = MenuCatalog.Payload.acceptsGzip(acceptEncoding);
+        String etag = menu.etag(gzip);
+        if (request.checkNotModified(etag)) {
+            return null; // 304, không có body
+        }
 
-        List<MenuItemResponse> items;
-        if (categoryId != null) {
-            items = menuService.getMenuItemsByCategory(categoryId, storeId);
-        } else {
-            items = menuService.getMenuItemsByStore(storeId);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .header("X-Menu-Version", String.valueOf(menu.version()));
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(payload.gzip());
         }
-        return ResponseEntity.ok(items);
+        return response.body(payload.json());
     }
-}
\ No newline at end of file
+}
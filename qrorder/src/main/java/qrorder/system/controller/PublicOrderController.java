@@ -1,14 +1,23 @@
 package qrorder.system.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import qrorder.system.config.tenant.TenantContext;
 import qrorder.system.dto.request.OrderPlacementRequest;
 import qrorder.system.dto.response.OrderResponse;
+import qrorder.system.dto.response.OrderSnapshotResponse;
 import qrorder.system.dto.response.TableResponse;
-import qrorder.system.entity.TableInfo;
-import qrorder.system.repository.TableRepository;
+import qrorder.system.dto.projection.TableRef;
+import qrorder.system.service.MenuCatalog;
+import qrorder.system.service.OrderIdempotencyStore;
 import qrorder.system.service.OrderService;
+import qrorder.system.service.TableBootstrapService;
+import qrorder.system.service.TableDirectory;
+import qrorder.system.service.TableSessionService;
 
 import java.util.List;
 
@@ -20,15 +29,29 @@ public class PublicOrderController {
     private OrderService orderService;
 
     @Autowired
-    private TableRepository tableRepository;
+    private OrderIdempotencyStore orderIdempotencyStore;
+
+    @Autowired
+    private TableDirectory tableDirectory;
+
+    @Autowired
+    private TableSessionService tableSessionService;
+
+    @Autowired
+    private TableBootstrapService tableBootstrapService;
 
     /**
      * API Khách hàng gửi đơn hàng
      * POST /api/public/order
+     * [MỚI] Gửi lại cùng idempotencyKey -> trả về đơn đã đặt, không tạo đơn trùng
      */
     @PostMapping("/order")
-    public ResponseEntity<OrderResponse> placeOrder(@RequestBody OrderPlacementRequest request) {
-        OrderResponse response = orderService.placeOrder(request);
+    public ResponseEntity<OrderResponse> placeOrder(
+            @RequestBody OrderPlacementRequest request,
+            @RequestHeader(value = TableSessionService.HEADER, required = false) String tableSession) {
+        OrderResponse response = orderIdempotencyStore.placeOnce(
+                TenantContext.getTenantId(), request.tableAccessKey(), request.idempotencyKey(),
+                () -> orderService.placeOrder(request, tableSession));
         return ResponseEntity.ok(response);
     }
 
@@ -49,24 +72,63 @@ public class PublicOrderController {
      */
     @GetMapping("/tables/{tableAccessKey}/orders")
     public ResponseEntity<List<OrderResponse>> getActiveOrdersForTable(
-            @PathVariable String tableAccessKey) {
+            @PathVariable String tableAccessKey,
+            @RequestHeader(value = TableSessionService.HEADER, required = false) String tableSession) {
 
-        List<OrderResponse> orders = orderService.getPublicActiveOrdersForTable(tableAccessKey);
+        List<OrderResponse> orders = orderService.getPublicActiveOrdersForTable(tableAccessKey, tableSession);
         return ResponseEntity.ok(orders);
     }
+
+    /**
+     * [MỚI] API đồng bộ lại WebSocket: đơn hàng đang hoạt động của bàn + seq của /topic/table/{tableId}
+     * GET /api/public/tables/{accessKey}/orders/snapshot
+     */
+    @GetMapping("/tables/{tableAccessKey}/orders/snapshot")
+    public ResponseEntity<OrderSnapshotResponse> getTableSnapshot(
+            @PathVariable String tableAccessKey,
+            @RequestHeader(value = TableSessionService.HEADER, required = false) String tableSession) {
+        return ResponseEntity.ok(orderService.getPublicTableSnapshot(tableAccessKey, tableSession));
+    }
     /**
      * [MỚI] API lấy thông tin bàn từ Access Key
      * (Để frontend biết ID bàn mà subscribe WebSocket)
      * GET /api/public/tables/{accessKey}/info
+     * [MỚI] Kèm header X-Table-Session: token phiên bàn, client gửi lại ở các API khách hàng sau đó
      */
     @GetMapping("/tables/{accessKey}/info")
-    public ResponseEntity<TableResponse> getTableInfo(@PathVariable String accessKey) {
-        TableInfo table = tableRepository.findByAccessKey(accessKey)
-                .orElseThrow(() -> new RuntimeException("Mã bàn không hợp lệ"));
+    public ResponseEntity<TableResponse> getTableInfo(
+            @PathVariable String accessKey,
+            @RequestHeader(value = TableSessionService.HEADER, required = false) String tableSession) {
+        TableRef table = tableDirectory.resolve(accessKey, TenantContext.getTenantId(), tableSession);
 
         // Trả về thông tin bàn (bao gồm ID)
-        return ResponseEntity.ok(new TableResponse(
-                table.getId(), table.getName(), table.getCapacity(), table.getStore().getId(), table.getAccessKey()
-        ));
+        return ResponseEntity.ok()
+                .header(TableSessionService.HEADER, tableSessionService.issue(table))
+                .body(new TableResponse(table.id(), table.name(), table.capacity(), table.storeId(), table.accessKey()));
+    }
+
+    /**
+     * [MỚI] API khách vừa quét QR: thông tin bàn + thực đơn + đơn hàng đang hoạt động (kèm seq) trong MỘT request
+     * GET /api/public/tables/{accessKey}/bootstrap
+     * Kèm header X-Table-Session (như /info) và X-Menu-Version; nén gzip nếu client chấp nhận
+     */
+    @GetMapping("/tables/{accessKey}/bootstrap")
+    public ResponseEntity<byte[]> getTableBootstrap(
+            @PathVariable String accessKey,
+            @RequestHeader(value = TableSessionService.HEADER, required = false) String tableSession,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        TableBootstrapService.Bootstrap bootstrap = tableBootstrapService.bootstrap(accessKey, tableSession);
+
+        // Có đơn hàng của bàn -> không cho trình duyệt/proxy lưu lại
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noStore())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .header(TableSessionService.HEADER, bootstrap.tableSession())
+                .header("X-Menu-Version", String.valueOf(bootstrap.menuVersion()));
+        if (MenuCatalog.Payload.acceptsGzip(acceptEncoding)) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(MenuCatalog.Payload.gzip(bootstrap.json()));
+        }
+        return response.body(bootstrap.json());
     }
-}
\ No newline at end of file
+}
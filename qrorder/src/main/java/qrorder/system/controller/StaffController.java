@@ -1,18 +1,25 @@
 package qrorder.system.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import qrorder.system.config.security.StoreUserDetails;
 import qrorder.system.dto.TableStatusDTO;
+import qrorder.system.dto.request.OrderHistoryQuery;
 import qrorder.system.dto.request.OrderItemRequest;
 import qrorder.system.dto.request.SurchargeRequest;
+import qrorder.system.dto.response.OrderPageResponse;
 import qrorder.system.dto.response.OrderResponse;
+import qrorder.system.dto.response.OrderSnapshotResponse;
+import qrorder.system.dto.response.TableMapSnapshotResponse;
+import qrorder.system.enums.OrderStatus;
 import qrorder.system.service.OrderService;
 import qrorder.system.service.TableService;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -53,9 +60,19 @@ public class StaffController {
         return ResponseEntity.ok(tableStatuses);
     }
 
+    /**
+     * [MỚI] API đồng bộ lại WebSocket: Sơ đồ bàn + seq của /topic/staff/{storeId}/tables
+     * GET /api/staff/tables/snapshot
+     */
+    @GetMapping("/tables/snapshot")
+    public ResponseEntity<TableMapSnapshotResponse> getTableMapSnapshot(
+            @AuthenticationPrincipal StoreUserDetails userDetails) {
+        return ResponseEntity.ok(tableService.getTableMapSnapshot(userDetails));
+    }
+
 
     /**
-     * API cho Nhân viên xem tất cả đơn hàng của một bàn cụ thể
+     * API cho Nhân viên xem các đơn hàng chưa thanh toán của một bàn cụ thể
      * GET /api/staff/tables/{tableId}/orders
      */
     @GetMapping("/tables/{tableId}/orders")
@@ -67,6 +84,53 @@ public class StaffController {
         return ResponseEntity.ok(orders);
     }
 
+    /**
+     * [MỚI] API lịch sử đơn hàng của một bàn (mới nhất trước)
+     * GET /api/staff/tables/{tableId}/orders/history?status=PAID&from=2025-01-01T00:00:00&to=...&cursor=...&limit=20
+     */
+    @GetMapping("/tables/{tableId}/orders/history")
+    public ResponseEntity<OrderPageResponse> getTableOrderHistory(
+            @PathVariable Long tableId,
+            @RequestParam(required = false) List<OrderStatus> status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @AuthenticationPrincipal StoreUserDetails userDetails) {
+
+        OrderHistoryQuery query = new OrderHistoryQuery(status, from, to, cursor, limit);
+        return ResponseEntity.ok(orderService.getTableOrderHistory(tableId, query, userDetails));
+    }
+
+    /**
+     * [MỚI] API lịch sử đơn hàng của cả chi nhánh (mới nhất trước)
+     * GET /api/staff/orders/history?status=PAID&from=...&to=...&cursor=...&limit=20
+     */
+    @GetMapping("/orders/history")
+    public ResponseEntity<OrderPageResponse> getStoreOrderHistory(
+            @RequestParam(required = false) List<OrderStatus> status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @AuthenticationPrincipal StoreUserDetails userDetails) {
+
+        OrderHistoryQuery query = new OrderHistoryQuery(status, from, to, cursor, limit);
+        return ResponseEntity.ok(orderService.getStoreOrderHistory(query, userDetails));
+    }
+
+    /**
+     * [MỚI] API đồng bộ lại WebSocket: tất cả đơn hàng của bàn + seq của /topic/table/{tableId}
+     * GET /api/staff/tables/{tableId}/orders/snapshot
+     */
+    @GetMapping("/tables/{tableId}/orders/snapshot")
+    public ResponseEntity<OrderSnapshotResponse> getTableSnapshot(
+            @PathVariable Long tableId,
+            @AuthenticationPrincipal StoreUserDetails userDetails) {
+
+        return ResponseEntity.ok(orderService.getTableSnapshot(tableId, userDetails));
+    }
+
     /**
      * [MỚI] API cho Nhân viên HỦY một món (OrderItem)
      * (Chỉ áp dụng cho các món đang PENDING)
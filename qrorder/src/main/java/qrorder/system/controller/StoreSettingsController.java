@@ -6,6 +6,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import qrorder.system.config.security.StoreUserDetails;
+import qrorder.system.config.tenant.TenantDirectory;
 import qrorder.system.dto.StoreSettingsDTO;
 import qrorder.system.entity.Store;
 import qrorder.system.repository.StoreRepository;
@@ -17,6 +18,9 @@ public class StoreSettingsController {
     @Autowired
     private StoreRepository storeRepository;
 
+    @Autowired
+    private TenantDirectory tenantDirectory;
+
     // Admin cập nhật cấu hình
     @PutMapping("/admin/store/settings")
     @PreAuthorize("hasRole('ADMIN')")
@@ -32,7 +36,8 @@ public class StoreSettingsController {
         store.setAccountName(request.accountName());
         store.setQrTemplate(request.qrTemplate());
 
-        storeRepository.save(store);
+        Store savedStore = storeRepository.save(store);
+        tenantDirectory.refresh(savedStore);
         return ResponseEntity.ok().build();
     }
 
@@ -42,14 +47,7 @@ public class StoreSettingsController {
     public ResponseEntity<StoreSettingsDTO> getSettings(
             @AuthenticationPrincipal StoreUserDetails userDetails) {
 
-        Store store = storeRepository.findById(userDetails.getStoreId())
-                .orElseThrow(() -> new RuntimeException("Store not found"));
-
-        return ResponseEntity.ok(new StoreSettingsDTO(
-                store.getBankId(),
-                store.getAccountNo(),
-                store.getAccountName(),
-                store.getQrTemplate()
-        ));
+        // Đọc từ danh bạ trong bộ nhớ thay vì truy vấn bảng store mỗi lần
+        return ResponseEntity.ok(tenantDirectory.getSettings(userDetails.getStoreId()));
     }
 }
\ No newline at end of file
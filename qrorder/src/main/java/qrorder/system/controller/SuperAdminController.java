@@ -4,9 +4,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import qrorder.system.config.security.TokenVersionCache;
+import qrorder.system.config.tenant.TenantDirectory;
 import qrorder.system.dto.request.StoreCreateRequest;
+import qrorder.system.dto.response.CacheStatsResponse;
+import qrorder.system.dto.response.SequencerStatsResponse;
+import qrorder.system.dto.response.StaffCallStatsResponse;
 import qrorder.system.dto.response.StoreResponse;
+import qrorder.system.service.JwtService;
+import qrorder.system.service.OrderIdempotencyStore;
+import qrorder.system.service.OrderMutationSequencer;
+import qrorder.system.service.StaffCallDispatcher;
 import qrorder.system.service.StoreService;
+import qrorder.system.service.TableDirectory;
 
 import java.util.List;
 
@@ -19,6 +29,27 @@ public class SuperAdminController {
     @Autowired
     private StoreService storeService;
 
+    @Autowired
+    private TenantDirectory tenantDirectory;
+
+    @Autowired
+    private TokenVersionCache tokenVersionCache;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private OrderIdempotencyStore orderIdempotencyStore;
+
+    @Autowired
+    private OrderMutationSequencer orderMutationSequencer;
+
+    @Autowired
+    private TableDirectory tableDirectory;
+
+    @Autowired
+    private StaffCallDispatcher staffCallDispatcher;
+
     @GetMapping("/stores")
     public ResponseEntity<List<StoreResponse>> getAllStores() {
         return ResponseEntity.ok(storeService.getAllStores());
@@ -29,4 +60,37 @@ public class SuperAdminController {
         StoreResponse response = storeService.createTenant(request);
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * [MỚI] Thống kê hit/miss của các bộ nhớ đệm trong tiến trình
+     * GET /api/super-admin/cache-stats
+     */
+    @GetMapping("/cache-stats")
+    public ResponseEntity<List<CacheStatsResponse>> getCacheStats() {
+        return ResponseEntity.ok(List.of(
+                tenantDirectory.getStats(),
+                tokenVersionCache.getStats(),
+                jwtService.getStats(),
+                orderIdempotencyStore.getStats(),
+                tableDirectory.getStats()
+        ));
+    }
+
+    /**
+     * [MỚI] Độ dài hàng đợi + thời gian chờ của hàng đợi ghi đơn hàng theo chi nhánh
+     * GET /api/super-admin/order-sequencer-stats
+     */
+    @GetMapping("/order-sequencer-stats")
+    public ResponseEntity<SequencerStatsResponse> getOrderSequencerStats() {
+        return ResponseEntity.ok(orderMutationSequencer.getStats());
+    }
+
+    /**
+     * [MỚI] Số lần khách gọi nhân viên: đã gửi / bị gộp do bấm lặp lại / lỗi
+     * GET /api/super-admin/staff-call-stats
+     */
+    @GetMapping("/staff-call-stats")
+    public ResponseEntity<StaffCallStatsResponse> getStaffCallStats() {
+        return ResponseEntity.ok(staffCallDispatcher.getStats());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package qrorder.system.dto.event;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import qrorder.system.enums.MenuEventType;
+
+import java.math.BigDecimal;
+
+/**
+ * Sự kiện thực đơn gửi qua WebSocket tới /topic/menu/{storeId}, một sự kiện cho MỖI thao tác ghi thực đơn.
+ *
+ * menuVersion là phiên bản thực đơn sau thao tác đó (lưu ở store.menu_version, tăng đúng 1 mỗi lần ghi,
+ * giữ nguyên qua khởi động lại và giống nhau trên mọi node). Client đang ở menuVersion - 1 áp dụng ITEM_UPDATED
+ * tại chỗ; đã có phiên bản này thì bỏ qua; MENU_CHANGED hoặc lệch nhiều hơn thì tải lại thực đơn.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record MenuEvent(
+        MenuEventType type,
+        long menuVersion,
+        Long itemId,          // Chỉ có ở ITEM_UPDATED
+        Boolean isOutOfStock, // Chỉ có ở ITEM_UPDATED
+        BigDecimal price      // Chỉ có ở ITEM_UPDATED
+) {
+
+    public static MenuEvent itemUpdated(long menuVersion, Long itemId, boolean isOutOfStock, BigDecimal price) {
+        return new MenuEvent(MenuEventType.ITEM_UPDATED, menuVersion, itemId, isOutOfStock, price);
+    }
+
+    public static MenuEvent menuChanged(long menuVersion) {
+        return new MenuEvent(MenuEventType.MENU_CHANGED, menuVersion, null, null, null);
+    }
+}
@@ -0,0 +1,156 @@
+package qrorder.system.dto.event;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import qrorder.system.dto.response.OrderItemResponse;
+import qrorder.system.dto.response.OrderResponse;
+import qrorder.system.enums.OrderEventType;
+import qrorder.system.enums.OrderStatus;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sự kiện đơn hàng (delta) gửi qua WebSocket tới /topic/kitchen/{storeId} và /topic/table/{tableId}.
+ *
+ * Chỉ mang các trường thay đổi (trường null không được serialize).
+ * Các trường đều là trạng thái tuyệt đối (không phải "+1"), nên áp dụng lại một sự kiện
+ * đã có trong snapshot không làm sai dữ liệu phía client.
+ * Số thứ tự (seq) của topic nằm trong header STOMP "seq", không nằm trong body.
+ *
+ * Client nhận biết thay đổi theo sự có mặt của trường (chỉ ORDER_PLACED cần xét type),
+ * nên nhiều sự kiện của cùng một đơn có thể được gộp lại (mergedWith).
+ * Riêng TABLE_SETTLED áp dụng cho nhiều đơn (orderIds) và không bao giờ được gộp.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record OrderEvent(
+        OrderEventType type,
+        Long orderId,
+        Long tableId,
+        OrderStatus status,
+        BigDecimal totalPrice,
+        List<OrderItemResponse> items,   // Các dòng món mới/đã sửa
+        List<Long> removedItemIds,      // Các dòng món đã xóa
+        BigDecimal surcharge,
+        String surchargeNotes,
+        OrderResponse order,            // Chỉ có ở ORDER_PLACED
+        List<Long> orderIds,            // Chỉ có ở TABLE_SETTLED: các đơn vừa được thanh toán
+        BigDecimal settledTotal         // Chỉ có ở TABLE_SETTLED: tổng tiền (món + phụ phí) đã thu
+) {
+
+    public static OrderEvent placed(OrderResponse order) {
+        return new OrderEvent(OrderEventType.ORDER_PLACED, order.id(), order.tableId(),
+                null, null, null, null, null, null, order, null, null);
+    }
+
+    public static OrderEvent statusChanged(OrderResponse order) {
+        return new OrderEvent(OrderEventType.STATUS_CHANGED, order.id(), order.tableId(),
+                order.status(), null, null, null, null, null, null, null, null);
+    }
+
+    public static OrderEvent itemsChanged(OrderResponse order, List<OrderItemResponse> changed, List<Long> removedIds) {
+        return new OrderEvent(OrderEventType.ITEMS_CHANGED, order.id(), order.tableId(),
+                order.status(), order.totalPrice(),
+                changed.isEmpty() ? null : changed,
+                removedIds.isEmpty() ? null : removedIds,
+                null, null, null, null, null);
+    }
+
+    public static OrderEvent surchargeChanged(OrderResponse order) {
+        // surchargeNotes có thể bị xóa (null) -> client ghi đè cả ghi chú mỗi khi có trường surcharge
+        return new OrderEvent(OrderEventType.SURCHARGE_CHANGED, order.id(), order.tableId(),
+                null, null, null, null, order.surcharge(), order.surchargeNotes(), null, null, null);
+    }
+
+    /**
+     * Thanh toán gộp cả bàn: MỘT sự kiện cho mọi đơn (orderId = null), mọi đơn trong orderIds chuyển sang PAID.
+     */
+    public static OrderEvent tableSettled(Long tableId, List<Long> orderIds, BigDecimal settledTotal) {
+        return new OrderEvent(OrderEventType.TABLE_SETTLED, null, tableId,
+                OrderStatus.PAID, null, null, null, null, null, null, orderIds, settledTotal);
+    }
+
+    /**
+     * Phần của sự kiện TABLE_SETTLED áp dụng cho một đơn (đơn chuyển sang PAID), dùng khi gộp với sự kiện khác của đơn đó.
+     */
+    public OrderEvent settledPart(Long settledOrderId) {
+        return new OrderEvent(OrderEventType.STATUS_CHANGED, settledOrderId, tableId,
+                OrderStatus.PAID, null, null, null, null, null, null, null, null);
+    }
+
+    /**
+     * Gộp sự kiện này (cũ hơn) với sự kiện tiếp theo của CÙNG đơn hàng thành một sự kiện.
+     * Kết quả áp dụng lên client giống hệt việc áp dụng lần lượt hai sự kiện.
+     */
+    public OrderEvent mergedWith(OrderEvent next) {
+        if (next.type() == OrderEventType.ORDER_PLACED) {
+            return next;
+        }
+        if (type == OrderEventType.ORDER_PLACED) {
+            return placed(next.applyTo(order));
+        }
+
+        Map<Long, OrderItemResponse> lines = new LinkedHashMap<>();
+        if (items != null) {
+            items.forEach(line -> lines.put(line.id(), line));
+        }
+        Set<Long> removed = new LinkedHashSet<>();
+        if (removedItemIds != null) {
+            removed.addAll(removedItemIds);
+        }
+        if (next.removedItemIds() != null) {
+            next.removedItemIds().forEach(lines::remove);
+            removed.addAll(next.removedItemIds());
+        }
+        if (next.items() != null) {
+            next.items().forEach(line -> lines.put(line.id(), line));
+        }
+
+        boolean surchargeChanged = next.surcharge() != null;
+        return new OrderEvent(
+                type == next.type() ? type : OrderEventType.ORDER_UPDATED,
+                orderId,
+                tableId,
+                next.status() != null ? next.status() : status,
+                next.totalPrice() != null ? next.totalPrice() : totalPrice,
+                lines.isEmpty() ? null : new ArrayList<>(lines.values()),
+                removed.isEmpty() ? null : new ArrayList<>(removed),
+                surchargeChanged ? next.surcharge() : surcharge,
+                surchargeChanged ? next.surchargeNotes() : surchargeNotes,
+                null,
+                null,
+                null
+        );
+    }
+
+    /**
+     * Áp dụng các thay đổi của sự kiện này lên một đơn hàng đầy đủ (giống applyOrderEvent phía client).
+     */
+    public OrderResponse applyTo(OrderResponse current) {
+        Map<Long, OrderItemResponse> lines = new LinkedHashMap<>();
+        current.items().forEach(line -> lines.put(line.id(), line));
+        if (removedItemIds != null) {
+            removedItemIds.forEach(lines::remove);
+        }
+        if (items != null) {
+            items.forEach(line -> lines.put(line.id(), line));
+        }
+
+        return new OrderResponse(
+                current.id(),
+                current.tableId(),
+                current.tableName(),
+                current.storeId(),
+                status != null ? status : current.status(),
+                totalPrice != null ? totalPrice : current.totalPrice(),
+                current.createdAt(),
+                new ArrayList<>(lines.values()),
+                surcharge != null ? surcharge : current.surcharge(),
+                surcharge != null ? surchargeNotes : current.surchargeNotes()
+        );
+    }
+}
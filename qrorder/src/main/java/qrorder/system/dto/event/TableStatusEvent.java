@@ -0,0 +1,15 @@
+package qrorder.system.dto.event;
+
+import qrorder.system.enums.TableStatus;
+
+/**
+ * Sự kiện chuyển trạng thái bàn gửi qua WebSocket tới /topic/staff/{storeId}/tables.
+ *
+ * Chỉ được gửi khi bàn đổi trạng thái thật sự: EMPTY -> ACTIVE (đơn đầu tiên của bàn trống)
+ * hoặc ACTIVE -> EMPTY (đơn cuối cùng đã thanh toán/hủy).
+ * Số thứ tự (seq) nằm trong header STOMP "seq" như OrderEvent.
+ */
+public record TableStatusEvent(
+        Long tableId,
+        TableStatus status
+) {}
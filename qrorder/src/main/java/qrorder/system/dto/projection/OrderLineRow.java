@@ -0,0 +1,16 @@
+package qrorder.system.dto.projection;
+
+import java.math.BigDecimal;
+
+/**
+ * Một dòng món (OrderItem) kèm tên món, đọc thẳng từ truy vấn JPQL.
+ */
+public record OrderLineRow(
+        Long id,
+        Long orderId,
+        Long menuItemId,
+        String menuItemName,
+        int quantity,
+        String note,
+        BigDecimal pricePerItem
+) {}
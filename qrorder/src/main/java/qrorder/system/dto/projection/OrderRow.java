@@ -0,0 +1,21 @@
+package qrorder.system.dto.projection;
+
+import qrorder.system.enums.OrderStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Một dòng đơn hàng đọc thẳng từ truy vấn JPQL (không qua entity, không lazy load).
+ * Dùng cho đường đọc danh sách đơn hàng (Bếp, Bàn).
+ */
+public record OrderRow(
+        Long id,
+        Long tableId,
+        String tableName,
+        Long storeId,
+        OrderStatus status,
+        LocalDateTime createdAt,
+        BigDecimal surcharge,
+        String surchargeNotes
+) {}
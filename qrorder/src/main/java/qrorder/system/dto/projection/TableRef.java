@@ -0,0 +1,14 @@
+package qrorder.system.dto.projection;
+
+/**
+ * Thông tin tối thiểu của một bàn, đọc thẳng từ truy vấn JPQL (không qua entity, không lazy load Store).
+ * Dùng cho đường khách hàng: Access Key -> bàn + chi nhánh (xem TableDirectory).
+ */
+public record TableRef(
+        Long id,
+        String name,
+        int capacity,
+        Long storeId,
+        String accessKey,
+        int sessionVersion // [MỚI] Tăng khi bàn bị sửa: token phiên bàn cấp trước đó hết hiệu lực (TableDirectory.fromSession)
+) {}
@@ -0,0 +1,17 @@
+package qrorder.system.dto.request;
+
+import qrorder.system.enums.OrderStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Bộ lọc lịch sử đơn hàng (mọi trường đều có thể bỏ trống)
+ */
+public record OrderHistoryQuery(
+        List<OrderStatus> statuses, // Trống = mọi trạng thái
+        LocalDateTime from, // Tạo từ thời điểm này (bao gồm)
+        LocalDateTime to, // Tạo trước thời điểm này (không bao gồm)
+        String cursor, // nextCursor của trang trước
+        Integer limit // Số đơn mỗi trang
+) {}
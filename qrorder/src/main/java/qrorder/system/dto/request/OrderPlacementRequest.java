@@ -5,5 +5,10 @@ import java.util.List;
 // 2. DTO đơn hàng (gửi lên)
 public record OrderPlacementRequest(
         String tableAccessKey, // KEY TABLE
-        List<OrderItemRequest> items
-) {}
\ No newline at end of file
+        List<OrderItemRequest> items,
+        String idempotencyKey // [MỚI] Tùy chọn: client tạo một lần cho mỗi lần đặt, dùng lại khi gửi lại
+) {
+    public OrderPlacementRequest(String tableAccessKey, List<OrderItemRequest> items) {
+        this(tableAccessKey, items, null);
+    }
+}
\ No newline at end of file
@@ -7,5 +7,10 @@ package qrorder.system.dto.request;
 // 1. DTO Khách hàng gửi lên (Request)
 public record StaffCallRequest(
         Long tableId,
-        String callType // Ví dụ: "SERVICE" (gọi phục vụ), "PAYMENT" (gọi thanh toán)
-) {}
\ No newline at end of file
+        String callType, // Một giá trị của StaffCallType: "SERVICE" (gọi phục vụ), "PAYMENT" (gọi thanh toán)
+        String tableSession // [MỚI] Tùy chọn: token phiên bàn (X-Table-Session) -> không cần tra bàn
+) {
+    public StaffCallRequest(Long tableId, String callType) {
+        this(tableId, callType, null);
+    }
+}
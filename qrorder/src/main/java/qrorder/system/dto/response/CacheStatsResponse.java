@@ -0,0 +1,9 @@
+package qrorder.system.dto.response;
+
+// Thống kê bộ nhớ đệm (cho Super Admin theo dõi)
+public record CacheStatsResponse(
+        String name,
+        long hits,
+        long misses,
+        int size
+) {}
@@ -0,0 +1,9 @@
+package qrorder.system.dto.response;
+
+import java.util.List;
+
+// DTO một trang lịch sử đơn hàng (phân trang keyset, mới nhất trước)
+public record OrderPageResponse(
+        List<OrderResponse> orders,
+        String nextCursor // Gửi lại ở tham số cursor để lấy trang kế tiếp; null = hết dữ liệu
+) {}
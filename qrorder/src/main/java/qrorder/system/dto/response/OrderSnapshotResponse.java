@@ -0,0 +1,10 @@
+package qrorder.system.dto.response;
+
+import java.util.List;
+
+// DTO ảnh chụp danh sách đơn hàng (dùng để đồng bộ lại WebSocket)
+public record OrderSnapshotResponse(
+        String node, // Node đã tạo ảnh chụp (seq bên dưới là seq của node này)
+        long seq, // Số thứ tự sự kiện cuối cùng của topic mà ảnh chụp đã bao gồm
+        List<OrderResponse> orders
+) {}
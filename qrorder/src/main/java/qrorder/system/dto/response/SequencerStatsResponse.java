@@ -0,0 +1,11 @@
+package qrorder.system.dto.response;
+
+// Thống kê hàng đợi ghi đơn hàng theo chi nhánh (cho Super Admin theo dõi)
+public record SequencerStatsResponse(
+        long executed,        // Số thao tác đã chạy
+        int activeStores,     // Số chi nhánh đang có thao tác chạy/chờ
+        int queueDepth,       // Số thao tác đang chờ tới lượt (mọi chi nhánh)
+        int peakQueueDepth,   // Số thao tác chờ cao nhất từng ghi nhận
+        long avgWaitMicros,   // Thời gian chờ trung bình
+        long maxWaitMicros    // Thời gian chờ lâu nhất
+) {}
@@ -0,0 +1,9 @@
+package qrorder.system.dto.response;
+
+// Thống kê Khách gọi nhân viên (cho Super Admin theo dõi)
+public record StaffCallStatsResponse(
+        long received,    // Số lần khách bấm gọi
+        long delivered,   // Số thông báo đã gửi tới nhân viên
+        long suppressed,  // Số lần bấm lặp lại trong cửa sổ chống spam (đã gộp, không gửi)
+        long failed       // Số lần không gửi được (bàn không tồn tại, lỗi DB...)
+) {}
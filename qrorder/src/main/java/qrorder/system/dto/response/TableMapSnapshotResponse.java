@@ -0,0 +1,13 @@
+package qrorder.system.dto.response;
+
+import qrorder.system.dto.TableStatusDTO;
+
+import java.util.List;
+
+// DTO ảnh chụp Sơ đồ bàn (tải lần đầu / đồng bộ lại /topic/staff/{storeId}/tables)
+public record TableMapSnapshotResponse(
+        String node, // Node đã tạo ảnh chụp (seq bên dưới là seq của node này)
+        long seq, // Số thứ tự sự kiện cuối cùng của topic mà ảnh chụp đã bao gồm
+        boolean live, // false: node không gửi sự kiện chuyển trạng thái bàn (chạy nhiều node) -> client tự tải lại
+        List<TableStatusDTO> tables
+) {}
@@ -28,6 +28,10 @@ public class AppUser {
     @Column(nullable = false, length = 50)
     private String role; // "ADMIN", "STAFF", "KITCHEN"
 
+    // [MỚI] Phiên bản token: tăng lên khi đổi role/mật khẩu để thu hồi các JWT đã cấp
+    @Column(name = "token_version", nullable = false, columnDefinition = "INT DEFAULT 0")
+    private int tokenVersion;
+
     @Column(name = "created_at", columnDefinition = "DATETIME DEFAULT CURRENT_TIMESTAMP")
     private LocalDateTime createdAt = LocalDateTime.now();
 
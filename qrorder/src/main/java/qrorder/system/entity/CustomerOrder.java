@@ -10,7 +10,7 @@ import java.time.LocalDateTime;
 import java.util.Set;
 
 @Entity
-@Table(name = "customer_order")
+@Table(name = "customer_order") // Index: db/migration/V2__order_query_indexes.sql
 @Getter @Setter
 public class CustomerOrder {
     @Id
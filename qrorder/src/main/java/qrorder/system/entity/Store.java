@@ -32,6 +32,11 @@ public class Store {
     @Column(name = "qr_template")
     private String qrTemplate; // VD: compact, print
 
+    // [MỚI] Phiên bản thực đơn: tăng 1 trong transaction của mỗi thao tác ghi thực đơn (StoreRepository.incrementMenuVersion).
+    // Chỉ đọc từ entity để lần save Store khác không ghi đè giá trị cũ
+    @Column(name = "menu_version", nullable = false, insertable = false, updatable = false, columnDefinition = "BIGINT DEFAULT 0")
+    private long menuVersion;
+
     @OneToMany(mappedBy = "store", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private Set<AppUser> users;
 }
\ No newline at end of file
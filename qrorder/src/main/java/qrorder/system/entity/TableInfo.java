@@ -25,6 +25,10 @@ public class TableInfo {
     @Column(name = "access_key", nullable = false, unique = true)
     private String accessKey = UUID.randomUUID().toString();
 
+    // [MỚI] Phiên bản phiên bàn: tăng khi Admin/Staff sửa bàn, token phiên bàn mang phiên bản cũ bị từ chối
+    @Column(name = "session_version", nullable = false, columnDefinition = "INT DEFAULT 0")
+    private int sessionVersion;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "store_id", nullable = false)
     private Store store;
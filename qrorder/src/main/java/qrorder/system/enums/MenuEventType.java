@@ -0,0 +1,9 @@
+package qrorder.system.enums;
+
+/**
+ * Enum các loại sự kiện thực đơn gửi qua WebSocket tới /topic/menu/{storeId}
+ */
+public enum MenuEventType {
+    ITEM_UPDATED, // Đổi tình trạng/giá một món (kèm giá trị mới) - client cập nhật tại chỗ
+    MENU_CHANGED  // Thay đổi khác (thêm/xóa/sửa món, danh mục) - client tải lại thực đơn
+}
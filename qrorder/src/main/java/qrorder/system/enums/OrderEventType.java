@@ -0,0 +1,26 @@
+package qrorder.system.enums;
+
+/**
+ * Enum các loại sự kiện đơn hàng gửi qua WebSocket
+ */
+public enum OrderEventType {
+    ORDER_PLACED(true),       // Đơn mới (kèm toàn bộ đơn hàng)
+    STATUS_CHANGED(true),     // Chỉ đổi trạng thái
+    ITEMS_CHANGED(true),      // Thêm/sửa/xóa món (chỉ gửi các dòng thay đổi + tổng tiền mới)
+    SURCHARGE_CHANGED(false), // Đổi phụ phí (Bếp không cần)
+    ORDER_UPDATED(true),      // Nhiều loại thay đổi được gộp lại (xem OrderEventDispatcher)
+    TABLE_SETTLED(true);      // Thanh toán gộp cả bàn (danh sách đơn + tổng tiền, không có orderId)
+
+    private final boolean kitchenVisible;
+
+    OrderEventType(boolean kitchenVisible) {
+        this.kitchenVisible = kitchenVisible;
+    }
+
+    /**
+     * Sự kiện có cần gửi tới topic Bếp hay không (topic bàn luôn nhận)
+     */
+    public boolean isKitchenVisible() {
+        return kitchenVisible;
+    }
+}
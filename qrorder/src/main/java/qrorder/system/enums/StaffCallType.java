@@ -0,0 +1,9 @@
+package qrorder.system.enums;
+
+/**
+ * Enum các loại gọi nhân viên mà khách được gửi (/app/call-staff)
+ */
+public enum StaffCallType {
+    SERVICE, // Gọi phục vụ
+    PAYMENT  // Gọi thanh toán
+}
@@ -1,7 +1,10 @@
 package qrorder.system.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import qrorder.system.dto.response.CategoryResponse;
 import qrorder.system.entity.Category;
 
 import java.util.List;
@@ -16,4 +19,8 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     Optional<Category> findByIdAndStoreId(Long id, Long storeId);
 
     boolean existsByIdAndStoreId(Long id, Long storeId);
+
+    // [MỚI] Danh mục của chi nhánh dạng DTO (không nạp entity Store)
+    @Query("select new qrorder.system.dto.response.CategoryResponse(c.id, c.name, c.store.id) from Category c where c.store.id = :storeId order by c.id")
+    List<CategoryResponse> findCategoryRowsByStore(@Param("storeId") Long storeId);
 }
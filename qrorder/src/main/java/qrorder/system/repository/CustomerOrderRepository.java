@@ -1,11 +1,17 @@
 package qrorder.system.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import qrorder.system.dto.projection.OrderRow;
 import qrorder.system.entity.CustomerOrder;
-import qrorder.system.entity.TableInfo;
 import qrorder.system.enums.OrderStatus;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
@@ -17,26 +23,136 @@ public interface CustomerOrderRepository extends JpaRepository<CustomerOrder, Lo
     // [MỚI] Tìm đơn hàng theo ID và Store ID (để bảo mật multi-tenant)
     Optional<CustomerOrder> findByIdAndStoreId(Long id, Long storeId);
 
-    // [MỚI] Tìm tất cả đơn hàng theo Store ID và danh sách trạng thái
-    List<CustomerOrder> findAllByStoreIdAndStatusIn(Long storeId, Collection<OrderStatus> statuses);
+    /**
+     * [MỚI] ID các bàn của chi nhánh đang có đơn ở các trạng thái cho trước
+     * (MỘT truy vấn gộp cho cả Sơ đồ bàn, thay vì hỏi từng bàn)
+     */
+    @Query("""
+            select o.table.id from CustomerOrder o
+            where o.store.id = :storeId and o.status in :statuses
+            group by o.table.id
+            """)
+    List<Long> findTableIdsWithOrderStatus(@Param("storeId") Long storeId,
+                                           @Param("statuses") Collection<OrderStatus> statuses);
+
+    // === ĐƯỜNG ĐỌC (projection, không lazy load) ===
 
     /**
-     * [MỚI]
-     * Kiểm tra xem một Bàn (tableId) có bất kỳ đơn hàng nào
-     * đang ở trong các trạng thái (statuses) được chỉ định hay không.
-     * Dùng để kiểm tra xem bàn là EMPTY hay ACTIVE.
+     * [MỚI] Đơn hàng của chi nhánh theo trạng thái (dùng cho màn hình Bếp)
      */
-    boolean existsByTableAndStatusIn(TableInfo tableInfo, Collection<OrderStatus> statuses);
+    @Query("""
+            select new qrorder.system.dto.projection.OrderRow(
+                o.id, t.id, t.name, o.store.id, o.status, o.createdAt, o.surcharge, o.surchargeNotes)
+            from CustomerOrder o join o.table t
+            where o.store.id = :storeId and o.status in :statuses
+            order by o.id
+            """)
+    List<OrderRow> findOrderRowsByStore(@Param("storeId") Long storeId,
+                                        @Param("statuses") Collection<OrderStatus> statuses);
+
     /**
-     * [MỚI]
-     * Lấy tất cả các đơn hàng của một bàn cụ thể
-     * (dùng storeId để bảo mật)
+     * [MỚI] Đơn hàng của MỌI chi nhánh theo trạng thái (dựng lại bảng Bếp khi khởi động)
      */
-    List<CustomerOrder> findAllByTableAndStoreId(TableInfo tableInfo, Long storeId);
+    @Query("""
+            select new qrorder.system.dto.projection.OrderRow(
+                o.id, t.id, t.name, o.store.id, o.status, o.createdAt, o.surcharge, o.surchargeNotes)
+            from CustomerOrder o join o.table t
+            where o.status in :statuses
+            order by o.id
+            """)
+    List<OrderRow> findOrderRowsByStatus(@Param("statuses") Collection<OrderStatus> statuses);
+
     /**
-     * [MỚI] Lấy các đơn hàng đang hoạt động (chưa thanh toán)
-     * của một bàn cụ thể (dùng cho Giao diện Khách hàng)
+     * [MỚI] Đơn hàng của một bàn theo trạng thái
      */
-    List<CustomerOrder> findAllByTableAndStoreIdAndStatusIn(TableInfo tableInfo, Long storeId, Collection<OrderStatus> statuses);
+    @Query("""
+            select new qrorder.system.dto.projection.OrderRow(
+                o.id, t.id, t.name, o.store.id, o.status, o.createdAt, o.surcharge, o.surchargeNotes)
+            from CustomerOrder o join o.table t
+            where t.id = :tableId and o.store.id = :storeId and o.status in :statuses
+            order by o.id
+            """)
+    List<OrderRow> findOrderRowsByTableAndStatus(@Param("tableId") Long tableId,
+                                                 @Param("storeId") Long storeId,
+                                                 @Param("statuses") Collection<OrderStatus> statuses);
+
+    // === LỊCH SỬ ĐƠN HÀNG (phân trang keyset) ===
+    // Thứ tự (createdAt, id) giảm dần; trang sau bắt đầu NGAY SAU dòng cuối của trang trước
+    // (createdAt < :beforeCreatedAt, hoặc bằng nhau và id < :beforeId) -> không OFFSET, chi phí mỗi trang
+    // không phụ thuộc độ sâu lịch sử. Đi theo index (store_id, created_at, id) / (table_id, created_at, id).
 
+    /**
+     * [MỚI] Một trang lịch sử đơn hàng của chi nhánh
+     */
+    @Query("""
+            select new qrorder.system.dto.projection.OrderRow(
+                o.id, t.id, t.name, o.store.id, o.status, o.createdAt, o.surcharge, o.surchargeNotes)
+            from CustomerOrder o join o.table t
+            where o.store.id = :storeId and o.status in :statuses
+              and o.createdAt >= :from
+              and (o.createdAt < :beforeCreatedAt or (o.createdAt = :beforeCreatedAt and o.id < :beforeId))
+            order by o.createdAt desc, o.id desc
+            """)
+    List<OrderRow> findOrderRowPageByStore(@Param("storeId") Long storeId,
+                                           @Param("statuses") Collection<OrderStatus> statuses,
+                                           @Param("from") LocalDateTime from,
+                                           @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt,
+                                           @Param("beforeId") Long beforeId,
+                                           Limit limit);
+
+    /**
+     * [MỚI] Một trang lịch sử đơn hàng của một bàn
+     */
+    @Query("""
+            select new qrorder.system.dto.projection.OrderRow(
+                o.id, t.id, t.name, o.store.id, o.status, o.createdAt, o.surcharge, o.surchargeNotes)
+            from CustomerOrder o join o.table t
+            where t.id = :tableId and o.store.id = :storeId and o.status in :statuses
+              and o.createdAt >= :from
+              and (o.createdAt < :beforeCreatedAt or (o.createdAt = :beforeCreatedAt and o.id < :beforeId))
+            order by o.createdAt desc, o.id desc
+            """)
+    List<OrderRow> findOrderRowPageByTable(@Param("tableId") Long tableId,
+                                           @Param("storeId") Long storeId,
+                                           @Param("statuses") Collection<OrderStatus> statuses,
+                                           @Param("from") LocalDateTime from,
+                                           @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt,
+                                           @Param("beforeId") Long beforeId,
+                                           Limit limit);
+
+    // === THANH TOÁN GỘP (không load entity) ===
+
+    /**
+     * [MỚI] ID các đơn hàng của một bàn theo trạng thái
+     */
+    @Query("""
+            select o.id from CustomerOrder o
+            where o.table.id = :tableId and o.store.id = :storeId and o.status in :statuses
+            order by o.id
+            """)
+    List<Long> findIdsByTableAndStatus(@Param("tableId") Long tableId,
+                                       @Param("storeId") Long storeId,
+                                       @Param("statuses") Collection<OrderStatus> statuses);
+
+    /**
+     * [MỚI] Đổi trạng thái hàng loạt bằng MỘT câu UPDATE, chỉ với các đơn VẪN CÒN ở một trong các trạng thái cho trước.
+     * Trả về số đơn đã cập nhật (ít hơn số ID nếu có đơn vừa bị đổi trạng thái bởi transaction khác).
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update CustomerOrder o set o.status = :newStatus
+            where o.id in :ids and o.status in :statuses
+            """)
+    int updateStatusWhereStatusIn(@Param("ids") Collection<Long> ids,
+                                  @Param("statuses") Collection<OrderStatus> statuses,
+                                  @Param("newStatus") OrderStatus newStatus);
+
+    /**
+     * [MỚI] Tổng tiền (tiền món + phụ phí) của các đơn hàng
+     */
+    @Query("""
+            select coalesce(sum(coalesce(o.totalPrice, 0) + coalesce(o.surcharge, 0)), 0)
+            from CustomerOrder o where o.id in :ids
+            """)
+    BigDecimal sumTotalWithSurcharge(@Param("ids") Collection<Long> ids);
 }
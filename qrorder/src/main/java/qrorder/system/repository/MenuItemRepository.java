@@ -1,9 +1,13 @@
 package qrorder.system.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import qrorder.system.dto.response.MenuItemResponse;
 import qrorder.system.entity.MenuItem;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,11 +16,21 @@ public interface MenuItemRepository extends JpaRepository<MenuItem, Long> {
     // Tìm tất cả món ăn theo storeId
     List<MenuItem> findAllByStoreIdAndDeletedFalse(Long storeId);
 
-    // Tìm tất cả món ăn theo categoryId (và storeId để bảo mật)
-    List<MenuItem> findAllByCategoryIdAndStoreId(Long categoryId, Long storeId);
-
     // Tìm một món ăn cụ thể theo storeId và itemId (để check quyền)
     Optional<MenuItem> findByIdAndStoreId(Long id, Long storeId);
 
+    // [MỚI] Lấy nhiều món trong MỘT truy vấn (dùng khi đặt/thêm món)
+    List<MenuItem> findAllByIdInAndStoreId(Collection<Long> ids, Long storeId);
+
     List<MenuItem> findAllByCategoryIdAndStoreIdAndDeletedFalse(Long categoryId, Long storeId);
+
+    // [MỚI] Thực đơn của chi nhánh dạng DTO trong MỘT truy vấn (join Category, không lazy load từng món)
+    @Query("""
+            select new qrorder.system.dto.response.MenuItemResponse(
+                m.id, m.name, m.description, m.price, m.imageUrl, c.id, c.name, m.store.id, m.isOutOfStock)
+            from MenuItem m join m.category c
+            where m.store.id = :storeId and m.deleted = false
+            order by m.id
+            """)
+    List<MenuItemResponse> findMenuRowsByStore(@Param("storeId") Long storeId);
 }
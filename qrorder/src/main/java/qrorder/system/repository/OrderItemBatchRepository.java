@@ -0,0 +1,60 @@
+package qrorder.system.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import qrorder.system.entity.OrderItem;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ghi nhiều OrderItem bằng MỘT lượt JDBC batch.
+ *
+ * OrderItem dùng GenerationType.IDENTITY nên Hibernate không thể batch các câu INSERT
+ * (mỗi món là một round trip). Ở đây ta tự batch qua JdbcTemplate; với MySQL,
+ * rewriteBatchedStatements=true (trong datasource URL) gộp batch thành một câu INSERT nhiều dòng.
+ * ID sinh ra được gán ngược lại vào các entity.
+ *
+ * Chạy chung connection/transaction với JPA (JpaTransactionManager), nên đơn hàng cha
+ * phải được INSERT trước (save() với IDENTITY sẽ INSERT ngay).
+ */
+@Repository
+public class OrderItemBatchRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO order_item (order_id, menu_item_id, quantity, note, price_per_item) " +
+            "VALUES (:orderId, :menuItemId, :quantity, :note, :pricePerItem)";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void insertAll(List<OrderItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        SqlParameterSource[] params = items.stream()
+                .map(item -> new MapSqlParameterSource()
+                        .addValue("orderId", item.getOrder().getId())
+                        .addValue("menuItemId", item.getMenuItem().getId())
+                        .addValue("quantity", item.getQuantity())
+                        .addValue("note", item.getNote())
+                        .addValue("pricePerItem", item.getPricePerItem()))
+                .toArray(SqlParameterSource[]::new);
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(INSERT_SQL, params, keyHolder, new String[]{"id"});
+
+        // Gán ID vừa sinh cho từng món (theo đúng thứ tự batch)
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < items.size(); i++) {
+            Number id = (Number) keys.get(i).values().iterator().next();
+            items.get(i).setId(id.longValue());
+        }
+    }
+}
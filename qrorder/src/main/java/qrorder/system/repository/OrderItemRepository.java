@@ -1,14 +1,30 @@
 package qrorder.system.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import qrorder.system.dto.projection.OrderLineRow;
 import qrorder.system.entity.OrderItem;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
     // [MỚI] Tìm tất cả các món hàng theo ID của đơn hàng cha
     List<OrderItem> findByOrder_Id(Long orderId);
+
+    /**
+     * [MỚI] Lấy món của NHIỀU đơn hàng trong một truy vấn (kèm tên món, không lazy load)
+     */
+    @Query("""
+            select new qrorder.system.dto.projection.OrderLineRow(
+                i.id, i.order.id, m.id, m.name, i.quantity, i.note, i.pricePerItem)
+            from OrderItem i join i.menuItem m
+            where i.order.id in :orderIds
+            order by i.id
+            """)
+    List<OrderLineRow> findLineRowsByOrderIds(@Param("orderIds") Collection<Long> orderIds);
 }
 
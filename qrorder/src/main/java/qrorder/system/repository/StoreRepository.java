@@ -1,6 +1,9 @@
 package qrorder.system.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import qrorder.system.entity.Store;
 
@@ -9,4 +12,14 @@ import java.util.Optional;
 @Repository
 public interface StoreRepository extends JpaRepository<Store, Long> {
     Optional<Store> findBySubdomain(String subdomain);
+
+    // [MỚI] Tăng phiên bản thực đơn ngay trong transaction ghi: khóa dòng store đến khi commit,
+    // nên các thao tác ghi thực đơn của một chi nhánh nhận phiên bản liên tiếp theo đúng thứ tự commit
+    @Modifying
+    @Query(value = "UPDATE store SET menu_version = menu_version + 1 WHERE id = :storeId", nativeQuery = true)
+    int incrementMenuVersion(@Param("storeId") Long storeId);
+
+    // [MỚI] Phiên bản thực đơn hiện tại (không nạp entity)
+    @Query(value = "SELECT menu_version FROM store WHERE id = :storeId", nativeQuery = true)
+    Optional<Long> findMenuVersion(@Param("storeId") Long storeId);
 }
@@ -1,7 +1,10 @@
 package qrorder.system.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import qrorder.system.dto.projection.TableRef;
 import qrorder.system.entity.TableInfo;
 
 import java.util.List;
@@ -14,5 +17,32 @@ public interface TableRepository extends JpaRepository<TableInfo, Long> {
 
     // [MỚI] Tìm bàn bằng Access Key (Dùng cho Khách hàng khi quét QR)
     // Giúp bảo mật, ngăn chặn việc đoán ID bàn (IDOR)
-    Optional<TableInfo> findByAccessKey(String accessKey);
+    // Chỉ đọc các cột cần thiết, không nạp entity Store (xem TableDirectory)
+    @Query("""
+            select new qrorder.system.dto.projection.TableRef(t.id, t.name, t.capacity, t.store.id, t.accessKey, t.sessionVersion)
+            from TableInfo t
+            where t.accessKey = :accessKey
+            """)
+    Optional<TableRef> findRefByAccessKey(@Param("accessKey") String accessKey);
+
+    // [MỚI] Như trên nhưng theo ID bàn (Khách gọi nhân viên qua WebSocket chỉ gửi ID bàn)
+    @Query("""
+            select new qrorder.system.dto.projection.TableRef(t.id, t.name, t.capacity, t.store.id, t.accessKey, t.sessionVersion)
+            from TableInfo t
+            where t.id = :id
+            """)
+    Optional<TableRef> findRefById(@Param("id") Long id);
+
+    // [MỚI] Bàn của một chi nhánh, không nạp entity (Sơ đồ bàn của Staff, xem TableDirectory.tablesOfStore)
+    @Query("""
+            select new qrorder.system.dto.projection.TableRef(t.id, t.name, t.capacity, t.store.id, t.accessKey, t.sessionVersion)
+            from TableInfo t
+            where t.store.id = :storeId
+            order by t.id
+            """)
+    List<TableRef> findRefsByStoreId(@Param("storeId") Long storeId);
+
+    // [MỚI] Tất cả bàn của mọi chi nhánh (nạp sẵn danh bạ bàn khi khởi động)
+    @Query("select new qrorder.system.dto.projection.TableRef(t.id, t.name, t.capacity, t.store.id, t.accessKey, t.sessionVersion) from TableInfo t")
+    List<TableRef> findAllRefs();
 }
@@ -6,6 +6,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import qrorder.system.config.security.StoreUserDetails;
+import qrorder.system.config.security.TokenVersionCache;
 import qrorder.system.dto.request.UserCreateRequest;
 import qrorder.system.dto.response.UserResponse;
 import qrorder.system.dto.request.UserUpdateRequest;
@@ -29,6 +30,9 @@ public class AppUserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private TokenVersionCache tokenVersionCache;
+
     /**
      * Helper: Lấy thông tin user (Admin) đang đăng nhập
      */
@@ -92,16 +96,26 @@ public class AppUserService {
             throw new SecurityException("Bạn không có quyền sửa user của chi nhánh khác");
         }
 
+        boolean credentialsChanged = false;
         if (request.username() != null && !request.username().isEmpty()) {
+            credentialsChanged |= !request.username().equals(user.getUsername());
             user.setUsername(request.username());
         }
         if (request.role() != null && !request.role().isEmpty()) {
+            credentialsChanged |= !request.role().equals(user.getRole());
             user.setRole(request.role());
         }
         if (request.password() != null && !request.password().isEmpty()) {
+            credentialsChanged = true;
             user.setPassword(passwordEncoder.encode(request.password()));
         }
 
+        // [MỚI] Đổi username/role/mật khẩu -> thu hồi các JWT đã cấp cho user này
+        if (credentialsChanged) {
+            user.setTokenVersion(user.getTokenVersion() + 1);
+            tokenVersionCache.updateAfterCommit(user.getId(), user.getTokenVersion());
+        }
+
         AppUser updatedUser = appUserRepository.save(user);
         return mapToUserResponse(updatedUser);
     }
@@ -122,6 +136,7 @@ public class AppUserService {
         }
 
         appUserRepository.delete(user);
+        tokenVersionCache.revokeAfterCommit(user.getId());
     }
 
     // Helper map Entity -> Response DTO
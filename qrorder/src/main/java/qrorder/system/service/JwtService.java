@@ -1,21 +1,27 @@
 package qrorder.system.service;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 import qrorder.system.config.security.StoreUserDetails;
+import qrorder.system.dto.response.CacheStatsResponse;
+import qrorder.system.util.ExpiringCache;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
 
 @Service
 public class JwtService {
@@ -26,13 +32,37 @@ public class JwtService {
     @Value("${app.jwt.expiration-ms}")
     private long JWT_EXPIRATION;
 
-    public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+    // [MỚI] Khóa HMAC và parser được tạo một lần (trước đây tạo lại ở mỗi lần parse)
+    private Key signInKey;
+    private JwtParser parser;
+
+    // [MỚI] Token đã xác thực chữ ký: SHA-256(token) -> claims, hết hạn cùng token
+    private final ExpiringCache<String, Claims> verifiedTokens = new ExpiringCache<>(10_000, 10 * 60 * 1000L);
+
+    @PostConstruct
+    void init() {
+        signInKey = Keys.hmacShaKeyFor(JWT_SECRET.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signInKey)
+                .build();
     }
 
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    /**
+     * [MỚI] Xác thực token (chữ ký + hạn dùng) và trả về claims.
+     * Chỉ parse một lần cho mỗi token; các request sau dùng lại kết quả trong cache.
+     * Ném JwtException nếu token không hợp lệ hoặc đã hết hạn.
+     */
+    public Claims verify(String token) {
+        String digest = digest(token);
+        Claims claims = verifiedTokens.get(digest);
+        if (claims != null) {
+            return claims;
+        }
+
+        claims = parser.parseClaimsJws(token).getBody();
+        Date expiration = claims.getExpiration();
+        verifiedTokens.put(digest, claims, expiration != null ? expiration.getTime() : Long.MAX_VALUE);
+        return claims;
     }
 
     public String generateToken(UserDetails userDetails) {
@@ -51,6 +81,12 @@ public class JwtService {
 
             extraClaims.put("role", role);
             extraClaims.put("storeId", storeUserDetails.getStoreId());
+
+            // [MỚI] uid + ver cho chế độ xác thực stateless (xem TokenVersionCache)
+            if (storeUserDetails.getUserId() != null) {
+                extraClaims.put("uid", storeUserDetails.getUserId());
+                extraClaims.put("ver", storeUserDetails.getTokenVersion());
+            }
         }
 
         return Jwts
@@ -59,34 +95,32 @@ public class JwtService {
                 .setSubject(userDetails.getUsername())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + JWT_EXPIRATION))
-                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                .signWith(signInKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+    /**
+     * [MỚI] Kiểm tra trên claims đã parse sẵn (không parse lại token)
+     */
+    public boolean isTokenValid(Claims claims, UserDetails userDetails) {
+        return claims.getSubject().equals(userDetails.getUsername()) && !isTokenExpired(claims);
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    public CacheStatsResponse getStats() {
+        return new CacheStatsResponse("verified-jwt", verifiedTokens.hitCount(), verifiedTokens.missCount(), verifiedTokens.size());
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    private boolean isTokenExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    private Key getSignInKey() {
-        byte[] keyBytes = JWT_SECRET.getBytes(java.nio.charset.StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+    // Băm token để làm khóa cache (không giữ nguyên token trong bộ nhớ)
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 không khả dụng", e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,162 @@
+package qrorder.system.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import qrorder.system.config.WebSocketConfig;
+import qrorder.system.dto.response.OrderResponse;
+import qrorder.system.enums.OrderStatus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Bảng Bếp trong bộ nhớ: các đơn hàng đang hoạt động (PENDING, PREPARING) của từng chi nhánh.
+ *
+ * GET /api/kitchen/orders đọc thẳng từ đây, không truy vấn DB.
+ * Mọi thao tác ghi trong OrderService đẩy OrderResponse mới nhất vào bảng SAU KHI COMMIT;
+ * khi khởi động, bảng được dựng lại từ DB (OrderReadService).
+ *
+ * Đồng thời: mỗi chi nhánh là một ConcurrentSkipListMap (orderId -> Entry, duyệt theo thứ tự ID).
+ * Mỗi lần ghi mang một "stamp" tăng dần lấy TRONG transaction (sau khi dòng đơn hàng đã bị khóa),
+ * nên nếu callback afterCommit của hai transaction chạy lệch thứ tự thì bản cũ hơn bị bỏ qua.
+ * Đơn rời bảng được giữ lại dạng "bia mộ" (order = null) một thời gian ngắn vì cùng lý do.
+ *
+ * Bảng chỉ thấy các thay đổi ghi qua CHÍNH node này, nên bị tắt khi chạy nhiều node
+ * (app.websocket.broker=relay): isReady() luôn false và OrderService đọc từ DB.
+ */
+@Component
+public class KitchenBoard {
+
+    // Các trạng thái đơn hàng Bếp cần xem
+    public static final List<OrderStatus> ACTIVE_STATUSES = List.of(
+            OrderStatus.PENDING,
+            OrderStatus.PREPARING
+    );
+
+    // Thời gian giữ "bia mộ" của đơn đã rời bảng
+    private static final long TOMBSTONE_TTL_MILLIS = 60_000;
+
+    @Autowired
+    private OrderReadService orderReadService;
+
+    @Value("${app.websocket.broker:simple}")
+    private String brokerMode;
+
+    private final Map<Long, ConcurrentNavigableMap<Long, Entry>> boards = new ConcurrentHashMap<>();
+    private final AtomicLong stamps = new AtomicLong();
+
+    private volatile boolean ready = false;
+
+    private record Entry(long stamp, OrderResponse order, long removedAtMillis) {
+    }
+
+    /**
+     * Dựng lại bảng từ DB khi ứng dụng đã sẵn sàng (một truy vấn đơn + một truy vấn món cho mọi chi nhánh).
+     * Dùng stamp 0: thay đổi nào đã được ghi vào bảng trong lúc dựng lại đều được ưu tiên.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (WebSocketConfig.isRelay(brokerMode)) {
+            System.out.println(">>> Broker relay (nhiều node): tắt bảng Bếp trong bộ nhớ, đọc đơn Bếp từ DB");
+            return;
+        }
+        for (OrderResponse order : orderReadService.findByStatus(ACTIVE_STATUSES)) {
+            apply(order, 0);
+        }
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Các đơn đang hoạt động của chi nhánh, theo thứ tự ID (giống truy vấn DB).
+     */
+    public List<OrderResponse> snapshot(Long storeId) {
+        ConcurrentNavigableMap<Long, Entry> board = boards.get(storeId);
+        List<OrderResponse> orders = new ArrayList<>();
+        if (board == null) {
+            return orders;
+        }
+
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, Entry> e : board.entrySet()) {
+            Entry entry = e.getValue();
+            if (entry.order() != null) {
+                orders.add(entry.order());
+            } else if (now - entry.removedAtMillis() > TOMBSTONE_TTL_MILLIS) {
+                board.remove(e.getKey(), entry); // Dọn "bia mộ" cũ (chỉ xóa nếu chưa bị ghi đè)
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * Ghi trạng thái mới nhất của đơn hàng vào bảng sau khi transaction hiện tại commit
+     * (rollback thì không ghi). Nếu không có transaction, ghi ngay.
+     *
+     * Phải gọi SAU KHI thay đổi của đơn hàng đã được flush (dòng đã bị khóa), để stamp phản ánh thứ tự commit.
+     */
+    public void applyAfterCommit(OrderResponse order) {
+        afterCommit(stamp -> apply(order, stamp));
+    }
+
+    /**
+     * Gỡ các đơn hàng khỏi bảng sau khi transaction hiện tại commit (thanh toán gộp cả bàn),
+     * không cần dựng OrderResponse.
+     */
+    public void removeAfterCommit(Long storeId, Collection<Long> orderIds) {
+        afterCommit(stamp -> orderIds.forEach(orderId -> put(storeId, orderId, null, stamp)));
+    }
+
+    private void afterCommit(LongConsumer write) {
+        if (WebSocketConfig.isRelay(brokerMode)) {
+            return;
+        }
+        long stamp = stamps.incrementAndGet();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            write.accept(stamp);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                write.accept(stamp);
+            }
+        });
+    }
+
+    /**
+     * Đơn ở trạng thái Bếp cần xem thì thêm/thay thế, ngược lại thì gỡ khỏi bảng.
+     */
+    void apply(OrderResponse order, long stamp) {
+        boolean active = ACTIVE_STATUSES.contains(order.status());
+        put(order.storeId(), order.id(), active ? order : null, stamp);
+    }
+
+    // order = null -> "bia mộ". Bản ghi có stamp cũ hơn bản đang có sẽ bị bỏ qua.
+    private void put(Long storeId, Long orderId, OrderResponse order, long stamp) {
+        boards.computeIfAbsent(storeId, id -> new ConcurrentSkipListMap<>())
+                .compute(orderId, (id, current) -> {
+                    if (current != null && current.stamp() > stamp) {
+                        return current;
+                    }
+                    return order != null
+                            ? new Entry(stamp, order, 0)
+                            : new Entry(stamp, null, System.currentTimeMillis());
+                });
+    }
+}
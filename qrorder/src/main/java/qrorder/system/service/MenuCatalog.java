@@ -0,0 +1,308 @@
+package qrorder.system.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import qrorder.system.config.WebSocketConfig;
+import qrorder.system.dto.event.MenuEvent;
+import qrorder.system.dto.response.CategoryResponse;
+import qrorder.system.dto.response.MenuItemResponse;
+import qrorder.system.repository.CategoryRepository;
+import qrorder.system.repository.MenuItemRepository;
+import qrorder.system.repository.StoreRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Thực đơn công khai của từng chi nhánh (danh mục + món chưa xóa), giữ trong bộ nhớ dưới dạng ảnh chụp bất biến.
+ *
+ * /api/public/categories và /api/public/menu-items đọc từ đây thay vì truy vấn DB ở mỗi lần khách quét QR.
+ * Mỗi ảnh chụp mang phiên bản thực đơn lưu trong DB (store.menu_version) và ETag tính từ phiên bản + nội dung,
+ * nên điện thoại quay lại với đúng phiên bản đang hiển thị nhận 304.
+ *
+ * Mọi thao tác ghi của MenuService gọi recordChange/recordItemChange trong transaction của nó: phiên bản tăng 1
+ * cho MỖI thao tác ghi (khóa dòng store đến khi commit), sau commit ảnh chụp bị hủy và một MenuEvent mang
+ * đúng phiên bản đó được gửi tới /topic/menu/{storeId}. Phiên bản không về 1 khi khởi động lại và giống nhau
+ * trên mọi node. Lần đọc tiếp theo dựng lại ảnh chụp trong một transaction chỉ đọc (phiên bản + danh mục + món
+ * cùng một lần đọc nhất quán). Mỗi ảnh chụp ghi lại "thế hệ" lúc bắt đầu đọc DB: bị hủy trong lúc đang dựng
+ * thì ảnh chụp đó đã cũ ngay từ đầu và lần đọc sau dựng lại (giống stamp của KitchenBoard).
+ * Khi chạy nhiều node (broker relay), node khác không nhận afterCommit: tối đa mỗi RELAY_CHECK_MILLIS
+ * đọc lại phiên bản trong DB (một truy vấn theo khóa chính), khác phiên bản của ảnh chụp thì dựng lại.
+ *
+ * [MỚI] JSON trả cho khách (danh mục, toàn bộ món, món theo từng danh mục) được serialize và nén gzip
+ * một lần khi dựng ảnh chụp; controller ghi thẳng mảng byte, không serialize lại cho từng điện thoại.
+ *
+ * [MỚI] Chỉ đổi tình trạng/giá một món: sự kiện ITEM_UPDATED mang giá trị mới, khách cập nhật giỏ hàng
+ * mà không tải lại thực đơn; các thay đổi khác gửi MENU_CHANGED để khách tải lại.
+ */
+@Component
+public class MenuCatalog {
+
+    private static final long RELAY_CHECK_MILLIS = 1_000;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private MenuItemRepository menuItemRepository;
+
+    @Autowired
+    private StoreRepository storeRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper; // Cùng ObjectMapper với MessageConverter của Spring MVC
+
+    @Autowired
+    private OrderEventDispatcher orderEventDispatcher;
+
+    @Value("${app.websocket.broker:simple}")
+    private String brokerMode;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    private TransactionTemplate readOnly;
+
+    // storeId -> số lần bị hủy (cũng là khóa dựng lại của chi nhánh)
+    private final Map<Long, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    // checkedAtMillis: lần cuối xác nhận phiên bản của ảnh chụp vẫn là phiên bản trong DB
+    private record Entry(Snapshot snapshot, long generation, long checkedAtMillis) {
+    }
+
+    @PostConstruct
+    void init() {
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    /**
+     * Ảnh chụp thực đơn của một chi nhánh (không đổi sau khi tạo).
+     * Chỉ giữ JSON đã mã hóa sẵn (bản gốc + gzip), không giữ danh sách món đã giải mã: mọi API chỉ trả về payload.
+     */
+    public record Snapshot(
+            Long storeId,
+            long version,
+            String etag,
+            Payload categoriesPayload,
+            Payload itemsPayload,
+            Map<Long, Payload> itemsPayloadByCategory
+    ) {
+
+        /**
+         * ETag của từng cách mã hóa (bản gzip là một representation khác nên cần ETag khác)
+         */
+        public String etag(boolean gzip) {
+            return gzip ? etag.substring(0, etag.length() - 1) + "-gz\"" : etag;
+        }
+
+        /**
+         * JSON đã mã hóa sẵn của món thuộc một danh mục (danh mục phải thuộc chi nhánh)
+         */
+        public Payload itemsPayloadOf(Long categoryId) {
+            Payload payload = itemsPayloadByCategory.get(categoryId);
+            if (payload == null) {
+                throw new AccessDeniedException("Danh mục không hợp lệ");
+            }
+            return payload;
+        }
+    }
+
+    /**
+     * Một phản hồi JSON đã serialize sẵn: bản gốc và bản nén gzip
+     */
+    public record Payload(byte[] json, byte[] gzip) {
+
+        public static Payload of(byte[] json) {
+            return new Payload(json, gzip(json));
+        }
+
+        public static byte[] gzip(byte[] data) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4 + 64);
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return compressed.toByteArray();
+        }
+
+        /**
+         * Header Accept-Encoding có chấp nhận gzip không: "gzip", "gzip, deflate, br", "*"...
+         * (bỏ qua nếu client ghi rõ q=0)
+         */
+        public static boolean acceptsGzip(String acceptEncoding) {
+            if (acceptEncoding == null) {
+                return false;
+            }
+            for (String token : acceptEncoding.split(",")) {
+                String[] parts = token.trim().split(";");
+                String coding = parts[0].trim();
+                if (!coding.equalsIgnoreCase("gzip") && !coding.equals("*")) {
+                    continue;
+                }
+                boolean refused = parts.length > 1 && parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+                if (!refused) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Ảnh chụp hiện tại của chi nhánh, dựng lại nếu chưa có / đã bị hủy
+     */
+    public Snapshot get(Long storeId) {
+        AtomicLong generation = generation(storeId);
+        Entry entry = entries.get(storeId);
+        if (isFresh(entry, generation)) {
+            return entry.snapshot();
+        }
+
+        synchronized (generation) { // Nhiều khách cùng quét QR -> chỉ một luồng truy vấn DB
+            entry = entries.get(storeId);
+            if (isFresh(entry, generation)) {
+                return entry.snapshot();
+            }
+            long seen = generation.get();
+            long now = System.currentTimeMillis();
+            if (entry != null && entry.generation() == seen && isCurrent(entry.snapshot())) {
+                // Relay: không node nào ghi thực đơn từ lần kiểm tra trước -> giữ ảnh chụp
+                entries.put(storeId, new Entry(entry.snapshot(), seen, now));
+                return entry.snapshot();
+            }
+            Snapshot rebuilt = readOnly.execute(status -> build(storeId));
+            entries.put(storeId, new Entry(rebuilt, seen, now));
+            return rebuilt;
+        }
+    }
+
+    /**
+     * Ghi nhận một thao tác ghi thực đơn (thêm/sửa/xóa món, danh mục). Gọi trong transaction của thao tác đó:
+     * tăng phiên bản, sau commit hủy ảnh chụp và gửi MENU_CHANGED để khách tải lại thực đơn
+     */
+    public void recordChange(Long storeId) {
+        long version = nextVersion(storeId);
+        publishAfterCommit(storeId, MenuEvent.menuChanged(version));
+    }
+
+    /**
+     * Như recordChange, cho thao tác chỉ đổi tình trạng/giá của một món: gửi ITEM_UPDATED kèm giá trị mới
+     */
+    public void recordItemChange(Long storeId, MenuItemResponse item) {
+        long version = nextVersion(storeId);
+        publishAfterCommit(storeId, MenuEvent.itemUpdated(version, item.id(), item.isOutOfStock(), item.price()));
+    }
+
+    private long nextVersion(Long storeId) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Thay đổi thực đơn phải nằm trong transaction");
+        }
+        storeRepository.incrementMenuVersion(storeId);
+        return storeRepository.findMenuVersion(storeId)
+                .orElseThrow(() -> new AccessDeniedException("Không tìm thấy chi nhánh"));
+    }
+
+    private void publishAfterCommit(Long storeId, MenuEvent event) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(storeId);
+                orderEventDispatcher.publishMenuEvent(storeId, event);
+            }
+        });
+    }
+
+    private void invalidate(Long storeId) {
+        generation(storeId).incrementAndGet();
+    }
+
+    private AtomicLong generation(Long storeId) {
+        return generations.computeIfAbsent(storeId, id -> new AtomicLong());
+    }
+
+    private boolean isFresh(Entry entry, AtomicLong generation) {
+        if (entry == null || entry.generation() != generation.get()) {
+            return false;
+        }
+        return !WebSocketConfig.isRelay(brokerMode)
+                || System.currentTimeMillis() - entry.checkedAtMillis() <= RELAY_CHECK_MILLIS;
+    }
+
+    // Phiên bản trong DB vẫn là phiên bản của ảnh chụp (chỉ cần ở chế độ relay: node này có thể bỏ lỡ thay đổi)
+    private boolean isCurrent(Snapshot snapshot) {
+        return WebSocketConfig.isRelay(brokerMode)
+                && storeRepository.findMenuVersion(snapshot.storeId()).orElse(-1L) == snapshot.version();
+    }
+
+    // Chạy trong transaction chỉ đọc: phiên bản khớp đúng nội dung đọc được
+    private Snapshot build(Long storeId) {
+        long version = storeRepository.findMenuVersion(storeId)
+                .orElseThrow(() -> new AccessDeniedException("Không tìm thấy chi nhánh"));
+        List<CategoryResponse> categories = categoryRepository.findCategoryRowsByStore(storeId);
+        List<MenuItemResponse> items = menuItemRepository.findMenuRowsByStore(storeId);
+
+        byte[] categoriesJson = toJson(categories);
+        byte[] itemsJson = toJson(items);
+        Map<Long, Payload> itemsByCategory = new LinkedHashMap<>();
+        for (CategoryResponse category : categories) {
+            List<MenuItemResponse> ofCategory = items.stream()
+                    .filter(item -> item.categoryId().equals(category.id()))
+                    .toList();
+            itemsByCategory.put(category.id(), Payload.of(toJson(ofCategory)));
+        }
+
+        String etag = etag(version, digest(categoriesJson, itemsJson));
+        return new Snapshot(storeId, version, etag,
+                Payload.of(categoriesJson), Payload.of(itemsJson), Map.copyOf(itemsByCategory));
+    }
+
+    private byte[] toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Không thể serialize thực đơn: " + e.getMessage(), e);
+        }
+    }
+
+    // ETag gồm cả phiên bản: bản lưu trong cache của trình duyệt (kèm header X-Menu-Version) luôn khớp
+    // đúng một phiên bản, kể cả khi nội dung quay lại giống một phiên bản cũ (bật rồi tắt hết hàng).
+    // Băm nội dung để ETag vẫn khác khi DB được khôi phục về phiên bản thấp hơn
+    private static String etag(long version, String contentHash) {
+        return "\"" + version + "-" + contentHash + "\"";
+    }
+
+    // Băm đúng các byte JSON gửi cho khách
+    private static String digest(byte[] categoriesJson, byte[] itemsJson) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update(categoriesJson);
+            sha256.update(itemsJson);
+            return HexFormat.of().formatHex(sha256.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 không khả dụng", e);
+        }
+    }
+}
@@ -16,6 +16,7 @@ import qrorder.system.repository.MenuItemRepository;
 import qrorder.system.repository.StoreRepository;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
@@ -31,6 +32,9 @@ public class MenuService {
     @Autowired
     private StoreRepository storeRepository;
 
+    @Autowired
+    private MenuCatalog menuCatalog; // Thực đơn công khai trong bộ nhớ: mỗi thao tác ghi tăng phiên bản và báo cho khách
+
     // === CATEGORY (Giữ nguyên) ===
 
     public CategoryResponse createCategory(CreateCategoryRequest request, Long storeId) {
@@ -42,6 +46,7 @@ public class MenuService {
         category.setStore(store);
 
         Category savedCategory = categoryRepository.save(category);
+        menuCatalog.recordChange(storeId);
         return new CategoryResponse(savedCategory.getId(), savedCategory.getName(), savedCategory.getStore().getId());
     }
 
@@ -58,6 +63,7 @@ public class MenuService {
 
         category.setName(request.name());
         Category updatedCategory = categoryRepository.save(category);
+        menuCatalog.recordChange(storeId);
         return new CategoryResponse(updatedCategory.getId(), updatedCategory.getName(), updatedCategory.getStore().getId());
     }
 
@@ -65,6 +71,7 @@ public class MenuService {
         Category category = categoryRepository.findByIdAndStoreId(categoryId, storeId)
                 .orElseThrow(() -> new AccessDeniedException("Không tìm thấy danh mục hoặc bạn không có quyền"));
         categoryRepository.delete(category);
+        menuCatalog.recordChange(storeId);
     }
 
     // === MENU ITEM (CẬP NHẬT XÓA MỀM) ===
@@ -87,6 +94,7 @@ public class MenuService {
         item.setDeleted(false); // [QUAN TRỌNG] Mặc định chưa xóa
 
         MenuItem savedItem = menuItemRepository.save(item);
+        menuCatalog.recordChange(storeId);
         return toMenuItemResponse(savedItem);
     }
 
@@ -117,6 +125,12 @@ public class MenuService {
         Category category = categoryRepository.findByIdAndStoreId(request.categoryId(), storeId)
                 .orElseThrow(() -> new AccessDeniedException("Danh mục không hợp lệ"));
 
+        // [MỚI] Chỉ đổi giá/tình trạng -> khách cập nhật tại chỗ; đổi tên/mô tả/ảnh/danh mục -> khách tải lại thực đơn
+        boolean onlyPriceOrStock = Objects.equals(item.getName(), request.name())
+                && Objects.equals(item.getDescription(), request.description())
+                && Objects.equals(item.getImageUrl(), request.imageUrl())
+                && item.getCategory().getId().equals(category.getId());
+
         item.setName(request.name());
         item.setDescription(request.description());
         item.setPrice(request.price());
@@ -125,7 +139,13 @@ public class MenuService {
         item.setOutOfStock(request.isOutOfStock() != null && request.isOutOfStock());
 
         MenuItem updatedItem = menuItemRepository.save(item);
-        return toMenuItemResponse(updatedItem);
+        MenuItemResponse response = toMenuItemResponse(updatedItem);
+        if (onlyPriceOrStock) {
+            menuCatalog.recordItemChange(storeId, response);
+        } else {
+            menuCatalog.recordChange(storeId);
+        }
+        return response;
     }
 
     /**
@@ -139,6 +159,7 @@ public class MenuService {
         // Xóa mềm: Đánh dấu là đã xóa
         item.setDeleted(true);
         menuItemRepository.save(item);
+        menuCatalog.recordChange(storeId);
     }
 
     @Transactional
@@ -148,8 +169,10 @@ public class MenuService {
 
         item.setOutOfStock(!item.isOutOfStock());
         MenuItem updatedItem = menuItemRepository.save(item);
+        MenuItemResponse response = toMenuItemResponse(updatedItem);
+        menuCatalog.recordItemChange(storeId, response); // [MỚI] Khách thấy "Hết hàng" ngay, không đợi lúc đặt món
 
-        return toMenuItemResponse(updatedItem);
+        return response;
     }
 
     private MenuItemResponse toMenuItemResponse(MenuItem item) {
@@ -0,0 +1,340 @@
+package qrorder.system.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.MimeTypeUtils;
+import qrorder.system.dto.event.MenuEvent;
+import qrorder.system.dto.event.OrderEvent;
+import qrorder.system.dto.event.TableStatusEvent;
+import qrorder.system.util.ExpiringCache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gửi sự kiện đơn hàng (OrderEvent) qua WebSocket, kèm số thứ tự tăng dần cho TỪNG topic.
+ *
+ * Luồng xử lý:
+ * (1) Trong transaction: sự kiện được xếp vào hàng đợi của transaction (gộp theo đơn hàng), KHÔNG gửi gì.
+ * (2) Sau khi commit: hàng đợi được chuyển sang bộ gộp; rollback thì bị bỏ (không có sự kiện "ma").
+ * (3) Bộ gộp giữ mỗi đơn hàng trong một cửa sổ ngắn (app.websocket.coalesce-window-ms), các cập nhật
+ *     tiếp theo của cùng đơn được gộp vào, rồi gửi MỘT tin nhắn trên luồng riêng "order-events"
+ *     (transaction và connection DB không phải chờ broker).
+ *
+ * Sự kiện thanh toán gộp cả bàn (TABLE_SETTLED, nhiều đơn) không qua bộ gộp: khi gửi, các sự kiện CŨ HƠN
+ * của những đơn đó đang chờ trong cửa sổ được gửi trước.
+ *
+ * Sự kiện đến muộn (afterCommit chạy sau khi bản mới hơn của cùng đơn đã được gửi, ví dụ gọi thêm món chạy
+ * song song với Bếp đổi trạng thái) KHÔNG bị bỏ: nó là delta, bỏ đi là mất dòng món. Nó được gộp với mọi
+ * thay đổi đã gửi sau nó rồi mới gửi, nên client áp dụng vẫn ra đúng trạng thái mới nhất (không lùi trạng thái).
+ *
+ * Mỗi sự kiện chỉ được serialize MỘT lần thành mảng byte; cùng mảng byte đó được gửi tới mọi topic
+ * (chỉ header, gồm seq, là riêng cho từng topic).
+ *
+ * Số thứ tự nằm trong header STOMP "seq". Client ghi nhớ seq cuối cùng;
+ * nếu thấy nhảy cóc (mất sự kiện, vừa kết nối lại...) thì gọi API snapshot để đồng bộ lại.
+ * Sự kiện chỉ được gửi sau khi commit, nên snapshot đọc sau khi lấy seq luôn bao gồm mọi sự kiện <= seq.
+ *
+ * Seq được đếm riêng trên từng node. Khi chạy nhiều node sau broker relay, một topic nhận sự kiện
+ * từ nhiều node, nên mỗi tin nhắn kèm thêm header "node" (ID ngẫu nhiên của tiến trình);
+ * client theo dõi seq theo từng cặp (node, topic), snapshot cho biết node đã phục vụ nó.
+ */
+@Component
+public class OrderEventDispatcher {
+
+    public static final String SEQ_HEADER = "seq";
+    public static final String NODE_HEADER = "node";
+
+    // Mới cho mỗi lần khởi động: node khởi động lại (seq đếm lại từ 0) được client coi là node mới
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Value("${app.websocket.coalesce-window-ms:50}")
+    private long coalesceWindowMillis;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "order-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+
+    // Sự kiện đã commit, đang chờ hết cửa sổ gộp (orderId -> sự kiện đã gộp)
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+
+    // Những gì đã gửi gần đây theo đơn hàng (gộp dồn), để gộp sự kiện cũ hơn đến muộn trước khi gửi
+    private final ExpiringCache<Long, Published> lastPublished = new ExpiringCache<>(10_000, 60 * 1000L);
+
+    private final AtomicLong stamps = new AtomicLong();
+    private final LongAdder coalesced = new LongAdder();
+
+    private record Pending(Long storeId, OrderEvent event, long stamp) {
+
+        // Gộp theo thứ tự stamp (afterCommit của hai transaction có thể chạy lệch thứ tự)
+        Pending mergedWith(Pending other) {
+            Pending older = stamp <= other.stamp() ? this : other;
+            Pending newer = older == this ? other : this;
+            return new Pending(newer.storeId(), older.event().mergedWith(newer.event()), newer.stamp());
+        }
+    }
+
+    // stamp: stamp mới nhất đã gửi; event: mọi sự kiện đã gửi của đơn, gộp theo thứ tự stamp
+    private record Published(long stamp, OrderEvent event) {
+
+        Published after(long nextStamp, OrderEvent next) {
+            return new Published(nextStamp, event.mergedWith(next));
+        }
+    }
+
+    public static String kitchenTopic(Long storeId) {
+        return "/topic/kitchen/" + storeId;
+    }
+
+    public static String tableTopic(Long tableId) {
+        return "/topic/table/" + tableId;
+    }
+
+    public static String staffTablesTopic(Long storeId) {
+        return "/topic/staff/" + storeId + "/tables";
+    }
+
+    public static String menuTopic(Long storeId) {
+        return "/topic/menu/" + storeId;
+    }
+
+    /**
+     * Xếp sự kiện vào hàng đợi của transaction hiện tại; chỉ được gửi sau khi commit.
+     * Nếu không có transaction, đưa thẳng vào bộ gộp.
+     *
+     * Nên gọi SAU KHI thay đổi của đơn hàng đã được flush (dòng đã bị khóa), để stamp phản ánh thứ tự commit.
+     */
+    public void dispatchAfterCommit(Long storeId, OrderEvent event) {
+        Pending incoming = new Pending(storeId, event, stamps.incrementAndGet());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(incoming);
+            return;
+        }
+        currentTransactionQueue().add(incoming);
+    }
+
+    /**
+     * ID của node này (header "node" của mọi sự kiện gửi từ đây)
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Số thứ tự của sự kiện cuối cùng node này đã gửi tới topic (0 nếu chưa có)
+     */
+    public long currentSeq(String destination) {
+        AtomicLong seq = sequences.get(destination);
+        return seq != null ? seq.get() : 0;
+    }
+
+    /**
+     * Số sự kiện đã được gộp vào một sự kiện khác (không phải gửi riêng)
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // === HÀNG ĐỢI THEO TRANSACTION ===
+
+    private TransactionQueue currentTransactionQueue() {
+        TransactionQueue queue = (TransactionQueue) TransactionSynchronizationManager.getResource(this);
+        if (queue == null) {
+            queue = new TransactionQueue();
+            TransactionSynchronizationManager.bindResource(this, queue);
+            TransactionSynchronizationManager.registerSynchronization(queue);
+        }
+        return queue;
+    }
+
+    private class TransactionQueue implements TransactionSynchronization {
+
+        private final Map<Long, Pending> events = new LinkedHashMap<>();
+        private final List<Pending> settlements = new ArrayList<>();
+
+        void add(Pending incoming) {
+            if (incoming.event().orderId() == null) {
+                settlements.add(incoming);
+                return;
+            }
+            Pending current = events.get(incoming.event().orderId());
+            if (current != null) {
+                coalesced.increment();
+                incoming = current.mergedWith(incoming);
+            }
+            events.put(incoming.event().orderId(), incoming);
+        }
+
+        @Override
+        public void afterCommit() {
+            events.values().forEach(OrderEventDispatcher.this::enqueue);
+            settlements.forEach(OrderEventDispatcher.this::enqueue);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(OrderEventDispatcher.this);
+        }
+    }
+
+    // === BỘ GỘP + GỬI ===
+
+    private void enqueue(Pending incoming) {
+        if (incoming.event().orderId() == null) {
+            executor.execute(() -> settle(incoming));
+            return;
+        }
+        Long orderId = incoming.event().orderId();
+        boolean[] opened = {false};
+        pending.compute(orderId, (id, current) -> {
+            if (current == null) {
+                opened[0] = true;
+                return incoming;
+            }
+            coalesced.increment();
+            return current.mergedWith(incoming);
+        });
+        // Sự kiện đầu tiên của đơn trong cửa sổ -> hẹn giờ gửi
+        if (opened[0]) {
+            executor.schedule(() -> flush(orderId), coalesceWindowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush(Long orderId) {
+        Pending ready = pending.remove(orderId);
+        if (ready == null) {
+            return;
+        }
+        OrderEvent outgoing = ready.event();
+        Published last = lastPublished.get(orderId);
+        if (last == null) {
+            lastPublished.put(orderId, new Published(ready.stamp(), outgoing));
+        } else if (last.stamp() < ready.stamp()) {
+            lastPublished.put(orderId, last.after(ready.stamp(), outgoing));
+        } else {
+            // Cũ hơn bản đã gửi (afterCommit đến muộn): gửi kèm các thay đổi mới hơn để không ghi đè chúng
+            outgoing = outgoing.mergedWith(last.event());
+            lastPublished.put(orderId, new Published(last.stamp(), outgoing));
+        }
+
+        try {
+            publish(ready.storeId(), outgoing);
+        } catch (RuntimeException e) {
+            // Lỗi broker xảy ra sau khi seq đã tăng: client thấy seq nhảy cóc ở tin kế tiếp và tự đồng bộ lại
+            System.out.println("Lỗi gửi sự kiện đơn hàng " + orderId + ": " + e.getMessage());
+        }
+    }
+
+    // Chạy trên luồng "order-events" (cùng luồng với flush) nên thứ tự gửi theo từng đơn được giữ nguyên
+    private void settle(Pending settlement) {
+        for (Long orderId : settlement.event().orderIds()) {
+            Pending older = pending.get(orderId);
+            if (older != null && older.stamp() < settlement.stamp()) {
+                flush(orderId); // Gửi trước sự kiện cũ hơn đang chờ của đơn
+            }
+            OrderEvent paid = settlement.event().settledPart(orderId);
+            Published last = lastPublished.get(orderId);
+            if (last == null) {
+                lastPublished.put(orderId, new Published(settlement.stamp(), paid));
+            } else if (last.stamp() < settlement.stamp()) {
+                lastPublished.put(orderId, last.after(settlement.stamp(), paid));
+            }
+        }
+
+        try {
+            publish(settlement.storeId(), settlement.event());
+        } catch (RuntimeException e) {
+            System.out.println("Lỗi gửi sự kiện thanh toán bàn " + settlement.event().tableId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gửi ngay một sự kiện (không qua hàng đợi/bộ gộp) tới topic Bếp và topic bàn.
+     */
+    public void publish(Long storeId, OrderEvent event) {
+        byte[] payload = encode(event);
+        if (event.type().isKitchenVisible()) {
+            send(kitchenTopic(storeId), payload);
+        }
+        send(tableTopic(event.tableId()), payload);
+    }
+
+    /**
+     * [MỚI] Gửi sự kiện chuyển trạng thái bàn tới /topic/staff/{storeId}/tables trên luồng "order-events".
+     * Được gọi theo đúng thứ tự chuyển trạng thái (TableOccupancy giữ khóa chi nhánh khi gọi), luồng đơn giữ nguyên thứ tự đó.
+     */
+    public void publishTableStatus(Long storeId, TableStatusEvent event) {
+        executor.execute(() -> {
+            try {
+                send(staffTablesTopic(storeId), encode(event));
+            } catch (RuntimeException e) {
+                System.out.println("Lỗi gửi trạng thái bàn " + event.tableId() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * [MỚI] Gửi thay đổi thực đơn tới khách đang xem thực đơn (/topic/menu/{storeId})
+     */
+    public void publishMenuEvent(Long storeId, MenuEvent event) {
+        executor.execute(() -> {
+            try {
+                send(menuTopic(storeId), encode(event));
+            } catch (RuntimeException e) {
+                System.out.println("Lỗi gửi thay đổi thực đơn v" + event.menuVersion() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    // Serialize bằng đúng MessageConverter của WebSocket (cùng ObjectMapper với convertAndSend)
+    private byte[] encode(Object event) {
+        Message<?> message = messagingTemplate.getMessageConverter().toMessage(event, null);
+        if (message == null || !(message.getPayload() instanceof byte[] payload)) {
+            throw new RuntimeException("Không thể serialize sự kiện: " + event);
+        }
+        return payload;
+    }
+
+    // Tăng seq và gửi trong cùng một khóa -> client nhận đúng thứ tự seq
+    private void send(String destination, byte[] payload) {
+        AtomicLong seq = sequences.computeIfAbsent(destination, d -> new AtomicLong());
+        synchronized (seq) {
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            headers.setNativeHeader(SEQ_HEADER, String.valueOf(seq.incrementAndGet()));
+            headers.setNativeHeader(NODE_HEADER, nodeId);
+            headers.setLeaveMutable(true);
+            messagingTemplate.send(destination, MessageBuilder.createMessage(payload, headers.getMessageHeaders()));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package qrorder.system.service;
+
+import org.springframework.stereotype.Component;
+import qrorder.system.dto.response.CacheStatsResponse;
+import qrorder.system.dto.response.OrderResponse;
+import qrorder.system.util.ExpiringCache;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Chống đặt đơn trùng khi khách bấm lại / mạng yếu gửi lại POST /api/public/order.
+ *
+ * Client gửi kèm idempotencyKey (tạo một lần cho mỗi lần bấm "Đặt món", dùng lại khi gửi lại).
+ * Khóa được nhớ theo (chi nhánh, mã bàn, key):
+ * - Lần đầu: lưu một Future vào bảng "đang đặt" (nguyên tử), đặt đơn, rồi hoàn tất Future bằng OrderResponse
+ *   và chuyển kết quả sang bộ nhớ có giới hạn + TTL.
+ * - Gửi lại, kể cả ĐỒNG THỜI với lần đầu: chờ Future đó (hoặc lấy kết quả đã lưu) và trả về đúng
+ *   OrderResponse của lần đầu, không mở transaction, không truy vấn DB.
+ * - Lần đầu thất bại (kể cả Error): Future hoàn tất bằng lỗi và bị gỡ, lần gửi lại sau đó được đặt đơn bình thường.
+ *
+ * Future đang chờ KHÔNG BAO GIỜ bị loại khỏi bộ nhớ (loại đi thì bản gửi lại đặt thêm một đơn):
+ * bảng "đang đặt" chỉ chứa các request đang chạy; khi quá MAX_IN_FLIGHT thì từ chối key mới.
+ *
+ * Lần đầu phải được gọi NGOÀI transaction (từ controller), để Future chỉ hoàn tất sau khi đơn đã commit.
+ * Khóa chỉ được nhớ trên node đã nhận request đầu tiên.
+ */
+@Component
+public class OrderIdempotencyStore {
+
+    // Khách thường gửi lại trong vài giây; giữ lâu hơn để phủ cả trường hợp mở lại trang
+    private static final long TTL_MILLIS = 10 * 60 * 1000L;
+    private static final int MAX_KEYS = 10_000;
+    private static final int MAX_IN_FLIGHT = 1_000;
+    private static final int MAX_KEY_LENGTH = 64;
+
+    // Thời gian tối đa một request gửi lại chờ request đầu tiên
+    private static final long WAIT_SECONDS = 10;
+
+    private final Map<String, CompletableFuture<OrderResponse>> inFlight = new ConcurrentHashMap<>();
+    private final ExpiringCache<String, OrderResponse> placed = new ExpiringCache<>(MAX_KEYS, TTL_MILLIS);
+
+    /**
+     * Đặt đơn đúng một lần cho mỗi idempotencyKey của bàn.
+     * Không có key -> gọi placement như bình thường.
+     */
+    public OrderResponse placeOnce(Long storeId, String tableAccessKey, String idempotencyKey,
+                                   Supplier<OrderResponse> placement) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return placement.get();
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new RuntimeException("Mã chống trùng đơn hàng không hợp lệ");
+        }
+
+        String key = storeId + ":" + tableAccessKey + ":" + idempotencyKey;
+        OrderResponse done = placed.get(key);
+        if (done != null) {
+            return done;
+        }
+        if (inFlight.size() >= MAX_IN_FLIGHT) {
+            throw new RuntimeException("Hệ thống đang bận, vui lòng thử lại sau giây lát");
+        }
+
+        CompletableFuture<OrderResponse> mine = new CompletableFuture<>();
+        CompletableFuture<OrderResponse> first = inFlight.putIfAbsent(key, mine);
+        if (first != null) {
+            return await(first);
+        }
+
+        try {
+            // Lần đầu có thể vừa xong giữa lúc tra kết quả và lúc giữ chỗ (kết quả được lưu trước khi gỡ Future)
+            OrderResponse response = placed.get(key);
+            if (response == null) {
+                response = placement.get();
+                placed.put(key, response);
+            }
+            mine.complete(response);
+            return response;
+        } catch (Throwable e) {
+            // Các request đang chờ nhận cùng lỗi
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            // Thành công: bản gửi lại đọc kết quả đã lưu; thất bại: cho phép gửi lại
+            inFlight.remove(key, mine);
+        }
+    }
+
+    public CacheStatsResponse getStats() {
+        return new CacheStatsResponse("order-idempotency", placed.hitCount(), placed.missCount(), placed.size() + inFlight.size());
+    }
+
+    private OrderResponse await(CompletableFuture<OrderResponse> first) {
+        try {
+            return first.get(WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("Đặt món thất bại, vui lòng thử lại");
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Đơn hàng đang được xử lý, vui lòng thử lại sau giây lát");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Đơn hàng đang được xử lý, vui lòng thử lại sau giây lát");
+        }
+    }
+}
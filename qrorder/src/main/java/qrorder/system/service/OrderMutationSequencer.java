@@ -0,0 +1,109 @@
+package qrorder.system.service;
+
+import org.springframework.stereotype.Component;
+import qrorder.system.dto.response.SequencerStatsResponse;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Hàng đợi ghi theo chi nhánh: mọi thao tác sửa đơn hàng của CÙNG một chi nhánh chạy lần lượt (một "người ghi"),
+ * các chi nhánh khác nhau chạy song song hoàn toàn.
+ *
+ * Các thao tác sửa đơn (đổi trạng thái, thêm/sửa/hủy món...) đều đọc - sửa - ghi totalPrice/status mà không
+ * có version; chạy xen kẽ thì mất cập nhật. Thay vì khóa dòng ở DB, mỗi chi nhánh có một "làn" (khóa công bằng,
+ * các luồng chờ xếp hàng theo thứ tự đến). Làn chỉ tồn tại khi có thao tác đang chạy/đang chờ.
+ *
+ * Transaction phải được mở BÊN TRONG làn (sau khi tới lượt) và commit trước khi nhả làn,
+ * để thao tác kế tiếp luôn đọc được dữ liệu đã commit của thao tác trước.
+ * Chỉ có tác dụng trong một tiến trình (khi chạy nhiều node, mỗi node có hàng đợi riêng).
+ */
+@Component
+public class OrderMutationSequencer {
+
+    // Chờ quá lâu -> báo bận thay vì giữ luồng HTTP vô hạn
+    private static final long MAX_WAIT_MILLIS = 10_000;
+
+    private final Map<Long, Lane> lanes = new ConcurrentHashMap<>();
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger peakWaiting = new AtomicInteger();
+
+    private static final class Lane {
+        final ReentrantLock lock = new ReentrantLock(true);
+        int users; // Số thao tác đang chạy + đang chờ (chỉ sửa trong lanes.compute)
+    }
+
+    /**
+     * Chạy thao tác khi tới lượt của chi nhánh và trả về kết quả (ngoại lệ được ném lại nguyên vẹn).
+     */
+    public <T> T run(Long storeId, Supplier<T> mutation) {
+        Lane lane = lanes.compute(storeId, (id, current) -> {
+            Lane l = current != null ? current : new Lane();
+            l.users++;
+            return l;
+        });
+        try {
+            acquire(lane);
+            try {
+                return mutation.get();
+            } finally {
+                lane.lock.unlock();
+            }
+        } finally {
+            lanes.computeIfPresent(storeId, (id, l) -> --l.users == 0 ? null : l);
+        }
+    }
+
+    /**
+     * Số thao tác đang chờ tới lượt của một chi nhánh
+     */
+    public int queueDepth(Long storeId) {
+        Lane lane = lanes.get(storeId);
+        return lane != null ? lane.lock.getQueueLength() : 0;
+    }
+
+    public SequencerStatsResponse getStats() {
+        long count = executed.sum();
+        return new SequencerStatsResponse(
+                count,
+                lanes.size(),
+                waiting.get(),
+                peakWaiting.get(),
+                count > 0 ? TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.sum() / count) : 0,
+                TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get())
+        );
+    }
+
+    private void acquire(Lane lane) {
+        long start = System.nanoTime();
+        int depth = waiting.incrementAndGet();
+        peakWaiting.accumulateAndGet(depth, Math::max);
+        boolean acquired;
+        try {
+            acquired = lane.lock.tryLock(MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Hệ thống đang bận, vui lòng thử lại");
+        } finally {
+            waiting.decrementAndGet();
+        }
+        if (!acquired) {
+            throw new RuntimeException("Hệ thống đang bận, vui lòng thử lại");
+        }
+
+        long waited = System.nanoTime() - start;
+        executed.increment();
+        totalWaitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+    }
+}
@@ -0,0 +1,203 @@
+package qrorder.system.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+import qrorder.system.dto.projection.OrderLineRow;
+import qrorder.system.dto.projection.OrderRow;
+import qrorder.system.dto.request.OrderHistoryQuery;
+import qrorder.system.dto.response.OrderItemResponse;
+import qrorder.system.dto.response.OrderPageResponse;
+import qrorder.system.dto.response.OrderResponse;
+import qrorder.system.enums.OrderStatus;
+import qrorder.system.repository.CustomerOrderRepository;
+import qrorder.system.repository.OrderItemRepository;
+import qrorder.system.util.Money;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Đường ĐỌC danh sách đơn hàng.
+ *
+ * Mỗi danh sách được dựng từ đúng 2 truy vấn projection:
+ * (1) các đơn hàng (kèm tên bàn), (2) toàn bộ món của các đơn đó (kèm tên món).
+ * Không dùng entity nên không có lazy load MenuItem/TableInfo/Store theo từng dòng (N+1).
+ */
+@Service
+@Transactional(readOnly = true)
+public class OrderReadService {
+
+    @Autowired
+    private CustomerOrderRepository orderRepository;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    // [MỚI] Lịch sử đơn hàng: mặc định 20 đơn/trang, tối đa 100
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final List<OrderStatus> ALL_STATUSES = List.of(OrderStatus.values());
+    // Mốc thời gian khi không lọc (nằm trong miền giá trị DATETIME của MySQL)
+    private static final LocalDateTime MIN_CREATED_AT = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_CREATED_AT = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    /**
+     * Đơn hàng của chi nhánh theo trạng thái (Bếp)
+     */
+    public List<OrderResponse> findByStore(Long storeId, Collection<OrderStatus> statuses) {
+        return assemble(orderRepository.findOrderRowsByStore(storeId, statuses));
+    }
+
+    /**
+     * Đơn hàng của mọi chi nhánh theo trạng thái (dựng lại KitchenBoard khi khởi động)
+     */
+    public List<OrderResponse> findByStatus(Collection<OrderStatus> statuses) {
+        return assemble(orderRepository.findOrderRowsByStatus(statuses));
+    }
+
+    /**
+     * Đơn hàng của một bàn theo trạng thái (Khách hàng)
+     */
+    public List<OrderResponse> findByTable(Long tableId, Long storeId, Collection<OrderStatus> statuses) {
+        return assemble(orderRepository.findOrderRowsByTableAndStatus(tableId, storeId, statuses));
+    }
+
+    /**
+     * [MỚI] Lịch sử đơn hàng của chi nhánh, mới nhất trước (phân trang keyset)
+     */
+    public OrderPageResponse findHistoryByStore(Long storeId, OrderHistoryQuery query) {
+        HistoryPage page = HistoryPage.of(query);
+        return toPage(page, orderRepository.findOrderRowPageByStore(
+                storeId, page.statuses(), page.from(), page.beforeCreatedAt(), page.beforeId(), page.fetchLimit()));
+    }
+
+    /**
+     * [MỚI] Lịch sử đơn hàng của một bàn, mới nhất trước (phân trang keyset)
+     */
+    public OrderPageResponse findHistoryByTable(Long tableId, Long storeId, OrderHistoryQuery query) {
+        HistoryPage page = HistoryPage.of(query);
+        return toPage(page, orderRepository.findOrderRowPageByTable(
+                tableId, storeId, page.statuses(), page.from(), page.beforeCreatedAt(), page.beforeId(), page.fetchLimit()));
+    }
+
+    // Helper: Cắt dòng dư và tạo con trỏ từ dòng cuối của trang
+    private OrderPageResponse toPage(HistoryPage page, List<OrderRow> rows) {
+        if (rows.size() <= page.size()) {
+            return new OrderPageResponse(assemble(rows), null);
+        }
+        List<OrderRow> pageRows = rows.subList(0, page.size());
+        OrderRow last = pageRows.get(pageRows.size() - 1);
+        return new OrderPageResponse(assemble(pageRows), encodeCursor(last.createdAt(), last.id()));
+    }
+
+    /**
+     * Tham số một trang lịch sử đã chuẩn hóa: giá trị mặc định thay cho tham số trống,
+     * mốc trên là con trỏ (createdAt, id) của dòng cuối trang trước, hoặc mốc "to" nếu là trang đầu.
+     */
+    private record HistoryPage(Collection<OrderStatus> statuses, LocalDateTime from,
+                               LocalDateTime beforeCreatedAt, Long beforeId, int size) {
+
+        static HistoryPage of(OrderHistoryQuery query) {
+            Collection<OrderStatus> statuses = query.statuses() == null || query.statuses().isEmpty()
+                    ? ALL_STATUSES : query.statuses();
+            LocalDateTime from = query.from() != null ? query.from() : MIN_CREATED_AT;
+            LocalDateTime to = query.to() != null ? query.to() : MAX_CREATED_AT;
+            int size = query.limit() == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(query.limit(), MAX_PAGE_SIZE));
+
+            // Trang đầu: createdAt < to (id < 0 không bao giờ đúng)
+            LocalDateTime beforeCreatedAt = to;
+            Long beforeId = 0L;
+            if (query.cursor() != null && !query.cursor().isBlank()) {
+                Cursor cursor = decodeCursor(query.cursor());
+                // Con trỏ sau mốc "to": không phải của bộ lọc này (client đổi "to" nhưng giữ con trỏ cũ)
+                if (cursor.createdAt().isAfter(to)) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Con trỏ phân trang nằm sau mốc 'to'");
+                }
+                beforeCreatedAt = cursor.createdAt();
+                beforeId = cursor.id();
+            }
+            return new HistoryPage(statuses, from, beforeCreatedAt, beforeId, size);
+        }
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không (không cần COUNT)
+        Limit fetchLimit() {
+            return Limit.of(size + 1);
+        }
+    }
+
+    private record Cursor(LocalDateTime createdAt, Long id) {}
+
+    // Con trỏ là chuỗi mờ (Base64 URL của "createdAt|id") để client chỉ gửi lại, không tự dựng
+    private static String encodeCursor(LocalDateTime createdAt, Long id) {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new Cursor(LocalDateTime.parse(raw.substring(0, separator)), Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Con trỏ phân trang không hợp lệ");
+        }
+    }
+
+    // Helper: Ghép đơn hàng với món (truy vấn món chỉ chạy một lần cho cả danh sách)
+    private List<OrderResponse> assemble(List<OrderRow> orders) {
+        if (orders.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Long> orderIds = orders.stream().map(OrderRow::id).collect(Collectors.toList());
+        Map<Long, List<OrderItemResponse>> linesByOrder = new HashMap<>();
+        for (OrderLineRow line : orderItemRepository.findLineRowsByOrderIds(orderIds)) {
+            linesByOrder.computeIfAbsent(line.orderId(), id -> new ArrayList<>())
+                    .add(new OrderItemResponse(
+                            line.id(),
+                            line.menuItemId(),
+                            line.menuItemName(),
+                            line.quantity(),
+                            line.note(),
+                            line.pricePerItem()
+                    ));
+        }
+
+        return orders.stream()
+                .map(order -> toOrderResponse(order, linesByOrder.getOrDefault(order.id(), List.of())))
+                .collect(Collectors.toList());
+    }
+
+    private OrderResponse toOrderResponse(OrderRow order, List<OrderItemResponse> items) {
+        // Tổng tiền tính từ danh sách món (giống OrderService.toOrderResponse)
+        long itemTotal = 0;
+        for (OrderItemResponse item : items) {
+            itemTotal = Math.addExact(itemTotal, Money.lineTotal(item.priceAtOrder(), item.quantity()));
+        }
+
+        return new OrderResponse(
+                order.id(),
+                order.tableId(),
+                order.tableName(),
+                order.storeId(),
+                order.status(),
+                Money.toDecimal(itemTotal),
+                order.createdAt(),
+                items,
+                order.surcharge() != null ? order.surcharge() : BigDecimal.ZERO,
+                order.surchargeNotes()
+        );
+    }
+}
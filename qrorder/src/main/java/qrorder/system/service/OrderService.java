@@ -1,33 +1,46 @@
 package qrorder.system.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import qrorder.system.config.security.StoreUserDetails;
 import qrorder.system.config.tenant.TenantContext;
+import qrorder.system.dto.event.OrderEvent;
+import qrorder.system.dto.projection.TableRef;
+import qrorder.system.dto.request.OrderHistoryQuery;
 import qrorder.system.dto.request.OrderItemRequest;
 import qrorder.system.dto.request.OrderPlacementRequest;
 import qrorder.system.dto.request.SurchargeRequest;
 import qrorder.system.dto.request.UpdateOrderStatusRequest;
 import qrorder.system.dto.response.OrderItemResponse;
+import qrorder.system.dto.response.OrderPageResponse;
 import qrorder.system.dto.response.OrderResponse;
+import qrorder.system.dto.response.OrderSnapshotResponse;
 import qrorder.system.entity.CustomerOrder;
 import qrorder.system.entity.MenuItem;
 import qrorder.system.entity.OrderItem;
-import qrorder.system.entity.TableInfo;
 import qrorder.system.enums.OrderStatus;
 import qrorder.system.repository.CustomerOrderRepository;
 import qrorder.system.repository.MenuItemRepository;
+import qrorder.system.repository.OrderItemBatchRepository;
 import qrorder.system.repository.OrderItemRepository;
+import qrorder.system.repository.StoreRepository;
 import qrorder.system.repository.TableRepository;
+import qrorder.system.util.Money;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -42,17 +55,38 @@ public class OrderService {
     @Autowired
     private TableRepository tableRepository;
 
+    @Autowired
+    private StoreRepository storeRepository;
+
+    @Autowired
+    private TableDirectory tableDirectory; // Access Key -> bàn (bộ nhớ đệm + token phiên bàn)
+
     @Autowired
     private MenuItemRepository menuItemRepository;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate; // Dùng để gửi WebSocket
+    private OrderItemBatchRepository orderItemBatchRepository;
+
+    @Autowired
+    private OrderReadService orderReadService; // Đường đọc danh sách (projection, không N+1)
+
+    @Autowired
+    private KitchenBoard kitchenBoard; // Bảng Bếp trong bộ nhớ
+
+    @Autowired
+    private TableOccupancy tableOccupancy; // Trạng thái bàn trong bộ nhớ (Sơ đồ bàn của Staff)
+
+    @Autowired
+    private OrderEventDispatcher orderEventDispatcher; // Gửi sự kiện (delta) qua WebSocket sau khi commit
+
+    @Autowired
+    private OrderMutationSequencer orderMutationSequencer; // Các thao tác sửa đơn của cùng chi nhánh chạy lần lượt
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
     // Danh sách các trạng thái đơn hàng Bếp cần xem
-    private static final List<OrderStatus> KITCHEN_ACTIVE_STATUSES = Arrays.asList(
-            OrderStatus.PENDING,
-            OrderStatus.PREPARING
-    );
+    private static final List<OrderStatus> KITCHEN_ACTIVE_STATUSES = KitchenBoard.ACTIVE_STATUSES;
 
     // Danh sách các trạng thái Khách hàng/Nhân viên coi là "đang hoạt động"
     private static final List<OrderStatus> CUSTOMER_ACTIVE_STATUSES = Arrays.asList(
@@ -67,66 +101,64 @@ public class OrderService {
      */
     @Transactional
     public OrderResponse placeOrder(OrderPlacementRequest request) {
+        return placeOrder(request, null);
+    }
+
+    /**
+     * [MỚI] Đặt hàng kèm token phiên bàn (tùy chọn, header X-Table-Session): có token hợp lệ thì không cần tra bàn
+     */
+    @Transactional
+    public OrderResponse placeOrder(OrderPlacementRequest request, String tableSession) {
         Long storeId = TenantContext.getTenantId();
         if (storeId == null) {
             throw new RuntimeException("Không thể xác định chi nhánh");
         }
 
-        // [QUAN TRỌNG] Tìm bàn bằng Access Key thay vì ID
-        TableInfo table = tableRepository.findByAccessKey(request.tableAccessKey())
-                .orElseThrow(() -> new RuntimeException("Mã bàn không hợp lệ hoặc bàn không tồn tại"));
+        // [QUAN TRỌNG] Tìm bàn bằng Access Key thay vì ID (kiểm tra luôn bàn thuộc chi nhánh hiện tại)
+        TableRef table = tableDirectory.resolve(request.tableAccessKey(), storeId, tableSession);
 
-        // Bảo mật: Đảm bảo Bàn này thuộc chi nhánh (store) hiện tại
-        if (!table.getStore().getId().equals(storeId)) {
-            throw new AccessDeniedException("Bàn không hợp lệ cho chi nhánh này");
-        }
+        // Gộp các dòng trùng món + lấy toàn bộ món trong MỘT truy vấn
+        List<OrderItemRequest> lines = foldDuplicateLines(request.items());
+        Map<Long, MenuItem> menuItems = resolveMenuItems(lines, storeId);
 
         CustomerOrder newOrder = new CustomerOrder();
-        newOrder.setTable(table);
-        newOrder.setStore(table.getStore());
+        // Chỉ cần khóa ngoại: tham chiếu (proxy) không phát sinh truy vấn
+        newOrder.setTable(tableRepository.getReferenceById(table.id()));
+        newOrder.setStore(storeRepository.getReferenceById(storeId));
         newOrder.setStatus(OrderStatus.PENDING); // Trạng thái đầu tiên
         newOrder.setCreatedAt(LocalDateTime.now());
         newOrder.setSurcharge(BigDecimal.ZERO);
 
-        // Lưu trước để có ID
-        CustomerOrder savedOrder = orderRepository.save(newOrder);
-
         List<OrderItem> orderItems = new ArrayList<>();
-        BigDecimal total = BigDecimal.ZERO;
-
-        for (OrderItemRequest itemRequest : request.items()) {
-            MenuItem menuItem = menuItemRepository.findByIdAndStoreId(itemRequest.menuItemId(), storeId)
-                    .orElseThrow(() -> new RuntimeException("Không tìm thấy Món ID: " + itemRequest.menuItemId()));
+        long total = 0; // Tính bằng đồng (long), chỉ đổi sang BigDecimal khi ghi DB
 
-            if (menuItem.isOutOfStock()) {
-                throw new RuntimeException("Món '" + menuItem.getName() + "' đã hết hàng.");
-            }
+        for (OrderItemRequest itemRequest : lines) {
+            MenuItem menuItem = menuItems.get(itemRequest.menuItemId());
 
             OrderItem orderItem = new OrderItem();
-            orderItem.setOrder(savedOrder);
+            orderItem.setOrder(newOrder);
             orderItem.setMenuItem(menuItem);
             orderItem.setQuantity(itemRequest.quantity());
             orderItem.setPricePerItem(menuItem.getPrice());
             orderItem.setNote(itemRequest.note()); // Lưu ghi chú
 
             orderItems.add(orderItem);
-            total = total.add(menuItem.getPrice().multiply(BigDecimal.valueOf(itemRequest.quantity())));
+            total = Math.addExact(total, Money.lineTotal(menuItem.getPrice(), itemRequest.quantity()));
         }
 
-        orderItemRepository.saveAll(orderItems);
+        // Tổng tiền tính trước -> đơn hàng chỉ INSERT một lần (không UPDATE lại)
+        newOrder.setTotalPrice(Money.toDecimal(total));
+        CustomerOrder savedOrder = orderRepository.save(newOrder);
 
-        // Cập nhật tổng tiền vào DB
-        savedOrder.setTotalPrice(total);
-        orderRepository.save(savedOrder);
+        // Toàn bộ món được ghi bằng MỘT lượt JDBC batch
+        orderItemBatchRepository.insertAll(orderItems);
 
-        // Gửi WebSocket
-        OrderResponse response = toOrderResponse(savedOrder, orderItems);
-        String kitchenTopic = "/topic/kitchen/" + storeId;
-        String tableTopic = "/topic/table/" + savedOrder.getTable().getId();
+        // Gửi WebSocket (đơn mới -> gửi kèm toàn bộ đơn hàng)
+        OrderResponse response = toOrderResponse(savedOrder, table.name(), orderItems);
+        syncReadModels(response);
 
-        System.out.println("Đang gửi đơn hàng mới đến Bếp: " + kitchenTopic);
-        messagingTemplate.convertAndSend(kitchenTopic, response);
-        messagingTemplate.convertAndSend(tableTopic, response);
+        System.out.println("Đang gửi đơn hàng mới đến Bếp: " + OrderEventDispatcher.kitchenTopic(storeId));
+        orderEventDispatcher.dispatchAfterCommit(storeId, OrderEvent.placed(response));
 
         return response;
     }
@@ -151,300 +183,415 @@ public class OrderService {
      * Khách hàng xem các đơn hàng đang hoạt động của bàn (Sử dụng Access Key)
      */
     @Transactional(readOnly = true)
-    public List<OrderResponse> getPublicActiveOrdersForTable(String tableAccessKey) {
+    public List<OrderResponse> getPublicActiveOrdersForTable(String tableAccessKey, String tableSession) {
         Long storeId = TenantContext.getTenantId();
         if (storeId == null) throw new RuntimeException("Không thể xác định chi nhánh");
 
-        // 1. Tìm bàn bằng Key
-        TableInfo table = tableRepository.findByAccessKey(tableAccessKey)
-                .orElseThrow(() -> new RuntimeException("Mã bàn không hợp lệ"));
-
-        if (!table.getStore().getId().equals(storeId)) {
-            throw new AccessDeniedException("Bàn không thuộc chi nhánh này");
-        }
+        // 1. Tìm bàn bằng Key (hoặc token phiên bàn)
+        TableRef table = tableDirectory.resolve(tableAccessKey, storeId, tableSession);
 
         // 2. Lấy đơn hàng bằng ID bàn (tìm được từ Key)
-        List<CustomerOrder> orders = orderRepository.findAllByTableAndStoreIdAndStatusIn(
-                table, storeId, CUSTOMER_ACTIVE_STATUSES
-        );
+        return orderReadService.findByTable(table.id(), storeId, CUSTOMER_ACTIVE_STATUSES);
+    }
 
-        return orders.stream()
-                .map(order -> {
-                    List<OrderItem> items = orderItemRepository.findByOrder_Id(order.getId());
-                    return toOrderResponse(order, items);
-                })
-                .collect(Collectors.toList());
+    /**
+     * [MỚI] Khách hàng đồng bộ lại: đơn hàng đang hoạt động của bàn + seq của topic bàn
+     */
+    @Transactional(readOnly = true)
+    public OrderSnapshotResponse getPublicTableSnapshot(String tableAccessKey, String tableSession) {
+        Long storeId = TenantContext.getTenantId();
+        if (storeId == null) throw new RuntimeException("Không thể xác định chi nhánh");
+
+        return getPublicTableSnapshot(tableDirectory.resolve(tableAccessKey, storeId, tableSession));
+    }
+
+    /**
+     * [MỚI] Như trên, cho bàn đã được xác định (dùng chung với API bootstrap)
+     */
+    @Transactional(readOnly = true)
+    public OrderSnapshotResponse getPublicTableSnapshot(TableRef table) {
+        // Lấy seq TRƯỚC khi đọc dữ liệu: ảnh chụp chắc chắn bao gồm mọi sự kiện <= seq
+        long seq = orderEventDispatcher.currentSeq(OrderEventDispatcher.tableTopic(table.id()));
+        return new OrderSnapshotResponse(orderEventDispatcher.getNodeId(), seq,
+                orderReadService.findByTable(table.id(), table.storeId(), CUSTOMER_ACTIVE_STATUSES));
     }
 
     /**
      * Bếp (Kitchen) cập nhật trạng thái đơn hàng
      */
-    @Transactional
     public OrderResponse updateOrderStatus(Long orderId, UpdateOrderStatusRequest request, StoreUserDetails userDetails) {
-        Long storeId = userDetails.getStoreId();
+        return inStoreSequence(userDetails, () -> {
+            Long storeId = userDetails.getStoreId();
 
-        CustomerOrder order = orderRepository.findByIdAndStoreId(orderId, storeId)
-                .orElseThrow(() -> new AccessDeniedException("Không tìm thấy đơn hàng"));
+            CustomerOrder order = orderRepository.findByIdAndStoreId(orderId, storeId)
+                    .orElseThrow(() -> new AccessDeniedException("Không tìm thấy đơn hàng"));
 
-        order.setStatus(request.newStatus());
-        CustomerOrder updatedOrder = orderRepository.save(order);
+            order.setStatus(request.newStatus());
+            CustomerOrder updatedOrder = orderRepository.save(order);
 
-        List<OrderItem> items = orderItemRepository.findByOrder_Id(orderId);
-        OrderResponse response = toOrderResponse(updatedOrder, items);
+            List<OrderItem> items = orderItemRepository.findByOrder_Id(orderId);
+            OrderResponse response = toOrderResponse(updatedOrder, items);
+            syncReadModels(response);
 
-        messagingTemplate.convertAndSend("/topic/table/" + order.getTable().getId(), response);
-        messagingTemplate.convertAndSend("/topic/kitchen/" + storeId, response);
+            orderEventDispatcher.dispatchAfterCommit(storeId, OrderEvent.statusChanged(response));
 
-        return response;
+            return response;
+        });
     }
 
     /**
      * Bếp (Kitchen) lấy các đơn hàng đang hoạt động
+     * (đọc từ KitchenBoard trong bộ nhớ; không mở transaction nên không chạm DB)
      */
-    @Transactional(readOnly = true)
     public List<OrderResponse> getKitchenActiveOrders(StoreUserDetails userDetails) {
         Long storeId = userDetails.getStoreId();
 
-        List<CustomerOrder> activeOrders = orderRepository.findAllByStoreIdAndStatusIn(storeId, KITCHEN_ACTIVE_STATUSES);
+        if (kitchenBoard.isReady()) {
+            return kitchenBoard.snapshot(storeId);
+        }
+        // Bảng chưa dựng xong (ứng dụng vừa khởi động) -> đọc DB
+        return orderReadService.findByStore(storeId, KITCHEN_ACTIVE_STATUSES);
+    }
 
-        return activeOrders.stream()
-                .map(order -> {
-                    List<OrderItem> items = orderItemRepository.findByOrder_Id(order.getId());
-                    return toOrderResponse(order, items);
-                })
-                .collect(Collectors.toList());
+    /**
+     * [MỚI] Bếp đồng bộ lại: đơn hàng đang hoạt động + seq của topic Bếp
+     */
+    public OrderSnapshotResponse getKitchenSnapshot(StoreUserDetails userDetails) {
+        // Lấy seq TRƯỚC khi đọc dữ liệu: ảnh chụp chắc chắn bao gồm mọi sự kiện <= seq
+        long seq = orderEventDispatcher.currentSeq(OrderEventDispatcher.kitchenTopic(userDetails.getStoreId()));
+        return new OrderSnapshotResponse(orderEventDispatcher.getNodeId(), seq, getKitchenActiveOrders(userDetails));
     }
 
     /**
      * Nhân viên (Staff) đánh dấu đơn hàng LẺ là ĐÃ THANH TOÁN
      */
-    @Transactional
     public OrderResponse markOrderAsPaid(Long orderId, StoreUserDetails userDetails) {
-        Long storeId = userDetails.getStoreId();
+        return inStoreSequence(userDetails, () -> {
+            Long storeId = userDetails.getStoreId();
 
-        CustomerOrder order = orderRepository.findByIdAndStoreId(orderId, storeId)
-                .orElseThrow(() -> new AccessDeniedException("Không tìm thấy đơn hàng"));
+            CustomerOrder order = orderRepository.findByIdAndStoreId(orderId, storeId)
+                    .orElseThrow(() -> new AccessDeniedException("Không tìm thấy đơn hàng"));
 
-        order.setStatus(OrderStatus.PAID);
-        CustomerOrder paidOrder = orderRepository.save(order);
+            order.setStatus(OrderStatus.PAID);
+            CustomerOrder paidOrder = orderRepository.save(order);
 
-        List<OrderItem> items = orderItemRepository.findByOrder_Id(orderId);
-        OrderResponse response = toOrderResponse(paidOrder, items);
+            List<OrderItem> items = orderItemRepository.findByOrder_Id(orderId);
+            OrderResponse response = toOrderResponse(paidOrder, items);
+            syncReadModels(response);
 
-        messagingTemplate.convertAndSend("/topic/table/" + paidOrder.getTable().getId(), response);
-        messagingTemplate.convertAndSend("/topic/kitchen/" + storeId, response);
+            orderEventDispatcher.dispatchAfterCommit(storeId, OrderEvent.statusChanged(response));
 
-        return response;
+            return response;
+        });
     }
 
     /**
      * [MỚI] Nhân viên Thanh toán GỘP toàn bộ đơn hàng đang hoạt động của bàn
      */
-    @Transactional
     public void markTableOrdersAsPaid(Long tableId, StoreUserDetails userDetails) {
-        Long storeId = userDetails.getStoreId();
-        TableInfo table = tableRepository.findById(tableId)
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy Table: " + tableId));
-        // Lấy các đơn hàng chưa thanh toán của bàn (PENDING, PREPARING, COMPLETED, SERVED)
-        List<CustomerOrder> orders = orderRepository.findAllByTableAndStoreIdAndStatusIn(
-                table, storeId,
-                Arrays.asList(OrderStatus.PENDING, OrderStatus.PREPARING, OrderStatus.COMPLETED, OrderStatus.SERVED)
-        );
-
-        if (orders.isEmpty()) {
-            throw new RuntimeException("Không có đơn hàng nào để thanh toán.");
-        }
-
-        for (CustomerOrder order : orders) {
-            order.setStatus(OrderStatus.PAID);
-            // orderRepository.save(order); // JPA sẽ tự động lưu khi kết thúc transaction
-
-            // Gửi WebSocket cập nhật cho từng đơn để client (Khách/Bếp) biết
-            List<OrderItem> items = orderItemRepository.findByOrder_Id(order.getId());
-            OrderResponse response = toOrderResponse(order, items);
-
-            messagingTemplate.convertAndSend("/topic/table/" + tableId, response);
-            messagingTemplate.convertAndSend("/topic/kitchen/" + storeId, response);
-        }
+        inStoreSequence(userDetails, () -> {
+            Long storeId = userDetails.getStoreId();
+            // Các đơn hàng chưa thanh toán của bàn (PENDING, PREPARING, COMPLETED, SERVED)
+            List<OrderStatus> unpaid = Arrays.asList(
+                    OrderStatus.PENDING, OrderStatus.PREPARING, OrderStatus.COMPLETED, OrderStatus.SERVED);
+            List<Long> orderIds = orderRepository.findIdsByTableAndStatus(tableId, storeId, unpaid);
+
+            if (orderIds.isEmpty()) {
+                throw new RuntimeException("Không có đơn hàng nào để thanh toán.");
+            }
 
-        // Lưu tất cả
-        orderRepository.saveAll(orders);
+            // MỘT câu UPDATE có điều kiện cho cả bàn (không load entity/món).
+            // Đơn nào vừa bị transaction khác đổi trạng thái sẽ không khớp -> hủy cả lần thanh toán.
+            int updated = orderRepository.updateStatusWhereStatusIn(orderIds, unpaid, OrderStatus.PAID);
+            if (updated != orderIds.size()) {
+                throw new RuntimeException("Đơn hàng của bàn vừa thay đổi, vui lòng thử lại.");
+            }
+            // Đọc tổng tiền SAU khi UPDATE: các dòng đã bị khóa nên không còn món nào được thêm/sửa
+            BigDecimal settledTotal = orderRepository.sumTotalWithSurcharge(orderIds);
+
+            kitchenBoard.removeAfterCommit(storeId, orderIds);
+            tableOccupancy.removeAfterCommit(storeId, orderIds);
+            // Một sự kiện cho cả bàn (thay vì một sự kiện cho từng đơn)
+            orderEventDispatcher.dispatchAfterCommit(storeId, OrderEvent.tableSettled(tableId, orderIds, settledTotal));
+            return null;
+        });
     }
 
     /**
-     * Nhân viên (Staff) xem tất cả đơn hàng của 1 Bàn
+     * Nhân viên (Staff) xem các đơn hàng CHƯA thanh toán của 1 Bàn
+     * (đơn đã thanh toán/đã hủy xem qua getTableOrderHistory, có phân trang)
      */
     @Transactional(readOnly = true)
     public List<OrderResponse> getOrdersForTable(Long tableId, StoreUserDetails userDetails) {
         Long storeId = userDetails.getStoreId();
-        TableInfo table = tableRepository.findById(tableId)
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy Table: " + tableId));
 
-        List<CustomerOrder> orders = orderRepository.findAllByTableAndStoreId(table, storeId);
+        // Bàn không tồn tại / không thuộc chi nhánh -> danh sách rỗng
+        return orderReadService.findByTable(tableId, storeId, CUSTOMER_ACTIVE_STATUSES);
+    }
 
-        return orders.stream()
-                .map(order -> {
-                    List<OrderItem> items = orderItemRepository.findByOrder_Id(order.getId());
-                    return toOrderResponse(order, items);
-                })
-                .collect(Collectors.toList());
+    /**
+     * [MỚI] Nhân viên xem lịch sử đơn hàng của 1 Bàn (mới nhất trước, phân trang keyset)
+     */
+    public OrderPageResponse getTableOrderHistory(Long tableId, OrderHistoryQuery query, StoreUserDetails userDetails) {
+        return orderReadService.findHistoryByTable(tableId, userDetails.getStoreId(), query);
+    }
+
+    /**
+     * [MỚI] Nhân viên xem lịch sử đơn hàng của cả chi nhánh (mới nhất trước, phân trang keyset)
+     */
+    public OrderPageResponse getStoreOrderHistory(OrderHistoryQuery query, StoreUserDetails userDetails) {
+        return orderReadService.findHistoryByStore(userDetails.getStoreId(), query);
+    }
+
+    /**
+     * [MỚI] Nhân viên đồng bộ lại: tất cả đơn hàng của bàn + seq của topic bàn
+     */
+    public OrderSnapshotResponse getTableSnapshot(Long tableId, StoreUserDetails userDetails) {
+        long seq = orderEventDispatcher.currentSeq(OrderEventDispatcher.tableTopic(tableId));
+        return new OrderSnapshotResponse(orderEventDispatcher.getNodeId(), seq, getOrdersForTable(tableId, userDetails));
     }
 
     /**
      * Nhân viên HỦY một món ăn (OrderItem)
      */
-    @Transactional
     public OrderResponse cancelOrderItem(Long orderItemId, StoreUserDetails userDetails) {
-        Long storeId = userDetails.getStoreId();
-
-        OrderItem itemToDelete = orderItemRepository.findById(orderItemId)
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy món ăn"));
+        return inStoreSequence(userDetails, () -> {
+            Long storeId = userDetails.getStoreId();
 
-        CustomerOrder order = itemToDelete.getOrder();
-        if (!order.getStore().getId().equals(storeId)) {
-            throw new AccessDeniedException("Bạn không có quyền chỉnh sửa đơn hàng này");
-        }
+            OrderItem itemToDelete = orderItemRepository.findById(orderItemId)
+                    .orElseThrow(() -> new RuntimeException("Không tìm thấy món ăn"));
 
-        // Chỉ cho phép hủy khi PENDING hoặc PREPARING (hoặc tùy chính sách)
-        if (order.getStatus() != OrderStatus.PENDING && order.getStatus() != OrderStatus.PREPARING) {
-            throw new RuntimeException("Không thể hủy món khi đơn hàng đã Hoàn thành hoặc Đã phục vụ.");
-        }
+            CustomerOrder order = itemToDelete.getOrder();
+            if (!order.getStore().getId().equals(storeId)) {
+                throw new AccessDeniedException("Bạn không có quyền chỉnh sửa đơn hàng này");
+            }
 
-        orderItemRepository.delete(itemToDelete);
+            // Chỉ cho phép hủy khi PENDING hoặc PREPARING (hoặc tùy chính sách)
+            if (order.getStatus() != OrderStatus.PENDING && order.getStatus() != OrderStatus.PREPARING) {
+                throw new RuntimeException("Không thể hủy món khi đơn hàng đã Hoàn thành hoặc Đã phục vụ.");
+            }
 
-        // Tính lại tổng tiền
-        List<OrderItem> remainingItems = orderItemRepository.findByOrder_Id(order.getId());
-        BigDecimal newTotal = remainingItems.stream()
-                .map(i -> i.getPricePerItem().multiply(BigDecimal.valueOf(i.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+            orderItemRepository.delete(itemToDelete);
 
-        order.setTotalPrice(newTotal);
+            // Tính lại tổng tiền
+            List<OrderItem> remainingItems = orderItemRepository.findByOrder_Id(order.getId());
+            order.setTotalPrice(Money.toDecimal(itemTotal(remainingItems)));
 
-        if (remainingItems.isEmpty()) {
-            order.setStatus(OrderStatus.CANCELLED);
-        }
+            if (remainingItems.isEmpty()) {
+                order.setStatus(OrderStatus.CANCELLED);
+            }
 
-        CustomerOrder savedOrder = orderRepository.save(order);
+            CustomerOrder savedOrder = orderRepository.save(order);
 
-        OrderResponse response = toOrderResponse(savedOrder, remainingItems);
-        messagingTemplate.convertAndSend("/topic/table/" + order.getTable().getId(), response);
-        messagingTemplate.convertAndSend("/topic/kitchen/" + storeId, response);
+            OrderResponse response = toOrderResponse(savedOrder, remainingItems);
+            syncReadModels(response);
+            orderEventDispatcher.dispatchAfterCommit(storeId,
+                    OrderEvent.itemsChanged(response, List.of(), List.of(orderItemId)));
 
-        return response;
+            return response;
+        });
     }
 
     /**
      * Nhân viên Cập nhật Phụ phí
      */
-    @Transactional
     public OrderResponse updateSurcharge(Long orderId, SurchargeRequest request, StoreUserDetails userDetails) {
-        Long storeId = userDetails.getStoreId();
+        return inStoreSequence(userDetails, () -> {
+            Long storeId = userDetails.getStoreId();
 
-        CustomerOrder order = orderRepository.findByIdAndStoreId(orderId, storeId)
-                .orElseThrow(() -> new AccessDeniedException("Không tìm thấy đơn hàng"));
+            CustomerOrder order = orderRepository.findByIdAndStoreId(orderId, storeId)
+                    .orElseThrow(() -> new AccessDeniedException("Không tìm thấy đơn hàng"));
 
-        order.setSurcharge(request.surcharge() != null ? request.surcharge() : BigDecimal.ZERO);
-        order.setSurchargeNotes(request.surchargeNotes());
+            order.setSurcharge(request.surcharge() != null ? request.surcharge() : BigDecimal.ZERO);
+            order.setSurchargeNotes(request.surchargeNotes());
 
-        CustomerOrder savedOrder = orderRepository.save(order);
-        List<OrderItem> items = orderItemRepository.findByOrder_Id(orderId);
+            CustomerOrder savedOrder = orderRepository.save(order);
+            List<OrderItem> items = orderItemRepository.findByOrder_Id(orderId);
 
-        OrderResponse response = toOrderResponse(savedOrder, items);
-        messagingTemplate.convertAndSend("/topic/table/" + order.getTable().getId(), response);
+            OrderResponse response = toOrderResponse(savedOrder, items);
+            syncReadModels(response);
+            orderEventDispatcher.dispatchAfterCommit(storeId, OrderEvent.surchargeChanged(response));
 
-        return response;
+            return response;
+        });
     }
 
     /**
      * [MỚI] Nhân viên Cập nhật số lượng món
      */
-    @Transactional
     public OrderResponse updateOrderItemQuantity(Long orderItemId, int newQuantity, StoreUserDetails userDetails) {
-        Long storeId = userDetails.getStoreId();
+        return inStoreSequence(userDetails, () -> {
+            Long storeId = userDetails.getStoreId();
 
-        OrderItem orderItem = orderItemRepository.findById(orderItemId)
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy món"));
+            OrderItem orderItem = orderItemRepository.findById(orderItemId)
+                    .orElseThrow(() -> new RuntimeException("Không tìm thấy món"));
 
-        CustomerOrder order = orderItem.getOrder();
-        if (!order.getStore().getId().equals(storeId)) {
-            throw new AccessDeniedException("Không có quyền chỉnh sửa");
-        }
-
-        orderItem.setQuantity(newQuantity);
-        orderItemRepository.save(orderItem);
+            CustomerOrder order = orderItem.getOrder();
+            if (!order.getStore().getId().equals(storeId)) {
+                throw new AccessDeniedException("Không có quyền chỉnh sửa");
+            }
 
-        // Tính lại tổng tiền đơn hàng
-        List<OrderItem> allItems = orderItemRepository.findByOrder_Id(order.getId());
-        BigDecimal newTotal = allItems.stream()
-                .map(i -> i.getPricePerItem().multiply(BigDecimal.valueOf(i.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+            orderItem.setQuantity(newQuantity);
+            orderItemRepository.save(orderItem);
 
-        order.setTotalPrice(newTotal);
-        CustomerOrder savedOrder = orderRepository.save(order);
+            // Tính lại tổng tiền đơn hàng
+            List<OrderItem> allItems = orderItemRepository.findByOrder_Id(order.getId());
+            order.setTotalPrice(Money.toDecimal(itemTotal(allItems)));
+            CustomerOrder savedOrder = orderRepository.save(order);
 
-        // Gửi WebSocket update
-        OrderResponse response = toOrderResponse(savedOrder, allItems);
-        messagingTemplate.convertAndSend("/topic/table/" + order.getTable().getId(), response);
-        messagingTemplate.convertAndSend("/topic/kitchen/" + storeId, response);
+            // Gửi WebSocket update (chỉ dòng món vừa sửa)
+            OrderResponse response = toOrderResponse(savedOrder, allItems);
+            syncReadModels(response);
+            orderEventDispatcher.dispatchAfterCommit(storeId,
+                    OrderEvent.itemsChanged(response, linesOf(response, List.of(orderItem)), List.of()));
 
-        return response;
+            return response;
+        });
     }
 
     /**
      * [MỚI] Nhân viên Thêm món vào đơn hàng có sẵn
      */
-    @Transactional
     public OrderResponse addItemsToOrder(Long orderId, List<OrderItemRequest> newItems, StoreUserDetails userDetails) {
-        Long storeId = userDetails.getStoreId();
+        return inStoreSequence(userDetails, () -> {
+            Long storeId = userDetails.getStoreId();
 
-        CustomerOrder order = orderRepository.findByIdAndStoreId(orderId, storeId)
-                .orElseThrow(() -> new AccessDeniedException("Không tìm thấy đơn hàng"));
+            CustomerOrder order = orderRepository.findByIdAndStoreId(orderId, storeId)
+                    .orElseThrow(() -> new AccessDeniedException("Không tìm thấy đơn hàng"));
 
-        List<OrderItem> currentItems = orderItemRepository.findByOrder_Id(orderId);
-        BigDecimal additionalTotal = BigDecimal.ZERO;
+            List<OrderItem> currentItems = orderItemRepository.findByOrder_Id(orderId);
+            long additionalTotal = 0;
 
-        for (OrderItemRequest req : newItems) {
-            MenuItem menuItem = menuItemRepository.findByIdAndStoreId(req.menuItemId(), storeId)
-                    .orElseThrow(() -> new RuntimeException("Món không tồn tại"));
+            List<OrderItemRequest> lines = foldDuplicateLines(newItems);
+            Map<Long, MenuItem> menuItems = resolveMenuItems(lines, storeId);
+            List<OrderItem> addedItems = new ArrayList<>();
 
-            if (menuItem.isOutOfStock()) {
-                throw new RuntimeException("Món " + menuItem.getName() + " đã hết hàng.");
+            for (OrderItemRequest req : lines) {
+                MenuItem menuItem = menuItems.get(req.menuItemId());
+
+                // Tạo món mới
+                OrderItem newItem = new OrderItem();
+                newItem.setOrder(order);
+                newItem.setMenuItem(menuItem);
+                newItem.setQuantity(req.quantity());
+                newItem.setPricePerItem(menuItem.getPrice());
+                newItem.setNote(req.note()); // Lưu ghi chú
+
+                addedItems.add(newItem);
+
+                additionalTotal = Math.addExact(additionalTotal, Money.lineTotal(menuItem.getPrice(), req.quantity()));
             }
 
-            // Tạo món mới
-            OrderItem newItem = new OrderItem();
-            newItem.setOrder(order);
-            newItem.setMenuItem(menuItem);
-            newItem.setQuantity(req.quantity());
-            newItem.setPricePerItem(menuItem.getPrice());
-            newItem.setNote(req.note()); // Lưu ghi chú
+            // Ghi các món mới bằng MỘT lượt JDBC batch
+            orderItemBatchRepository.insertAll(addedItems);
+            currentItems.addAll(addedItems);
+
+            // Cập nhật tổng tiền
+            order.setTotalPrice(Money.toDecimal(Math.addExact(Money.toMinor(order.getTotalPrice()), additionalTotal)));
+            CustomerOrder savedOrder = orderRepository.save(order);
+
+            // Gửi WebSocket (chỉ các dòng món vừa thêm)
+            OrderResponse response = toOrderResponse(savedOrder, currentItems);
+            syncReadModels(response);
+            orderEventDispatcher.dispatchAfterCommit(storeId,
+                    OrderEvent.itemsChanged(response, linesOf(response, addedItems), List.of()));
 
-            orderItemRepository.save(newItem);
-            currentItems.add(newItem);
+            return response;
+        });
+    }
+
+    /**
+     * Helper: Chạy thao tác sửa đơn hàng theo hàng đợi ghi của chi nhánh.
+     * Transaction được mở SAU khi tới lượt và commit TRƯỚC khi nhả lượt (không dùng @Transactional ở hàm gọi).
+     */
+    private <T> T inStoreSequence(StoreUserDetails userDetails, Supplier<T> mutation) {
+        return orderMutationSequencer.run(userDetails.getStoreId(),
+                () -> transactionTemplate.execute(status -> mutation.get()));
+    }
 
-            additionalTotal = additionalTotal.add(menuItem.getPrice().multiply(BigDecimal.valueOf(req.quantity())));
+    /**
+     * Helper: Gộp các dòng cùng món và cùng ghi chú thành một dòng (cộng dồn số lượng).
+     * Các dòng cùng món nhưng khác ghi chú được giữ riêng.
+     */
+    private List<OrderItemRequest> foldDuplicateLines(List<OrderItemRequest> requests) {
+        Map<List<Object>, OrderItemRequest> folded = new LinkedHashMap<>();
+        for (OrderItemRequest req : requests) {
+            folded.merge(
+                    Arrays.asList(req.menuItemId(), req.note()),
+                    req,
+                    (a, b) -> new OrderItemRequest(a.menuItemId(), a.quantity() + b.quantity(), a.note())
+            );
         }
+        return new ArrayList<>(folded.values());
+    }
 
-        // Cập nhật tổng tiền
-        order.setTotalPrice(order.getTotalPrice().add(additionalTotal));
-        CustomerOrder savedOrder = orderRepository.save(order);
+    /**
+     * Helper: Lấy tất cả món được yêu cầu bằng MỘT truy vấn, rồi kiểm tra tồn tại/hết hàng trong bộ nhớ.
+     */
+    private Map<Long, MenuItem> resolveMenuItems(List<OrderItemRequest> requests, Long storeId) {
+        List<Long> ids = requests.stream()
+                .map(OrderItemRequest::menuItemId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
 
-        // Gửi WebSocket
-        OrderResponse response = toOrderResponse(savedOrder, currentItems);
-        messagingTemplate.convertAndSend("/topic/table/" + order.getTable().getId(), response);
-        messagingTemplate.convertAndSend("/topic/kitchen/" + storeId, response);
+        Map<Long, MenuItem> menuItems = menuItemRepository.findAllByIdInAndStoreId(ids, storeId).stream()
+                .collect(Collectors.toMap(MenuItem::getId, Function.identity()));
 
-        return response;
+        for (OrderItemRequest req : requests) {
+            MenuItem menuItem = menuItems.get(req.menuItemId());
+            if (menuItem == null) {
+                throw new RuntimeException("Không tìm thấy Món ID: " + req.menuItemId());
+            }
+            if (menuItem.isOutOfStock()) {
+                throw new RuntimeException("Món '" + menuItem.getName() + "' đã hết hàng.");
+            }
+        }
+        return menuItems;
+    }
+
+    /**
+     * Helper: Đẩy trạng thái mới của đơn hàng vào KitchenBoard và TableOccupancy sau khi commit.
+     * Flush trước để dòng đơn hàng bị khóa, nhờ đó thứ tự stamp khớp thứ tự commit.
+     */
+    private void syncReadModels(OrderResponse response) {
+        orderRepository.flush();
+        kitchenBoard.applyAfterCommit(response);
+        tableOccupancy.applyAfterCommit(response);
+    }
+
+    /**
+     * Helper: Lấy các dòng (DTO) của đơn hàng tương ứng với các món vừa thay đổi
+     */
+    private List<OrderItemResponse> linesOf(OrderResponse response, List<OrderItem> changed) {
+        Set<Long> ids = changed.stream().map(OrderItem::getId).collect(Collectors.toSet());
+        return response.items().stream()
+                .filter(line -> ids.contains(line.id()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * [MỚI] Tổng tiền các dòng món, tính bằng đồng (long) - không tạo BigDecimal trung gian cho từng dòng
+     */
+    private static long itemTotal(List<OrderItem> items) {
+        long total = 0;
+        for (OrderItem item : items) {
+            total = Math.addExact(total, Money.lineTotal(item.getPricePerItem(), item.getQuantity()));
+        }
+        return total;
     }
 
     /**
      * Hàm Helper: Chuyển Entity sang DTO
      */
     private OrderResponse toOrderResponse(CustomerOrder order, List<OrderItem> items) {
+        return toOrderResponse(order, order.getTable().getName(), items);
+    }
+
+    // tableName truyền vào khi bàn chỉ là tham chiếu (đặt món): không nạp lại bàn chỉ để lấy tên
+    private OrderResponse toOrderResponse(CustomerOrder order, String tableName, List<OrderItem> items) {
         // Tính tổng tiền từ danh sách items (vì CSDL không lưu)
-        BigDecimal itemTotal = items.stream()
-                .map(item -> item.getPricePerItem().multiply(BigDecimal.valueOf(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal itemTotal = Money.toDecimal(itemTotal(items));
 
         List<OrderItemResponse> itemResponses = items.stream()
                 .map(item -> new OrderItemResponse(
@@ -460,7 +607,7 @@ public class OrderService {
         return new OrderResponse(
                 order.getId(),
                 order.getTable().getId(),
-                order.getTable().getName(),
+                tableName,
                 order.getStore().getId(),
                 order.getStatus(),
                 itemTotal,
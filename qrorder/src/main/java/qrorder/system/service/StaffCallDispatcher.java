@@ -0,0 +1,142 @@
+package qrorder.system.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import qrorder.system.dto.projection.TableRef;
+import qrorder.system.dto.request.StaffCallRequest;
+import qrorder.system.dto.response.StaffCallResponse;
+import qrorder.system.dto.response.StaffCallStatsResponse;
+import qrorder.system.enums.StaffCallType;
+import qrorder.system.util.ExpiringCache;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Khách hàng gọi nhân viên (/app/call-staff) -> thông báo tới /topic/staff/{storeId}.
+ *
+ * Chống spam: lần gọi ĐẦU TIÊN của mỗi cặp (bàn, loại gọi) được gửi ngay; các lần bấm lặp lại trong
+ * app.staff-call.debounce-window-ms được gộp vào thông báo đó (chỉ đếm, không gửi, không đụng DB).
+ * Hết cửa sổ, lần bấm tiếp theo lại được gửi như bình thường. Loại gọi phải thuộc StaffCallType
+ * (loại khác bị bỏ, tính là failed): khách không thể đổi chuỗi callType để lách chống spam.
+ *
+ * Bàn được lấy từ token phiên bàn (nếu có) hoặc danh bạ bàn trong bộ nhớ (TableDirectory).
+ * Việc tra bàn và gửi chạy trên luồng riêng "staff-calls": luồng nhận tin nhắn WebSocket không bao giờ
+ * phải chờ DB/broker. Gửi thất bại thì mở lại cửa sổ để lần bấm sau được thử lại ngay.
+ *
+ * Cửa sổ chống spam được đếm riêng trên từng node.
+ */
+@Component
+public class StaffCallDispatcher {
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private TableDirectory tableDirectory;
+
+    @Value("${app.staff-call.debounce-window-ms:10000}")
+    private long debounceWindowMillis;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "staff-calls");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // (bàn, loại gọi) -> thời điểm gửi; hết hạn cùng cửa sổ chống spam
+    private ExpiringCache<CallKey, Long> recentCalls;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private record CallKey(Long tableId, StaffCallType callType) {
+    }
+
+    @PostConstruct
+    void init() {
+        recentCalls = new ExpiringCache<>(10_000, debounceWindowMillis);
+    }
+
+    public static String staffTopic(Long storeId) {
+        return "/topic/staff/" + storeId;
+    }
+
+    /**
+     * Nhận một lần bấm gọi nhân viên (không chặn luồng gọi)
+     */
+    public void submit(StaffCallRequest request) {
+        received.increment();
+        if (request.tableId() == null) {
+            failed.increment();
+            return;
+        }
+
+        StaffCallType callType = parseCallType(request.callType());
+        if (callType == null) {
+            failed.increment();
+            return;
+        }
+
+        CallKey key = new CallKey(request.tableId(), callType);
+        if (recentCalls.putIfAbsent(key, System.currentTimeMillis()) != null) {
+            suppressed.increment(); // Đã gửi trong cửa sổ hiện tại
+            return;
+        }
+        executor.execute(() -> deliver(key, request));
+    }
+
+    public StaffCallStatsResponse getStats() {
+        return new StaffCallStatsResponse(received.sum(), delivered.sum(), suppressed.sum(), failed.sum());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static StaffCallType parseCallType(String callType) {
+        if (callType == null) {
+            return null;
+        }
+        try {
+            return StaffCallType.valueOf(callType);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void deliver(CallKey key, StaffCallRequest request) {
+        try {
+            TableRef table = tableDirectory.fromSession(request.tableSession())
+                    .filter(t -> t.id().equals(request.tableId()))
+                    .orElseGet(() -> tableDirectory.findById(request.tableId()));
+            if (table == null) {
+                throw new RuntimeException("Không tìm thấy Bàn ID: " + request.tableId());
+            }
+
+            StaffCallResponse response = new StaffCallResponse(
+                    table.id(),
+                    table.name(),
+                    key.callType().name(),
+                    LocalDateTime.now()
+            );
+            String destination = staffTopic(table.storeId());
+            System.out.println("Đang gửi thông báo 'Gọi nhân viên' đến: " + destination);
+            messagingTemplate.convertAndSend(destination, response);
+            delivered.increment();
+        } catch (RuntimeException e) {
+            recentCalls.invalidate(key); // Lần bấm sau được thử lại ngay
+            failed.increment();
+            System.out.println("Lỗi gửi thông báo 'Gọi nhân viên' của bàn " + request.tableId() + ": " + e.getMessage());
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import qrorder.system.config.tenant.TenantDirectory;
 import qrorder.system.dto.request.StoreCreateRequest;
 import qrorder.system.dto.response.StoreResponse;
 import qrorder.system.entity.AppUser;
@@ -26,6 +27,9 @@ public class StoreService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private TenantDirectory tenantDirectory;
+
     /**
      * Lấy danh sách tất cả các cửa hàng (Chỉ Super Admin dùng)
      */
@@ -61,6 +65,9 @@ public class StoreService {
 
         appUserRepository.save(admin);
 
+        // 4. Đưa chi nhánh mới vào danh bạ (sau khi commit) để TenantFilter nhận ra ngay
+        tenantDirectory.refreshAfterCommit(savedStore);
+
         return new StoreResponse(savedStore.getId(), savedStore.getName(), savedStore.getSubdomain(), null, null);
     }
 }
\ No newline at end of file
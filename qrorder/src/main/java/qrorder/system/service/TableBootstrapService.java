@@ -0,0 +1,96 @@
+package qrorder.system.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import qrorder.system.config.tenant.TenantContext;
+import qrorder.system.dto.projection.TableRef;
+import qrorder.system.dto.response.OrderSnapshotResponse;
+import qrorder.system.dto.response.TableResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Dữ liệu ban đầu của khách khi vừa quét QR, gộp trong MỘT phản hồi
+ * (thay cho /tables/{key}/info + /categories + /menu-items):
+ *
+ * <pre>
+ * { "table": TableResponse, "menuVersion": 7, "menuEtag": "\"...\"",
+ *   "categories": [CategoryResponse], "items": [MenuItemResponse],
+ *   "orders": { "node", "seq", "orders": [OrderResponse] } }
+ * </pre>
+ *
+ * Bàn lấy từ TableDirectory, thực đơn từ ảnh chụp của MenuCatalog (ghép thẳng JSON đã serialize sẵn);
+ * chỉ phần đơn hàng của bàn là đọc DB và serialize ở mỗi lần gọi.
+ * Đơn hàng ở đây chỉ để hiển thị ngay: client vẫn tải /tables/{key}/orders/snapshot SAU khi đăng ký
+ * /topic/table/{id}, vì sự kiện xảy ra trước lúc đăng ký không để lại seq nào để phát hiện.
+ */
+@Service
+public class TableBootstrapService {
+
+    @Autowired
+    private TableDirectory tableDirectory;
+
+    @Autowired
+    private TableSessionService tableSessionService;
+
+    @Autowired
+    private MenuCatalog menuCatalog;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * JSON ban đầu của bàn + token phiên bàn mới (gửi về qua header X-Table-Session)
+     */
+    public record Bootstrap(String tableSession, long menuVersion, byte[] json) {
+    }
+
+    public Bootstrap bootstrap(String accessKey, String tableSession) {
+        Long storeId = TenantContext.getTenantId();
+        if (storeId == null) throw new RuntimeException("Không thể xác định chi nhánh");
+
+        TableRef table = tableDirectory.resolve(accessKey, storeId, tableSession);
+        MenuCatalog.Snapshot menu = menuCatalog.get(storeId);
+        OrderSnapshotResponse orders = orderService.getPublicTableSnapshot(table);
+
+        byte[] tableJson = toJson(new TableResponse(table.id(), table.name(), table.capacity(), table.storeId(), table.accessKey()));
+        byte[] ordersJson = toJson(orders);
+        byte[] categoriesJson = menu.categoriesPayload().json();
+        byte[] itemsJson = menu.itemsPayload().json();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                tableJson.length + ordersJson.length + categoriesJson.length + itemsJson.length + 128);
+        write(out, "{\"table\":");
+        out.writeBytes(tableJson);
+        write(out, ",\"menuVersion\":" + menu.version());
+        write(out, ",\"menuEtag\":");
+        out.writeBytes(toJson(menu.etag()));
+        write(out, ",\"categories\":");
+        out.writeBytes(categoriesJson);
+        write(out, ",\"items\":");
+        out.writeBytes(itemsJson);
+        write(out, ",\"orders\":");
+        out.writeBytes(ordersJson);
+        write(out, "}");
+
+        return new Bootstrap(tableSessionService.issue(table), menu.version(), out.toByteArray());
+    }
+
+    private static void write(ByteArrayOutputStream out, String text) {
+        out.writeBytes(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private byte[] toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Không thể serialize dữ liệu bàn: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package qrorder.system.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import qrorder.system.config.WebSocketConfig;
+import qrorder.system.dto.projection.TableRef;
+import qrorder.system.dto.response.CacheStatsResponse;
+import qrorder.system.entity.TableInfo;
+import qrorder.system.repository.TableRepository;
+import qrorder.system.util.ExpiringCache;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Danh bạ bàn: Access Key -> (ID bàn, tên, chi nhánh), dùng cho mọi API của khách hàng
+ * (đặt món, xem đơn, ảnh chụp, thông tin bàn) thay vì tra bảng table_info và nạp Store ở mỗi request.
+ *
+ * Thứ tự tra cứu: token phiên bàn (khớp session_version của bàn trong bảng tra theo ID) -> bộ nhớ đệm -> DB (một truy vấn projection).
+ * Access Key không tồn tại thì không được lưu (tránh đầy bộ nhớ vì key đoán bừa).
+ * Được làm mới khi Admin/Staff sửa hoặc xóa bàn (TableService).
+ *
+ * [MỚI] Thêm bảng tra theo ID bàn (Khách gọi nhân viên), nạp sẵn toàn bộ bàn khi khởi động và giữ lâu
+ * (bàn hiếm khi đổi, đã được làm mới khi sửa/xóa): DB chậm trong chốc lát không ảnh hưởng tới việc gọi nhân viên.
+ * Bảng này cũng là nơi đối chiếu token phiên bàn; khi chạy nhiều node (broker relay) node khác không nhận
+ * việc làm mới, nên chỉ giữ RELAY_TTL_MILLIS: token của bàn vừa sửa/xóa bị từ chối ở mọi node sau tối đa chừng đó.
+ *
+ * [MỚI] Danh sách bàn theo chi nhánh cho Sơ đồ bàn (GET /api/staff/tables): làm mới khi thêm/sửa/xóa bàn trên node này,
+ * node khác thấy thay đổi sau tối đa RELAY_TTL_MILLIS.
+ */
+@Component
+public class TableDirectory {
+
+    private static final long RELAY_TTL_MILLIS = 60_000;
+
+    @Autowired
+    private TableRepository tableRepository;
+
+    @Autowired
+    private TableSessionService tableSessionService;
+
+    @Value("${app.websocket.broker:simple}")
+    private String brokerMode;
+
+    private final ExpiringCache<String, TableRef> tablesByAccessKey = new ExpiringCache<>(50_000, 30 * 60 * 1000L);
+    private ExpiringCache<Long, TableRef> tablesById;
+    private final ExpiringCache<Long, List<TableRef>> tablesByStore = new ExpiringCache<>(10_000, RELAY_TTL_MILLIS);
+
+    @PostConstruct
+    void init() {
+        tablesById = new ExpiringCache<>(50_000, WebSocketConfig.isRelay(brokerMode) ? RELAY_TTL_MILLIS : 12 * 60 * 60 * 1000L);
+    }
+
+    /**
+     * Nạp sẵn bảng tra theo ID bàn (một truy vấn cho mọi chi nhánh)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        for (TableRef table : tableRepository.findAllRefs()) {
+            tablesById.put(table.id(), table);
+        }
+    }
+
+    /**
+     * Tìm bàn theo Access Key và kiểm tra bàn thuộc chi nhánh hiện tại.
+     * tableSession (tùy chọn): token phiên bàn do GET /api/public/tables/{accessKey}/info cấp.
+     */
+    public TableRef resolve(String accessKey, Long storeId, String tableSession) {
+        TableRef table = fromSession(tableSession)
+                .filter(t -> t.accessKey().equals(accessKey))
+                .orElseGet(() -> tablesByAccessKey.get(accessKey, key -> tableRepository.findRefByAccessKey(key)
+                        .map(this::rememberById) // Token cấp cho bàn này lần sau đối chiếu được mà không cần truy vấn
+                        .orElse(null)));
+        if (table == null) {
+            throw new RuntimeException("Mã bàn không hợp lệ");
+        }
+
+        if (!table.storeId().equals(storeId)) {
+            throw new AccessDeniedException("Bàn không thuộc chi nhánh này");
+        }
+        return table;
+    }
+
+    /**
+     * [MỚI] Tìm bàn theo ID (không kiểm tra chi nhánh: người gọi tự lấy chi nhánh từ kết quả).
+     * Trả về null nếu bàn không tồn tại.
+     */
+    public TableRef findById(Long tableId) {
+        return tablesById.get(tableId, id -> tableRepository.findRefById(id).orElse(null));
+    }
+
+    private TableRef rememberById(TableRef table) {
+        tablesById.put(table.id(), table);
+        return table;
+    }
+
+    /**
+     * [MỚI] Bàn của token phiên bàn, nếu token hợp lệ VÀ bàn chưa bị sửa/xóa từ lúc cấp
+     * (phiên bản trong token = session_version của bàn trong bảng tra theo ID).
+     * Trả về bàn hiện tại trong danh bạ, không phải bản ghi trong token; empty -> người gọi tra theo Access Key/ID.
+     */
+    public Optional<TableRef> fromSession(String tableSession) {
+        return tableSessionService.verify(tableSession)
+                .map(claimed -> {
+                    TableRef current = findById(claimed.id());
+                    return current != null && current.sessionVersion() == claimed.sessionVersion() ? current : null;
+                });
+    }
+
+    /**
+     * [MỚI] Các bàn của chi nhánh, theo thứ tự ID (không truy vấn DB khi đã có trong bộ nhớ)
+     */
+    public List<TableRef> tablesOfStore(Long storeId) {
+        return tablesByStore.get(storeId, id -> List.copyOf(tableRepository.findRefsByStoreId(id)));
+    }
+
+    /**
+     * Gỡ bàn khỏi danh bạ ngay lập tức và một lần nữa sau khi commit:
+     * request đọc chen vào giữa lúc transaction chưa commit có thể đã nạp lại bản cũ.
+     */
+    public void invalidateAfterCommit(TableInfo table) {
+        Long tableId = table.getId();
+        String accessKey = table.getAccessKey();
+        Long storeId = table.getStore().getId();
+        invalidate(tableId, accessKey, storeId);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(tableId, accessKey, storeId);
+            }
+        });
+    }
+
+    private void invalidate(Long tableId, String accessKey, Long storeId) {
+        tablesByAccessKey.invalidate(accessKey);
+        tablesById.invalidate(tableId);
+        tablesByStore.invalidate(storeId);
+    }
+
+    public CacheStatsResponse getStats() {
+        return new CacheStatsResponse("table-directory",
+                tablesByAccessKey.hitCount() + tablesById.hitCount() + tablesByStore.hitCount(),
+                tablesByAccessKey.missCount() + tablesById.missCount() + tablesByStore.missCount(),
+                tablesByAccessKey.size() + tablesById.size() + tablesByStore.size());
+    }
+}
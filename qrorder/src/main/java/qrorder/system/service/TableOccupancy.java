@@ -0,0 +1,203 @@
+package qrorder.system.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import qrorder.system.config.WebSocketConfig;
+import qrorder.system.dto.event.TableStatusEvent;
+import qrorder.system.dto.projection.OrderRow;
+import qrorder.system.dto.response.OrderResponse;
+import qrorder.system.enums.OrderStatus;
+import qrorder.system.enums.TableStatus;
+import qrorder.system.repository.CustomerOrderRepository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Trạng thái bàn trong bộ nhớ: bàn nào đang có khách (có ít nhất một đơn chưa thanh toán) của từng chi nhánh.
+ *
+ * GET /api/staff/tables lấy trạng thái từ đây thay vì hỏi DB cho từng bàn.
+ * Một bàn có thể có nhiều đơn cùng lúc, nên bảng giữ các ĐƠN đang mở (orderId -> tableId) thay vì một cờ cho mỗi bàn:
+ * thanh toán một đơn chỉ giải phóng bàn khi không còn đơn nào khác.
+ *
+ * Cập nhật giống KitchenBoard: ghi sau khi commit, mỗi lần ghi mang một stamp tăng dần (bản cũ đến muộn bị bỏ qua),
+ * đơn rời bảng được giữ dạng "bia mộ" một thời gian ngắn; dựng lại từ DB khi khởi động;
+ * tắt khi chạy nhiều node (TableService dùng truy vấn gộp).
+ *
+ * [MỚI] Mỗi chi nhánh còn đếm số đơn đang mở theo bàn. Chỉ khi số đếm đổi 0 -> 1 (đơn đầu tiên của bàn trống)
+ * hoặc 1 -> 0 (đơn cuối cùng được thanh toán/hủy) mới gửi TableStatusEvent tới /topic/staff/{storeId}/tables;
+ * đơn thứ hai của bàn đang có khách, đổi trạng thái món... không sinh sự kiện nào.
+ * Sự kiện được xếp hàng ngay trong khóa của chi nhánh nên seq đúng thứ tự các lần chuyển trạng thái.
+ */
+@Component
+public class TableOccupancy {
+
+    // Đơn ở các trạng thái này -> bàn đang có khách
+    public static final List<OrderStatus> OCCUPYING_STATUSES = List.of(
+            OrderStatus.PENDING,
+            OrderStatus.PREPARING,
+            OrderStatus.COMPLETED,
+            OrderStatus.SERVED
+    );
+
+    // Thời gian giữ "bia mộ" của đơn đã rời bảng
+    private static final long TOMBSTONE_TTL_MILLIS = 60_000;
+
+    @Autowired
+    private CustomerOrderRepository orderRepository;
+
+    @Autowired
+    private OrderEventDispatcher orderEventDispatcher;
+
+    @Value("${app.websocket.broker:simple}")
+    private String brokerMode;
+
+    private final Map<Long, StoreTables> stores = new ConcurrentHashMap<>();
+    private final AtomicLong stamps = new AtomicLong();
+
+    private volatile boolean ready = false;
+
+    // tableId = null -> "bia mộ"
+    private record Entry(long stamp, Long tableId, long removedAtMillis) {
+    }
+
+    // Trạng thái của một chi nhánh: ghi khi giữ khóa của chính đối tượng này, đọc openOrders không cần khóa
+    private static final class StoreTables {
+        final Map<Long, Entry> orders = new HashMap<>(); // orderId -> Entry
+        final Map<Long, Integer> openOrders = new ConcurrentHashMap<>(); // tableId -> số đơn đang mở (> 0)
+        long lastSweepMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Dựng lại từ DB khi ứng dụng đã sẵn sàng (một truy vấn cho mọi chi nhánh, không đọc món).
+     * Dùng stamp 0: thay đổi nào đã được ghi trong lúc dựng lại đều được ưu tiên.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (WebSocketConfig.isRelay(brokerMode)) {
+            System.out.println(">>> Broker relay (nhiều node): tắt trạng thái bàn trong bộ nhớ, đọc từ DB");
+            return;
+        }
+        for (OrderRow row : orderRepository.findOrderRowsByStatus(OCCUPYING_STATUSES)) {
+            put(row.storeId(), row.id(), row.tableId(), 0);
+        }
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * ID các bàn đang có khách của chi nhánh
+     */
+    public Set<Long> occupiedTables(Long storeId) {
+        StoreTables tables = stores.get(storeId);
+        return tables != null ? new HashSet<>(tables.openOrders.keySet()) : new HashSet<>();
+    }
+
+    /**
+     * Ghi trạng thái mới nhất của đơn hàng sau khi transaction hiện tại commit (xem KitchenBoard.applyAfterCommit)
+     */
+    public void applyAfterCommit(OrderResponse order) {
+        afterCommit(stamp -> apply(order, stamp));
+    }
+
+    /**
+     * Gỡ các đơn hàng sau khi transaction hiện tại commit (thanh toán gộp cả bàn)
+     */
+    public void removeAfterCommit(Long storeId, Collection<Long> orderIds) {
+        afterCommit(stamp -> orderIds.forEach(orderId -> put(storeId, orderId, null, stamp)));
+    }
+
+    private void afterCommit(LongConsumer write) {
+        if (WebSocketConfig.isRelay(brokerMode)) {
+            return;
+        }
+        long stamp = stamps.incrementAndGet();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            write.accept(stamp);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                write.accept(stamp);
+            }
+        });
+    }
+
+    /**
+     * Đơn còn mở thì giữ bàn, ngược lại thì gỡ đơn khỏi bàn.
+     */
+    void apply(OrderResponse order, long stamp) {
+        boolean occupying = OCCUPYING_STATUSES.contains(order.status());
+        put(order.storeId(), order.id(), occupying ? order.tableId() : null, stamp);
+    }
+
+    // Bản ghi có stamp cũ hơn bản đang có sẽ bị bỏ qua
+    private void put(Long storeId, Long orderId, Long tableId, long stamp) {
+        StoreTables tables = stores.computeIfAbsent(storeId, id -> new StoreTables());
+        synchronized (tables) {
+            Entry current = tables.orders.get(orderId);
+            if (current != null && current.stamp() > stamp) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            tables.orders.put(orderId, tableId != null ? new Entry(stamp, tableId, 0) : new Entry(stamp, null, now));
+
+            Long previousTable = current != null ? current.tableId() : null;
+            if (!Objects.equals(previousTable, tableId)) {
+                if (previousTable != null) {
+                    release(storeId, tables, previousTable);
+                }
+                if (tableId != null) {
+                    occupy(storeId, tables, tableId);
+                }
+            }
+            sweep(tables, now);
+        }
+    }
+
+    private void occupy(Long storeId, StoreTables tables, Long tableId) {
+        if (tables.openOrders.merge(tableId, 1, Integer::sum) == 1) {
+            publish(storeId, new TableStatusEvent(tableId, TableStatus.ACTIVE));
+        }
+    }
+
+    private void release(Long storeId, StoreTables tables, Long tableId) {
+        Integer left = tables.openOrders.computeIfPresent(tableId, (id, count) -> count > 1 ? count - 1 : null);
+        if (left == null) {
+            publish(storeId, new TableStatusEvent(tableId, TableStatus.EMPTY));
+        }
+    }
+
+    // Lúc dựng lại từ DB chưa có client nào theo dõi (snapshot đọc truy vấn gộp) -> không gửi
+    private void publish(Long storeId, TableStatusEvent event) {
+        if (ready) {
+            orderEventDispatcher.publishTableStatus(storeId, event);
+        }
+    }
+
+    // Dọn "bia mộ" hết hạn (tối đa mỗi TTL một lần cho mỗi chi nhánh)
+    private static void sweep(StoreTables tables, long now) {
+        if (now - tables.lastSweepMillis < TOMBSTONE_TTL_MILLIS) {
+            return;
+        }
+        tables.lastSweepMillis = now;
+        tables.orders.values().removeIf(entry -> entry.tableId() == null && now - entry.removedAtMillis() > TOMBSTONE_TTL_MILLIS);
+    }
+}
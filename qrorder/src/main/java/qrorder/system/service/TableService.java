@@ -6,18 +6,20 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import qrorder.system.config.security.StoreUserDetails;
 import qrorder.system.dto.TableStatusDTO;
+import qrorder.system.dto.projection.TableRef;
 import qrorder.system.dto.request.TableRequest;
+import qrorder.system.dto.response.TableMapSnapshotResponse;
 import qrorder.system.dto.response.TableResponse;
 import qrorder.system.entity.Store;
 import qrorder.system.entity.TableInfo;
-import qrorder.system.enums.OrderStatus;
 import qrorder.system.enums.TableStatus;
 import qrorder.system.repository.StoreRepository;
 import qrorder.system.repository.CustomerOrderRepository;
 import qrorder.system.repository.TableRepository;
 
-import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -33,12 +35,14 @@ public class TableService {
     @Autowired
     private CustomerOrderRepository customerOrderRepository;
 
-    // [MỚI] Danh sách các trạng thái đơn hàng được coi là "hoạt động" (chưa thanh toán)
-    private static final List<OrderStatus> ACTIVE_ORDER_STATUSES = Arrays.asList(
-            OrderStatus.PENDING,
-            OrderStatus.PREPARING,
-            OrderStatus.COMPLETED
-    );
+    @Autowired
+    private TableOccupancy tableOccupancy; // Trạng thái bàn trong bộ nhớ
+
+    @Autowired
+    private OrderEventDispatcher orderEventDispatcher;
+
+    @Autowired
+    private TableDirectory tableDirectory; // Access Key -> bàn của khách hàng
 
     /**
      * Admin/Staff tạo Bàn mới
@@ -55,6 +59,7 @@ public class TableService {
         // accessKey sẽ được tự động tạo bởi @PrePersist trong Entity Table
 
         TableInfo savedTable = tableRepository.save(table);
+        tableDirectory.invalidateAfterCommit(savedTable); // Sơ đồ bàn có thêm bàn mới
         return toTableResponse(savedTable);
     }
 
@@ -79,8 +84,10 @@ public class TableService {
 
         table.setName(request.name());
         table.setCapacity(request.capacity());
+        table.setSessionVersion(table.getSessionVersion() + 1); // Token phiên bàn cấp trước đó mang tên/sức chứa cũ
 
         TableInfo updatedTable = tableRepository.save(table);
+        tableDirectory.invalidateAfterCommit(updatedTable); // Tên/sức chứa mới cho khách đang ngồi bàn
         return toTableResponse(updatedTable);
     }
 
@@ -96,6 +103,7 @@ public class TableService {
         // Cần xử lý logic (ví dụ: không cho xóa bàn đang có order PENDING)
 
         tableRepository.delete(table);
+        tableDirectory.invalidateAfterCommit(table);
     }
 
 
@@ -133,29 +141,33 @@ public class TableService {
     @Transactional(readOnly = true)
     public List<TableStatusDTO> getTableStatusesForStore(StoreUserDetails userDetails) {
         Long storeId = userDetails.getStoreId();
-        List<TableInfo> tables = tableRepository.findAllByStoreId(storeId);
+        List<TableRef> tables = tableDirectory.tablesOfStore(storeId); // [MỚI] Danh sách bàn trong bộ nhớ
+
+        // Bàn đang có khách: đọc từ bộ nhớ; chưa dựng xong / chạy nhiều node -> MỘT truy vấn gộp
+        Set<Long> occupied = tableOccupancy.isReady()
+                ? tableOccupancy.occupiedTables(storeId)
+                : new HashSet<>(customerOrderRepository.findTableIdsWithOrderStatus(storeId, TableOccupancy.OCCUPYING_STATUSES));
 
         return tables.stream()
-                .map(table -> {
-                    // Kiểm tra trạng thái hoạt động
-                    boolean hasActiveOrder = customerOrderRepository.existsByTableAndStatusIn(
-                            table,
-                            java.util.Arrays.asList(
-                                    OrderStatus.PENDING,
-                                    OrderStatus.PREPARING,
-                                    OrderStatus.COMPLETED,
-                                    OrderStatus.SERVED
-                            )
-                    );
-
-                    return new TableStatusDTO(
-                            table.getId(),
-                            table.getName(),
-                            table.getCapacity(),
-                            hasActiveOrder ? TableStatus.ACTIVE : TableStatus.EMPTY,
-                            table.getAccessKey()
-                    );
-                })
+                .map(table -> new TableStatusDTO(
+                        table.id(),
+                        table.name(),
+                        table.capacity(),
+                        occupied.contains(table.id()) ? TableStatus.ACTIVE : TableStatus.EMPTY,
+                        table.accessKey()
+                ))
                 .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+
+    /**
+     * [MỚI] Ảnh chụp Sơ đồ bàn + seq của /topic/staff/{storeId}/tables (tải lần đầu / đồng bộ lại WebSocket).
+     * Lấy seq TRƯỚC khi đọc trạng thái: sự kiện có seq <= seq đã nằm trong ảnh chụp,
+     * sự kiện mới hơn mang trạng thái tuyệt đối nên áp dụng lại không sai.
+     */
+    @Transactional(readOnly = true)
+    public TableMapSnapshotResponse getTableMapSnapshot(StoreUserDetails userDetails) {
+        long seq = orderEventDispatcher.currentSeq(OrderEventDispatcher.staffTablesTopic(userDetails.getStoreId()));
+        return new TableMapSnapshotResponse(orderEventDispatcher.getNodeId(), seq, tableOccupancy.isReady(),
+                getTableStatusesForStore(userDetails));
+    }
+}
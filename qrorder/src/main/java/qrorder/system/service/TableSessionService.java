@@ -0,0 +1,95 @@
+package qrorder.system.service;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import qrorder.system.dto.projection.TableRef;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * Phiên bàn của khách hàng: token ký HMAC (HS256) được cấp khi quét QR (GET /api/public/tables/{accessKey}/info),
+ * mang sẵn ID bàn, tên bàn, sức chứa, chi nhánh, Access Key và phiên bản phiên của bàn (table_info.session_version).
+ *
+ * Khách gửi lại token trong header "X-Table-Session"; các API khách hàng sau đó lấy bàn từ token
+ * thay vì tra Access Key. Token là tùy chọn: thiếu, sai chữ ký hoặc hết hạn thì tra theo Access Key như cũ.
+ *
+ * Lớp này chỉ kiểm tra chữ ký/hạn dùng. TableDirectory.fromSession so phiên bản trong token với bàn trong danh bạ
+ * theo ID: sửa/xóa bàn tăng session_version trong DB (hoặc xóa dòng), nên token cấp trước đó bị từ chối
+ * kể cả sau khi khởi động lại hay trên node khác.
+ *
+ * Khóa ký riêng (app.table-session.secret), khác khóa JWT của nhân viên:
+ * token của khách không bao giờ được JwtAuthFilter chấp nhận.
+ */
+@Service
+public class TableSessionService {
+
+    public static final String HEADER = "X-Table-Session";
+
+    @Value("${app.table-session.secret}")
+    private String secret;
+
+    @Value("${app.table-session.expiration-ms:14400000}")
+    private long expirationMillis;
+
+    private Key signInKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    void init() {
+        signInKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signInKey)
+                .build();
+    }
+
+    /**
+     * Cấp token cho bàn (khách vừa quét QR)
+     */
+    public String issue(TableRef table) {
+        long now = System.currentTimeMillis();
+        return Jwts.builder()
+                .setSubject(table.accessKey())
+                .claim("tid", table.id())
+                .claim("sid", table.storeId())
+                .claim("name", table.name())
+                .claim("cap", table.capacity())
+                .claim("ver", table.sessionVersion()) // So với session_version hiện tại của bàn (TableDirectory)
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + expirationMillis))
+                .signWith(signInKey, SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    /**
+     * Đọc bàn ghi trong token (đúng chữ ký, còn hạn). Trả về empty nếu token trống/sai/hết hạn.
+     * KHÔNG tự kiểm tra bàn còn như lúc cấp: dùng TableDirectory.fromSession.
+     */
+    public Optional<TableRef> verify(String token) {
+        if (token == null || token.isBlank()) {
+            return Optional.empty();
+        }
+        Claims claims;
+        try {
+            claims = parser.parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+
+        Integer version = claims.get("ver", Integer.class);
+        if (version == null) {
+            return Optional.empty(); // Token cấp trước khi có phiên bản phiên bàn
+        }
+        return Optional.of(new TableRef(claims.get("tid", Long.class), claims.get("name", String.class),
+                claims.get("cap", Integer.class), claims.get("sid", Long.class), claims.getSubject(), version));
+    }
+}
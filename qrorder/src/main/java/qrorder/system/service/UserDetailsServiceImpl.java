@@ -57,7 +57,9 @@ public class UserDetailsServiceImpl implements UserDetailsService {
                 appUser.getUsername(),
                 appUser.getPassword(),
                 authorities,
-                appUser.getStore().getId()
+                appUser.getStore().getId(),
+                appUser.getId(),
+                appUser.getTokenVersion()
         );
     }
 }
\ No newline at end of file
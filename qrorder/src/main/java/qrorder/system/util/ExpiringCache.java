@@ -0,0 +1,146 @@
+package qrorder.system.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * Bộ nhớ đệm nhỏ, an toàn đa luồng, có giới hạn số phần tử và thời gian sống (TTL).
+ *
+ * Không thay thế cho Caffeine/Redis: việc dọn dẹp chỉ chạy khi vượt giới hạn,
+ * và khi đầy sẽ loại bỏ phần tử bất kỳ (không phải LRU chuẩn).
+ * Đủ dùng cho các bảng tra cứu nóng, kích thước nhỏ trong một tiến trình.
+ */
+public class ExpiringCache<K, V> {
+
+    private record Entry<V>(V value, long expiresAtMillis) {
+        boolean isExpired(long now) {
+            return now >= expiresAtMillis;
+        }
+    }
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final long ttlMillis;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ExpiringCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Trả về giá trị còn hạn, hoặc null nếu không có / đã hết hạn.
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            entries.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value();
+    }
+
+    /**
+     * Lấy giá trị, nếu chưa có thì nạp bằng loader (loader có thể trả về null = không lưu).
+     */
+    public V get(K key, Function<K, V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = loader.apply(key);
+        if (value != null) {
+            put(key, value);
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        put(key, value, Long.MAX_VALUE);
+    }
+
+    /**
+     * Lưu với thời điểm hết hạn riêng (VD: theo hạn của JWT), không vượt quá TTL mặc định.
+     */
+    public void put(K key, V value, long expiresAtMillis) {
+        long cappedExpiry = Math.min(expiresAtMillis, System.currentTimeMillis() + ttlMillis);
+        entries.put(key, new Entry<>(value, cappedExpiry));
+        if (entries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Gộp value với giá trị còn hạn đang có bằng merge (nguyên tử); chưa có thì lưu value.
+     * Trả về giá trị sau khi gộp.
+     */
+    public V merge(K key, V value, BinaryOperator<V> merge) {
+        long now = System.currentTimeMillis();
+        Entry<V> merged = entries.compute(key, (k, existing) -> existing != null && !existing.isExpired(now)
+                ? new Entry<>(merge.apply(existing.value(), value), existing.expiresAtMillis())
+                : new Entry<>(value, now + ttlMillis));
+        if (entries.size() > maxSize) {
+            evict();
+        }
+        return merged.value();
+    }
+
+    /**
+     * Lưu nếu chưa có giá trị còn hạn (nguyên tử: hai luồng cùng gọi thì chỉ một luồng lưu được).
+     * Trả về giá trị đang có, hoặc null nếu value vừa được lưu.
+     */
+    public V putIfAbsent(K key, V value) {
+        long now = System.currentTimeMillis();
+        Entry<V> fresh = new Entry<>(value, now + ttlMillis);
+        Entry<V> current = entries.compute(key,
+                (k, existing) -> existing != null && !existing.isExpired(now) ? existing : fresh);
+        if (current != fresh) {
+            hits.increment();
+            return current.value();
+        }
+        misses.increment();
+        if (entries.size() > maxSize) {
+            evict();
+        }
+        return null;
+    }
+
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(e -> e.isExpired(now));
+
+        Iterator<K> it = entries.keySet().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
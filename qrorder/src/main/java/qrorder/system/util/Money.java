@@ -0,0 +1,47 @@
+package qrorder.system.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Tiền dạng số nguyên long (đơn vị nhỏ = 1/100, đúng bằng độ chính xác của cột DECIMAL(10,2))
+ * cho đường tính giá đơn hàng.
+ *
+ * BigDecimal.multiply/add tạo object mới ở mỗi bước; cộng/nhân bằng long thì không cấp phát gì.
+ * BigDecimal chỉ dùng ở hai đầu: đọc từ entity/DB (toMinor) và trả về API/ghi DB (toDecimal).
+ * Giá trị có 2 chữ số lẻ nên chuyển đổi là chính xác; tràn số ném ArithmeticException thay vì âm thầm sai.
+ */
+public final class Money {
+
+    private static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    /**
+     * BigDecimal (DB/API) -> đơn vị nhỏ. null = 0; nhiều hơn 2 chữ số lẻ thì làm tròn HALF_UP như khi ghi vào cột.
+     */
+    public static long toMinor(BigDecimal amount) {
+        if (amount == null) {
+            return 0;
+        }
+        if (amount.scale() == 0) {
+            return Math.multiplyExact(amount.longValueExact(), 100L); // Số nguyên: không cấp phát
+        }
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).movePointRight(SCALE).longValueExact();
+    }
+
+    /**
+     * Đơn vị nhỏ -> BigDecimal (trả về API / ghi DB), luôn có 2 chữ số lẻ như cột DECIMAL(10,2)
+     */
+    public static BigDecimal toDecimal(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    /**
+     * Thành tiền của một dòng món
+     */
+    public static long lineTotal(BigDecimal unitPrice, int quantity) {
+        return Math.multiplyExact(toMinor(unitPrice), quantity);
+    }
+}
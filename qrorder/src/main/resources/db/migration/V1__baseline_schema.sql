@@ -0,0 +1,87 @@
+-- Schema ban đầu: đúng như Hibernate (ddl-auto: update) đã tạo từ các entity trước khi chuyển sang Flyway.
+-- DB đang chạy (tạo bằng ddl-auto) được Flyway "baseline" ở version 1 nên file này không chạy lại trên đó:
+-- mọi cột/index thêm sau đó phải nằm trong migration V2 trở đi (DB cũ chỉ nhận được từ đó).
+
+CREATE TABLE store (
+    id           BIGINT       NOT NULL AUTO_INCREMENT,
+    subdomain    VARCHAR(50)  NOT NULL,
+    name         VARCHAR(255) NOT NULL,
+    bank_id      VARCHAR(255),
+    account_no   VARCHAR(255),
+    account_name VARCHAR(255),
+    qr_template  VARCHAR(255),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_store_subdomain UNIQUE (subdomain)
+) ENGINE = InnoDB;
+
+CREATE TABLE app_user (
+    id            BIGINT       NOT NULL AUTO_INCREMENT,
+    username      VARCHAR(100) NOT NULL,
+    password_hash VARCHAR(255) NOT NULL,
+    role          VARCHAR(50)  NOT NULL,
+    created_at    DATETIME DEFAULT CURRENT_TIMESTAMP,
+    store_id      BIGINT       NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_app_user_username_store UNIQUE (username, store_id),
+    CONSTRAINT fk_app_user_store FOREIGN KEY (store_id) REFERENCES store (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE category (
+    id       BIGINT       NOT NULL AUTO_INCREMENT,
+    name     VARCHAR(255) NOT NULL,
+    store_id BIGINT       NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_category_store FOREIGN KEY (store_id) REFERENCES store (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE menu_item (
+    id              BIGINT         NOT NULL AUTO_INCREMENT,
+    name            VARCHAR(255)   NOT NULL,
+    description     VARCHAR(255),
+    price           DECIMAL(38, 2) NOT NULL,
+    image_url       VARCHAR(255),
+    is_out_of_stock BOOLEAN DEFAULT FALSE,
+    deleted         BOOLEAN DEFAULT FALSE NOT NULL,
+    category_id     BIGINT         NOT NULL,
+    store_id        BIGINT         NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_menu_item_category FOREIGN KEY (category_id) REFERENCES category (id),
+    CONSTRAINT fk_menu_item_store FOREIGN KEY (store_id) REFERENCES store (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE table_info (
+    id         BIGINT       NOT NULL AUTO_INCREMENT,
+    name       VARCHAR(50)  NOT NULL,
+    capacity   INT          NOT NULL,
+    access_key VARCHAR(255) NOT NULL,
+    store_id   BIGINT       NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_table_info_access_key UNIQUE (access_key),
+    CONSTRAINT fk_table_info_store FOREIGN KEY (store_id) REFERENCES store (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE customer_order (
+    id              BIGINT         NOT NULL AUTO_INCREMENT,
+    status          VARCHAR(50)    NOT NULL,
+    total_price     DECIMAL(10, 2),
+    surcharge       DECIMAL(10, 2),
+    surcharge_notes VARCHAR(255),
+    created_at      DATETIME DEFAULT CURRENT_TIMESTAMP,
+    table_id        BIGINT         NOT NULL,
+    store_id        BIGINT         NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_customer_order_table FOREIGN KEY (table_id) REFERENCES table_info (id),
+    CONSTRAINT fk_customer_order_store FOREIGN KEY (store_id) REFERENCES store (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE order_item (
+    id             BIGINT         NOT NULL AUTO_INCREMENT,
+    quantity       INT            NOT NULL,
+    note           VARCHAR(255),
+    price_per_item DECIMAL(10, 2) NOT NULL,
+    order_id       BIGINT         NOT NULL,
+    menu_item_id   BIGINT         NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_order_item_order FOREIGN KEY (order_id) REFERENCES customer_order (id),
+    CONSTRAINT fk_order_item_menu_item FOREIGN KEY (menu_item_id) REFERENCES menu_item (id)
+) ENGINE = InnoDB;
@@ -0,0 +1,43 @@
+-- Index cho các truy vấn chạy nhiều nhất (xem QueryIndexUsageTest).
+-- Cột bằng (=) đứng trước, cột khoảng/sắp xếp đứng sau.
+
+-- Bếp / thanh toán: store_id = ? AND status IN (...)
+CREATE INDEX idx_customer_order_store_status ON customer_order (store_id, status);
+-- Trạng thái bàn / đơn của bàn: table_id = ? AND status IN (...)
+CREATE INDEX idx_customer_order_table_status ON customer_order (table_id, status);
+-- Dựng lại bảng Bếp khi khởi động: status IN (...) của mọi chi nhánh
+CREATE INDEX idx_customer_order_status ON customer_order (status);
+-- Lịch sử đơn hàng (phân trang keyset theo created_at, id).
+-- DB đã chạy bản khai báo hai index này trong @Table(indexes) của CustomerOrder (ddl-auto: update) thì đã có sẵn
+-- -> chỉ tạo khi chưa có index nào gồm đúng các cột đó (MySQL không có CREATE INDEX IF NOT EXISTS).
+-- So theo cột, không theo tên: schema cũ do Hibernate tạo không dùng các tên đặt trong V1.
+SET @has_index := (SELECT COUNT(*) FROM (
+                       SELECT index_name FROM information_schema.statistics
+                       WHERE table_schema = DATABASE() AND table_name = 'customer_order'
+                       GROUP BY index_name
+                       HAVING GROUP_CONCAT(column_name ORDER BY seq_in_index) = 'store_id,created_at,id') existing);
+SET @ddl := IF(@has_index = 0,
+               'CREATE INDEX idx_customer_order_store_created ON customer_order (store_id, created_at, id)',
+               'SELECT 1');
+PREPARE create_index FROM @ddl;
+EXECUTE create_index;
+DEALLOCATE PREPARE create_index;
+
+SET @has_index := (SELECT COUNT(*) FROM (
+                       SELECT index_name FROM information_schema.statistics
+                       WHERE table_schema = DATABASE() AND table_name = 'customer_order'
+                       GROUP BY index_name
+                       HAVING GROUP_CONCAT(column_name ORDER BY seq_in_index) = 'table_id,created_at,id') existing);
+SET @ddl := IF(@has_index = 0,
+               'CREATE INDEX idx_customer_order_table_created ON customer_order (table_id, created_at, id)',
+               'SELECT 1');
+PREPARE create_index FROM @ddl;
+EXECUTE create_index;
+DEALLOCATE PREPARE create_index;
+
+-- Món của một/nhiều đơn hàng: order_id = ? / order_id IN (...)
+CREATE INDEX idx_order_item_order ON order_item (order_id);
+
+-- Thực đơn: store_id = ? AND deleted = false (kèm category_id khi lọc theo danh mục)
+CREATE INDEX idx_menu_item_store_deleted ON menu_item (store_id, deleted);
+CREATE INDEX idx_menu_item_category_store ON menu_item (category_id, store_id, deleted);
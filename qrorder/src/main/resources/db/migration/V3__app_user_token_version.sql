@@ -0,0 +1,11 @@
+-- Phiên bản token của nhân viên: tăng khi đổi role/mật khẩu để thu hồi các JWT đã cấp.
+-- DB cũ được baseline ở V1 nên cột phải được thêm ở đây.
+-- DB đã chạy bản có cột này bằng ddl-auto: update thì đã có sẵn -> bỏ qua (MySQL không có ADD COLUMN IF NOT EXISTS).
+SET @has_token_version := (SELECT COUNT(*) FROM information_schema.columns
+                           WHERE table_schema = DATABASE() AND table_name = 'app_user' AND column_name = 'token_version');
+SET @ddl := IF(@has_token_version = 0,
+               'ALTER TABLE app_user ADD COLUMN token_version INT NOT NULL DEFAULT 0',
+               'SELECT 1');
+PREPARE add_token_version FROM @ddl;
+EXECUTE add_token_version;
+DEALLOCATE PREPARE add_token_version;
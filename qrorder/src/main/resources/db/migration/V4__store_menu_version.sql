@@ -0,0 +1,3 @@
+-- Phiên bản thực đơn của chi nhánh: tăng 1 ở mỗi thao tác ghi thực đơn (cùng transaction),
+-- giữ nguyên qua khởi động lại và dùng chung cho mọi node -> khách so sánh phiên bản với sự kiện /topic/menu/{storeId}.
+ALTER TABLE store ADD COLUMN menu_version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,3 @@
+-- Phiên bản phiên bàn: tăng khi bàn bị sửa; token phiên bàn (X-Table-Session) mang phiên bản lúc cấp
+-- và bị từ chối khi khác phiên bản trong DB, kể cả sau khi khởi động lại hay trên node khác.
+ALTER TABLE table_info ADD COLUMN session_version INT NOT NULL DEFAULT 0;
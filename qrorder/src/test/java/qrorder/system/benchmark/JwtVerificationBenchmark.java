@@ -0,0 +1,96 @@
+package qrorder.system.benchmark;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+import qrorder.system.config.security.StoreUserDetails;
+import qrorder.system.service.JwtService;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chi phí xác thực JWT trong JwtAuthFilter cho mỗi request:
+ * - before: cách cũ, parse + kiểm tra chữ ký 3 lần (lấy username, rồi kiểm tra token: username lần nữa + hạn dùng),
+ *   mỗi lần tạo lại khóa HMAC và parser.
+ * - after: JwtService.verify (parse một lần, dùng lại từ cache theo SHA-256 của token).
+ *
+ * 8 luồng đồng thời, {@code devices} token khác nhau (mỗi máy tính bảng/điện thoại nhân viên một token)
+ * để mô phỏng giờ cao điểm.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Threads(8)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET = "RH8nuqnC8VuH2DbzQ!F&Z6DYsDNpaPXd";
+
+    @Param({"200"})
+    public int devices;
+
+    private JwtService jwtService;
+    private String[] tokens;
+
+    @Setup
+    public void setup() {
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "JWT_SECRET", SECRET);
+        ReflectionTestUtils.setField(jwtService, "JWT_EXPIRATION", 86_400_000L);
+        ReflectionTestUtils.invokeMethod(jwtService, "init");
+
+        tokens = new String[devices];
+        for (int i = 0; i < devices; i++) {
+            StoreUserDetails user = new StoreUserDetails("kitchen" + i, "",
+                    List.of(new SimpleGrantedAuthority("ROLE_KITCHEN")), 1L, (long) i, 0);
+            tokens[i] = jwtService.generateToken(user);
+        }
+    }
+
+    private String nextToken() {
+        return tokens[ThreadLocalRandom.current().nextInt(tokens.length)];
+    }
+
+    @Benchmark
+    public boolean before_threeParsesPerRequest() {
+        String token = nextToken();
+        String username = legacyParse(token).getSubject();
+        // Kiểm tra token: parse lại để lấy username và hạn dùng
+        return username.equals(legacyParse(token).getSubject())
+                && !legacyParse(token).getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public boolean after_verifyOnce() {
+        Claims claims = jwtService.verify(nextToken());
+        return !claims.getExpiration().before(new Date());
+    }
+
+    private static Claims legacyParse(String token) {
+        Key key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        return Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtVerificationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
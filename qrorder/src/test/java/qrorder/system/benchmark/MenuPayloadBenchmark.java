@@ -0,0 +1,95 @@
+package qrorder.system.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import qrorder.system.dto.response.MenuItemResponse;
+import qrorder.system.service.MenuCatalog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Chi phí CPU và bộ nhớ cấp phát để ghi MỘT phản hồi /api/public/menu-items (200 món) cho một điện thoại:
+ * - before: ResponseEntity<List<MenuItemResponse>> -> Jackson serialize lại mỗi request
+ *   (bản gzip: nén lại mỗi request, giống bật server.compression).
+ * - after: ghi thẳng mảng byte đã serialize/nén sẵn trong ảnh chụp của MenuCatalog.
+ *
+ * Cả hai đều đi qua HttpMessageConverter mà Spring MVC dùng, ghi vào body giả lập trong bộ nhớ.
+ * Xem bộ nhớ cấp phát bằng {@code -prof gc} (gc.alloc.rate.norm = byte/request).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx350m", "-Xms350m", "-XX:+UseSerialGC"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MenuPayloadBenchmark {
+
+    // Accept-Encoding của client
+    @Param({"identity", "gzip"})
+    public String encoding;
+
+    private MappingJackson2HttpMessageConverter jsonConverter;
+    private ByteArrayHttpMessageConverter bytesConverter;
+    private List<MenuItemResponse> items;
+    private MenuCatalog.Payload payload;
+
+    @Setup
+    public void setup() throws IOException {
+        jsonConverter = new MappingJackson2HttpMessageConverter(new ObjectMapper().registerModule(new JavaTimeModule()));
+        bytesConverter = new ByteArrayHttpMessageConverter();
+
+        items = new ArrayList<>();
+        for (long i = 1; i <= 200; i++) {
+            long category = (i - 1) / 20 + 1;
+            items.add(new MenuItemResponse(i, "Lẩu Thái hải sản " + i, "Nước lẩu chua cay, hải sản tươi, kèm rau và bún",
+                    BigDecimal.valueOf(189_000), "https://cdn.example.com/menu/" + i + ".jpg",
+                    category, "Danh mục " + category, 1L, i % 10 == 0));
+        }
+        payload = MenuCatalog.Payload.of(jsonConverter.getObjectMapper().writeValueAsBytes(items));
+    }
+
+    @Benchmark
+    public int before_serializePerRequest() throws IOException {
+        MockHttpOutputMessage response = new MockHttpOutputMessage();
+        if ("gzip".equals(encoding)) {
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+            jsonConverter.getObjectMapper().writeValue(json, items);
+            try (OutputStream out = new GZIPOutputStream(response.getBody())) {
+                json.writeTo(out);
+            }
+        } else {
+            jsonConverter.write(items, MediaType.APPLICATION_JSON, response);
+        }
+        return response.getBodyAsBytes().length;
+    }
+
+    @Benchmark
+    public int after_preEncoded() throws IOException {
+        MockHttpOutputMessage response = new MockHttpOutputMessage();
+        byte[] body = "gzip".equals(encoding) ? payload.gzip() : payload.json();
+        bytesConverter.write(body, MediaType.APPLICATION_JSON, response);
+        return response.getBodyAsBytes().length;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MenuPayloadBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
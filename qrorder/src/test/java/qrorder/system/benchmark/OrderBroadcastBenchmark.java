@@ -0,0 +1,103 @@
+package qrorder.system.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import qrorder.system.dto.event.OrderEvent;
+import qrorder.system.dto.response.OrderItemResponse;
+import qrorder.system.dto.response.OrderResponse;
+import qrorder.system.enums.OrderStatus;
+import qrorder.system.service.OrderEventDispatcher;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chi phí CPU và bộ nhớ cấp phát cho MỘT sự kiện đơn hàng gửi tới topic Bếp + topic bàn:
+ * - before: convertAndSend cho từng topic (Jackson serialize lại cho mỗi topic).
+ * - after: OrderEventDispatcher.publish (serialize một lần, dùng lại mảng byte cho mọi topic).
+ *
+ * Broker được thay bằng channel "hố đen" để chỉ đo phần serialize + tạo Message.
+ * Chạy với cùng cấu hình heap/GC như docker-compose.yml; xem bộ nhớ cấp phát bằng {@code -prof gc}
+ * (gc.alloc.rate.norm = byte/sự kiện).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx350m", "-Xms350m", "-XX:+UseSerialGC"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OrderBroadcastBenchmark {
+
+    // Đơn mới (kèm toàn bộ món) hoặc chỉ đổi trạng thái
+    @Param({"ORDER_PLACED", "STATUS_CHANGED"})
+    public String eventType;
+
+    private SimpMessagingTemplate template;
+    private OrderEventDispatcher dispatcher;
+    private OrderEvent event;
+
+    private volatile Message<?> lastSent;
+
+    @Setup
+    public void setup() {
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(new ObjectMapper().registerModule(new JavaTimeModule()));
+
+        MessageChannel blackHole = (message, timeout) -> {
+            lastSent = message;
+            return true;
+        };
+        template = new SimpMessagingTemplate(blackHole);
+        template.setMessageConverter(converter);
+
+        dispatcher = new OrderEventDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "messagingTemplate", template);
+
+        List<OrderItemResponse> items = new ArrayList<>();
+        for (long i = 1; i <= 8; i++) {
+            items.add(new OrderItemResponse(i, i, "Lẩu Thái hải sản " + i, 2, "Ít cay, thêm rau",
+                    BigDecimal.valueOf(189_000)));
+        }
+        OrderResponse order = new OrderResponse(1001L, 12L, "Bàn 12", 1L, OrderStatus.PREPARING,
+                BigDecimal.valueOf(3_024_000), LocalDateTime.now(), items, BigDecimal.ZERO, null);
+        event = "ORDER_PLACED".equals(eventType) ? OrderEvent.placed(order) : OrderEvent.statusChanged(order);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Benchmark
+    public Message<?> before_convertPerTopic() {
+        template.convertAndSend("/topic/kitchen/1", event, Map.of(OrderEventDispatcher.SEQ_HEADER, "1"));
+        template.convertAndSend("/topic/table/12", event, Map.of(OrderEventDispatcher.SEQ_HEADER, "1"));
+        return lastSent;
+    }
+
+    @Benchmark
+    public Message<?> after_encodeOnce() {
+        dispatcher.publish(1L, event);
+        return lastSent;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OrderBroadcastBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,71 @@
+package qrorder.system.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import qrorder.system.entity.OrderItem;
+import qrorder.system.util.Money;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chi phí tính tổng tiền một đơn hàng lớn (mỗi lần đổi số lượng / hủy món / trả DTO đều tính lại):
+ * - before: stream + BigDecimal.multiply/add cho từng dòng món.
+ * - after: cộng dồn bằng long (Money), chỉ đổi sang BigDecimal một lần ở cuối.
+ *
+ * Giá món có 2 chữ số lẻ như khi Hibernate đọc cột DECIMAL(10,2).
+ * Chạy với cùng cấu hình heap/GC như docker-compose.yml; xem bộ nhớ cấp phát bằng {@code -prof gc}
+ * (gc.alloc.rate.norm = byte/lần tính).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx350m", "-Xms350m", "-XX:+UseSerialGC"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OrderPricingBenchmark {
+
+    // Số dòng món trong đơn (bàn tiệc / gộp nhiều lượt gọi thêm)
+    @Param({"20", "200"})
+    public int lines;
+
+    private List<OrderItem> items;
+
+    @Setup
+    public void setup() {
+        items = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            OrderItem item = new OrderItem();
+            item.setQuantity(1 + i % 4);
+            item.setPricePerItem(new BigDecimal((35_000 + i * 1_500) + ".00"));
+            items.add(item);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal before_bigDecimalStream() {
+        return items.stream()
+                .map(i -> i.getPricePerItem().multiply(BigDecimal.valueOf(i.getQuantity())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    @Benchmark
+    public BigDecimal after_minorUnits() {
+        long total = 0;
+        for (OrderItem item : items) {
+            total = Math.addExact(total, Money.lineTotal(item.getPricePerItem(), item.getQuantity()));
+        }
+        return Money.toDecimal(total);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OrderPricingBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,133 @@
+package qrorder.system.benchmark;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import qrorder.system.config.tenant.TenantContext;
+import qrorder.system.config.tenant.TenantDirectory;
+import qrorder.system.config.tenant.TenantFilter;
+import qrorder.system.entity.Store;
+import qrorder.system.repository.StoreRepository;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * So sánh độ trễ của TenantFilter trước (truy vấn store theo subdomain ở mỗi request)
+ * và sau khi dùng TenantDirectory (đọc từ bộ nhớ).
+ *
+ * Độ trễ một lượt DB được giả lập bằng {@code dbRoundTripMicros}.
+ * Chạy: mvn test-compile, sau đó chạy main() của class này từ IDE
+ * (hoặc java -cp target/test-classes:target/classes:<classpath test> ...).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TenantFilterBenchmark {
+
+    @Param({"0", "300"})
+    public long dbRoundTripMicros;
+
+    private OncePerRequestFilter legacyFilter;
+    private TenantFilter directoryFilter;
+
+    private final FilterChain chain = (req, res) -> TenantContext.getTenantId();
+
+    @Setup
+    public void setup() {
+        StoreRepository repository = slowStoreRepository(dbRoundTripMicros);
+
+        legacyFilter = new LegacyTenantFilter(repository);
+
+        TenantDirectory directory = new TenantDirectory();
+        ReflectionTestUtils.setField(directory, "storeRepository", repository);
+        directoryFilter = new TenantFilter();
+        ReflectionTestUtils.setField(directoryFilter, "tenantDirectory", directory);
+    }
+
+    @Benchmark
+    public int before_repositoryPerRequest() throws Exception {
+        return run(legacyFilter);
+    }
+
+    @Benchmark
+    public int after_tenantDirectory() throws Exception {
+        return run(directoryFilter);
+    }
+
+    private int run(OncePerRequestFilter filter) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/public/menu-items");
+        request.setServerName("gogi.qr-order.vn");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response.getStatus();
+    }
+
+    private static StoreRepository slowStoreRepository(long roundTripMicros) {
+        Store store = new Store();
+        store.setId(7L);
+        store.setSubdomain("gogi");
+        store.setName("Gogi");
+
+        return (StoreRepository) Proxy.newProxyInstance(
+                StoreRepository.class.getClassLoader(),
+                new Class<?>[]{StoreRepository.class},
+                (proxy, method, args) -> {
+                    if (roundTripMicros > 0) {
+                        LockSupport.parkNanos(roundTripMicros * 1_000);
+                    }
+                    return switch (method.getName()) {
+                        case "findBySubdomain" -> store.getSubdomain().equals(args[0]) ? Optional.of(store) : Optional.empty();
+                        case "findById" -> Optional.of(store);
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+    }
+
+    /**
+     * Bản sao logic TenantFilter cũ (trước khi có TenantDirectory), giữ lại để làm mốc so sánh.
+     */
+    static class LegacyTenantFilter extends OncePerRequestFilter {
+
+        private final StoreRepository storeRepository;
+
+        LegacyTenantFilter(StoreRepository storeRepository) {
+            this.storeRepository = storeRepository;
+        }
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+                throws ServletException, IOException {
+            try {
+                String subdomain = request.getServerName().split("\\.")[0];
+                Store store = storeRepository.findBySubdomain(subdomain)
+                        .orElseThrow(() -> new RuntimeException("Chi nhánh không hợp lệ: " + subdomain));
+                TenantContext.setTenantId(store.getId());
+                filterChain.doFilter(request, response);
+            } finally {
+                TenantContext.clear();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TenantFilterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
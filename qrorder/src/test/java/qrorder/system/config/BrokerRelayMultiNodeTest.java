@@ -0,0 +1,192 @@
+package qrorder.system.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+import qrorder.system.QrorderApplication;
+import qrorder.system.config.tenant.TenantContext;
+import qrorder.system.dto.request.OrderItemRequest;
+import qrorder.system.dto.request.OrderPlacementRequest;
+import qrorder.system.dto.response.OrderResponse;
+import qrorder.system.entity.Category;
+import qrorder.system.entity.MenuItem;
+import qrorder.system.entity.Store;
+import qrorder.system.entity.TableInfo;
+import qrorder.system.repository.CategoryRepository;
+import qrorder.system.repository.MenuItemRepository;
+import qrorder.system.repository.StoreRepository;
+import qrorder.system.repository.TableRepository;
+import qrorder.system.service.OrderEventDispatcher;
+import qrorder.system.service.OrderService;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hai node backend dùng chung DB, cùng relay /topic qua một broker STOMP nhúng (ActiveMQ Artemis):
+ * đơn hàng đặt trên node A phải tới được Bếp đang kết nối WebSocket vào node B.
+ */
+class BrokerRelayMultiNodeTest {
+
+    private static EmbeddedActiveMQ broker;
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @BeforeAll
+    static void startCluster() throws Exception {
+        int stompPort = freePort();
+        broker = new EmbeddedActiveMQ().setConfiguration(new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .addAcceptorConfiguration("stomp", "tcp://127.0.0.1:" + stompPort + "?protocols=STOMP"));
+        broker.start();
+
+        nodeA = startNode(stompPort, "create");
+        nodeB = startNode(stompPort, "none");
+    }
+
+    @AfterAll
+    static void stopCluster() throws Exception {
+        if (nodeB != null) nodeB.close();
+        if (nodeA != null) nodeA.close();
+        if (broker != null) broker.stop();
+    }
+
+    @Test
+    void orderPlacedOnNodeAReachesKitchenOnNodeB() throws Exception {
+        Store store = nodeA.getBean(StoreRepository.class).findBySubdomain("default").orElseThrow();
+        TableInfo table = seedTable(store);
+        MenuItem item = seedMenuItem(store);
+
+        // Bếp kết nối vào node B (localhost -> chi nhánh "default", xem TenantFilter)
+        WebSocketStompClient stompClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+        stompClient.setTaskScheduler(scheduler); // Cần cho việc chờ RECEIPT
+        StompSession session = stompClient
+                .connectAsync("ws://localhost:" + port(nodeB) + "/ws", new StompSessionHandlerAdapter() {})
+                .get(10, TimeUnit.SECONDS);
+
+        BlockingQueue<Received> received = new LinkedBlockingQueue<>();
+        CountDownLatch subscribed = new CountDownLatch(1);
+        session.setAutoReceipt(true);
+        session.subscribe(OrderEventDispatcher.kitchenTopic(store.getId()), new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add(new Received(headers, (byte[]) payload));
+            }
+        }).addReceiptTask(subscribed::countDown);
+        // Broker xác nhận SUBSCRIBE -> đăng ký đã có hiệu lực trước khi đặt đơn
+        assertThat(subscribed.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // Đặt đơn trên node A
+        OrderResponse order;
+        TenantContext.setTenantId(store.getId());
+        try {
+            order = nodeA.getBean(OrderService.class).placeOrder(new OrderPlacementRequest(table.getAccessKey(),
+                    List.of(new OrderItemRequest(item.getId(), 2, null))));
+        } finally {
+            TenantContext.clear();
+        }
+
+        Received message = received.poll(10, TimeUnit.SECONDS);
+        assertThat(message).isNotNull();
+
+        JsonNode event = mapper.readTree(message.payload());
+        assertThat(event.get("type").asText()).isEqualTo("ORDER_PLACED");
+        assertThat(event.get("orderId").asLong()).isEqualTo(order.id());
+        assertThat(message.headers().getFirst(OrderEventDispatcher.SEQ_HEADER)).isEqualTo("1");
+        assertThat(message.headers().getFirst(OrderEventDispatcher.NODE_HEADER))
+                .isEqualTo(nodeA.getBean(OrderEventDispatcher.class).getNodeId());
+
+        session.disconnect();
+        stompClient.stop();
+        scheduler.shutdown();
+    }
+
+    private record Received(StompHeaders headers, byte[] payload) {
+    }
+
+    private static ConfigurableApplicationContext startNode(int stompPort, String ddlAuto) {
+        // Tham số dòng lệnh: ưu tiên hơn application.yaml
+        return new SpringApplicationBuilder(QrorderApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:multinode;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.flyway.enabled=false", // Migration viết cho MySQL; H2 dùng schema Hibernate tạo
+                "--spring.jpa.hibernate.ddl-auto=" + ddlAuto,
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.devtools.restart.enabled=false",
+                "--app.websocket.broker=relay",
+                "--app.websocket.relay.host=127.0.0.1",
+                "--app.websocket.relay.port=" + stompPort
+        );
+    }
+
+    private static TableInfo seedTable(Store store) {
+        TableInfo table = new TableInfo();
+        table.setName("Relay 1");
+        table.setCapacity(4);
+        table.setStore(store);
+        return nodeA.getBean(TableRepository.class).save(table);
+    }
+
+    private static MenuItem seedMenuItem(Store store) {
+        Category category = new Category();
+        category.setName("Món chính");
+        category.setStore(store);
+        category = nodeA.getBean(CategoryRepository.class).save(category);
+
+        MenuItem item = new MenuItem();
+        item.setName("Phở bò");
+        item.setPrice(BigDecimal.valueOf(55_000));
+        item.setCategory(category);
+        item.setStore(store);
+        return nodeA.getBean(MenuItemRepository.class).save(item);
+    }
+
+    private static int port(ConfigurableApplicationContext node) {
+        return ((ServletWebServerApplicationContext) node).getWebServer().getPort();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
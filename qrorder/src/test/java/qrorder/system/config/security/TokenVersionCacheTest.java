@@ -0,0 +1,54 @@
+package qrorder.system.config.security;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import qrorder.system.entity.AppUser;
+import qrorder.system.repository.AppUserRepository;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TokenVersionCacheTest {
+
+    @Mock
+    private AppUserRepository appUserRepository;
+
+    @InjectMocks
+    private TokenVersionCache tokenVersionCache;
+
+    @Test
+    void staleLoadDoesNotOverwriteVersionWrittenAfterCommit() {
+        // Lần đọc DB trả về phiên bản 3, nhưng trong lúc đó đổi mật khẩu đã commit và ghi phiên bản 4
+        when(appUserRepository.findById(1L)).thenAnswer(invocation -> {
+            tokenVersionCache.updateAfterCommit(1L, 4);
+            return Optional.of(user(3));
+        });
+
+        assertThat(tokenVersionCache.isCurrent(1L, 3)).isFalse();
+        assertThat(tokenVersionCache.isCurrent(1L, 3)).isFalse(); // Không quay về bản cũ ở lần đọc cache sau
+        assertThat(tokenVersionCache.isCurrent(1L, 4)).isTrue();
+    }
+
+    @Test
+    void staleLoadDoesNotUndoRevocation() {
+        when(appUserRepository.findById(1L)).thenAnswer(invocation -> {
+            tokenVersionCache.revokeAfterCommit(1L);
+            return Optional.of(user(3));
+        });
+
+        assertThat(tokenVersionCache.isCurrent(1L, 3)).isFalse();
+        assertThat(tokenVersionCache.isCurrent(1L, 3)).isFalse();
+    }
+
+    private static AppUser user(int tokenVersion) {
+        AppUser user = new AppUser();
+        user.setTokenVersion(tokenVersion);
+        return user;
+    }
+}
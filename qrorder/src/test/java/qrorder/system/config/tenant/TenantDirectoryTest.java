@@ -0,0 +1,42 @@
+package qrorder.system.config.tenant;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import qrorder.system.entity.Store;
+import qrorder.system.repository.StoreRepository;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TenantDirectoryTest {
+
+    @Mock
+    private StoreRepository storeRepository;
+
+    @InjectMocks
+    private TenantDirectory tenantDirectory;
+
+    @Test
+    void unknownSubdomainIsRememberedUntilStoreIsCreated() {
+        when(storeRepository.findBySubdomain("gogi")).thenReturn(Optional.empty());
+
+        assertThat(tenantDirectory.findStoreId("gogi")).isEmpty();
+        assertThat(tenantDirectory.findStoreId("gogi")).isEmpty();
+        verify(storeRepository, times(1)).findBySubdomain("gogi"); // Lần thứ hai không xuống DB
+
+        // Chi nhánh vừa tạo trên node này dùng được ngay
+        Store store = new Store();
+        store.setId(7L);
+        store.setSubdomain("gogi");
+        tenantDirectory.refresh(store);
+        assertThat(tenantDirectory.findStoreId("gogi")).contains(7L);
+    }
+}
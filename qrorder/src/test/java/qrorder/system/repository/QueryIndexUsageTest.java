@@ -0,0 +1,252 @@
+package qrorder.system.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import qrorder.system.enums.OrderStatus;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Chạy các migration Flyway trên MySQL thật rồi EXPLAIN từng truy vấn của repository,
+ * kiểm tra truy vấn đi đúng index đã khai báo trong V2__order_query_indexes.sql (không quét cả bảng).
+ *
+ * Câu SQL được lấy từ performance_schema của chính kết nối vừa chạy truy vấn (Connector/J gửi SQL kèm giá trị),
+ * nên EXPLAIN đúng câu lệnh mà Hibernate sinh ra. Tự bỏ qua khi không có Docker.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQLDialect"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // Dữ liệu mẫu commit thật để ANALYZE TABLE có thống kê
+class QueryIndexUsageTest {
+
+    @Container
+    static final MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0")
+            .withUsername("root"); // Cần quyền đọc performance_schema
+
+    private static final List<OrderStatus> ACTIVE = List.of(
+            OrderStatus.PENDING, OrderStatus.PREPARING, OrderStatus.COMPLETED, OrderStatus.SERVED);
+
+    private static final long STORE = 1L;
+    private static final long TABLE = 1L;
+    private static final long CATEGORY = 1L;
+
+    private static boolean seeded;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", mysql::getJdbcUrl);
+        registry.add("spring.datasource.username", mysql::getUsername);
+        registry.add("spring.datasource.password", mysql::getPassword);
+    }
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CustomerOrderRepository orderRepository;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private MenuItemRepository menuItemRepository;
+
+    @Autowired
+    private TableRepository tableRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @BeforeEach
+    void seedOnce() {
+        if (seeded) {
+            return;
+        }
+        seed();
+        seeded = true;
+    }
+
+    // === CustomerOrderRepository ===
+
+    @Test
+    void orderLookupsUseTheirIndexes() {
+        assertUsesIndex(plan(() -> orderRepository.findByIdAndStoreId(10L, STORE)), "PRIMARY");
+        assertUsesIndex(plan(() -> orderRepository.findTableIdsWithOrderStatus(STORE, ACTIVE)),
+                "idx_customer_order_store_status");
+    }
+
+    @Test
+    void orderRowQueriesUseTheirIndexes() {
+        assertUsesIndex(plan(() -> orderRepository.findOrderRowsByStore(STORE, ACTIVE)),
+                "idx_customer_order_store_status");
+        assertUsesIndex(plan(() -> orderRepository.findOrderRowsByStatus(ACTIVE)),
+                "idx_customer_order_status");
+        assertUsesIndex(plan(() -> orderRepository.findOrderRowsByTableAndStatus(TABLE, STORE, ACTIVE)),
+                "idx_customer_order_table_status");
+    }
+
+    @Test
+    void historyPagesUseCreatedAtIndexes() {
+        LocalDateTime from = LocalDateTime.of(1970, 1, 1, 0, 0);
+        LocalDateTime before = LocalDateTime.now();
+        List<OrderStatus> all = List.of(OrderStatus.values());
+
+        assertUsesIndex(plan(() -> orderRepository.findOrderRowPageByStore(
+                STORE, all, from, before, 0L, Limit.of(21))), "idx_customer_order_store_created");
+        assertUsesIndex(plan(() -> orderRepository.findOrderRowPageByTable(
+                TABLE, STORE, all, from, before, 0L, Limit.of(21))), "idx_customer_order_table_created");
+    }
+
+    @Test
+    void tableSettlementUsesTheirIndexes() {
+        assertUsesIndex(plan(() -> orderRepository.findIdsByTableAndStatus(TABLE, STORE, ACTIVE)),
+                "idx_customer_order_table_status");
+        assertUsesIndex(plan(() -> orderRepository.sumTotalWithSurcharge(List.of(1L, 2L, 3L))), "PRIMARY");
+        assertUsesIndex(plan("update", () -> orderRepository.updateStatusWhereStatusIn(
+                List.of(1L, 2L, 3L), ACTIVE, OrderStatus.PAID)), "PRIMARY");
+    }
+
+    // === TableRepository ===
+
+    @Test
+    void accessKeyLookupUsesUniqueKey() {
+        assertUsesIndexOn(plan(() -> tableRepository.findRefByAccessKey("key-" + TABLE)), "table_info", "access_key");
+        assertUsesIndexOn(plan(() -> tableRepository.findRefsByStoreId(STORE)), "table_info", "store_id");
+    }
+
+    // === OrderItemRepository ===
+
+    @Test
+    void orderItemQueriesUseOrderIndex() {
+        assertUsesIndex(plan(() -> orderItemRepository.findByOrder_Id(10L)), "idx_order_item_order");
+        assertUsesIndex(plan(() -> orderItemRepository.findLineRowsByOrderIds(List.of(10L, 11L, 12L))),
+                "idx_order_item_order");
+    }
+
+    // === MenuItemRepository ===
+
+    @Test
+    void menuQueriesUseTheirIndexes() {
+        assertUsesIndex(plan(() -> menuItemRepository.findAllByStoreIdAndDeletedFalse(STORE)),
+                "idx_menu_item_store_deleted");
+        assertUsesIndex(plan(() -> menuItemRepository.findAllByCategoryIdAndStoreIdAndDeletedFalse(CATEGORY, STORE)),
+                "idx_menu_item_category_store");
+        assertUsesIndex(plan(() -> menuItemRepository.findByIdAndStoreId(5L, STORE)), "PRIMARY");
+        assertUsesIndex(plan(() -> menuItemRepository.findAllByIdInAndStoreId(List.of(1L, 2L, 3L), STORE)), "PRIMARY");
+        assertUsesIndexOn(plan(() -> categoryRepository.findCategoryRowsByStore(STORE)), "category", "store_id");
+    }
+
+    // === Helpers ===
+
+    private List<Map<String, Object>> plan(Runnable query) {
+        return plan("select", query);
+    }
+
+    // Chạy truy vấn rồi EXPLAIN lại đúng câu SQL đó (cùng kết nối, trong một transaction được rollback)
+    private List<Map<String, Object>> plan(String statementType, Runnable query) {
+        return transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            query.run();
+            String sql = jdbc.queryForObject("""
+                    select SQL_TEXT from performance_schema.events_statements_history
+                    where THREAD_ID = PS_CURRENT_THREAD_ID() and lower(SQL_TEXT) like ?
+                    order by EVENT_ID desc limit 1
+                    """, String.class, statementType + " %");
+            return jdbc.queryForList("EXPLAIN " + sql);
+        });
+    }
+
+    private static void assertUsesIndex(List<Map<String, Object>> plan, String index) {
+        assertThat(plan).as("EXPLAIN: %s", plan)
+                .anySatisfy(row -> assertThat(row.get("key")).isEqualTo(index))
+                .noneSatisfy(row -> assertThat(row.get("type")).isEqualTo("ALL"));
+    }
+
+    // Index của khóa ngoại/unique: tên do V1 đặt khác tên Hibernate sinh cho DB cũ -> chỉ kiểm tra cột đầu của index
+    private void assertUsesIndexOn(List<Map<String, Object>> plan, String table, String leadingColumn) {
+        List<String> candidates = jdbc.queryForList("""
+                select index_name from information_schema.statistics
+                where table_schema = database() and table_name = ? and column_name = ? and seq_in_index = 1
+                """, String.class, table, leadingColumn);
+        assertThat(plan).as("EXPLAIN: %s", plan)
+                .anySatisfy(row -> assertThat(candidates).contains((String) row.get("key")))
+                .noneSatisfy(row -> assertThat(row.get("type")).isEqualTo("ALL"));
+    }
+
+    // 2 chi nhánh x 40 bàn x 75 đơn (phần lớn đã thanh toán), mỗi đơn 2 món; 200 món/chi nhánh
+    private void seed() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> stores = new ArrayList<>();
+        List<Object[]> categories = new ArrayList<>();
+        List<Object[]> menuItems = new ArrayList<>();
+        List<Object[]> tables = new ArrayList<>();
+        List<Object[]> orders = new ArrayList<>();
+        List<Object[]> items = new ArrayList<>();
+
+        long categoryId = 0, menuItemId = 0, tableId = 0, orderId = 0, itemId = 0;
+        for (long store = 1; store <= 2; store++) {
+            stores.add(new Object[]{store, "store" + store, "Chi nhánh " + store});
+            long firstMenuItem = menuItemId + 1;
+            for (int c = 0; c < 10; c++) {
+                categories.add(new Object[]{++categoryId, "Danh mục " + c, store});
+                for (int m = 0; m < 20; m++) {
+                    menuItems.add(new Object[]{++menuItemId, "Món " + menuItemId, BigDecimal.valueOf(45_000),
+                            m % 10 == 0, categoryId, store});
+                }
+            }
+            for (int t = 0; t < 40; t++) {
+                tables.add(new Object[]{++tableId, "B" + t, 4, "key-" + tableId, store});
+                for (int o = 0; o < 75; o++) {
+                    OrderStatus status = o < 70 ? (o % 10 == 0 ? OrderStatus.CANCELLED : OrderStatus.PAID)
+                            : ACTIVE.get(o % ACTIVE.size());
+                    orders.add(new Object[]{++orderId, status.name(), BigDecimal.valueOf(90_000), BigDecimal.ZERO,
+                            Timestamp.valueOf(now.minusHours(75 - o).minusMinutes(t)), tableId, store});
+                    for (int i = 0; i < 2; i++) {
+                        items.add(new Object[]{++itemId, 1, BigDecimal.valueOf(45_000), orderId,
+                                firstMenuItem + (orderId + i) % 200});
+                    }
+                }
+            }
+        }
+
+        jdbc.batchUpdate("insert into store (id, subdomain, name) values (?, ?, ?)", stores);
+        jdbc.batchUpdate("insert into category (id, name, store_id) values (?, ?, ?)", categories);
+        jdbc.batchUpdate("insert into menu_item (id, name, price, deleted, category_id, store_id) values (?, ?, ?, ?, ?, ?)",
+                menuItems);
+        jdbc.batchUpdate("insert into table_info (id, name, capacity, access_key, store_id) values (?, ?, ?, ?, ?)", tables);
+        jdbc.batchUpdate("""
+                insert into customer_order (id, status, total_price, surcharge, created_at, table_id, store_id)
+                values (?, ?, ?, ?, ?, ?, ?)
+                """, orders);
+        jdbc.batchUpdate("insert into order_item (id, quantity, price_per_item, order_id, menu_item_id) values (?, ?, ?, ?, ?)",
+                items);
+        jdbc.execute("analyze table store, category, menu_item, table_info, customer_order, order_item");
+    }
+}
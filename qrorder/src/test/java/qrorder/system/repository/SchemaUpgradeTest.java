@@ -0,0 +1,112 @@
+package qrorder.system.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Chạy Flyway (cùng cấu hình spring.flyway.* trong application.yaml) trên từng dạng DB có thể gặp khi nâng cấp:
+ * DB trống, và DB cũ do Hibernate ddl-auto: update tạo ở các thời điểm khác nhau (chưa có bảng lịch sử Flyway,
+ * bị baseline ở V1). Sau khi migrate, schema phải đủ cột/index mà code hiện tại cần.
+ * Tự bỏ qua khi không có Docker.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class SchemaUpgradeTest {
+
+    @Container
+    static final MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0")
+            .withUsername("root"); // Cần quyền tạo database cho từng trường hợp
+
+    // Dạng schema trước khi Flyway chạy lần đầu
+    enum ExistingSchema {
+        EMPTY, // Cài mới
+        BASELINE, // Tạo bằng ddl-auto trước khi có token_version
+        WITH_TOKEN_VERSION, // Tạo bằng ddl-auto sau khi AppUser có token_version
+        WITH_HISTORY_INDEXES, // Như trên, thêm hai index lịch sử đơn hàng từ @Table(indexes) của CustomerOrder
+        GENERATED_KEY_NAMES // Như BASELINE, nhưng index của khóa ngoại/unique mang tên Hibernate sinh (FK.../UK...)
+    }
+
+    @ParameterizedTest
+    @EnumSource(ExistingSchema.class)
+    void migrationsBringEveryExistingSchemaUpToDate(ExistingSchema existing) throws SQLException {
+        String database = "upgrade_" + existing.name().toLowerCase(Locale.ROOT);
+        JdbcTemplate root = new JdbcTemplate(dataSource(""));
+        root.execute("create database " + database);
+        DriverManagerDataSource dataSource = dataSource(database);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+
+        if (existing != ExistingSchema.EMPTY) {
+            try (Connection connection = dataSource.getConnection()) {
+                ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/migration/V1__baseline_schema.sql"));
+            }
+            jdbc.update("insert into store (id, subdomain, name) values (1, 'gogi', 'Gogi')");
+            jdbc.update("insert into app_user (id, username, password_hash, role, store_id) values (1, 'admin', 'x', 'ADMIN', 1)");
+        }
+        if (existing == ExistingSchema.WITH_TOKEN_VERSION || existing == ExistingSchema.WITH_HISTORY_INDEXES) {
+            // Đúng cột mà Hibernate tạo từ @Column(columnDefinition = "INT DEFAULT 0", nullable = false)
+            jdbc.execute("alter table app_user add column token_version INT DEFAULT 0 not null");
+        }
+        if (existing == ExistingSchema.GENERATED_KEY_NAMES) {
+            // Migration từ V2 trở đi không được dựa vào tên fk_.../uk_... đặt trong V1
+            jdbc.queryForList("""
+                    select distinct table_name as tbl, index_name as idx from information_schema.statistics
+                    where table_schema = database() and (index_name like 'fk\\_%' or index_name like 'uk\\_%')
+                    """).forEach(row -> {
+                String index = (String) row.get("idx");
+                String generated = index.substring(0, 2).toUpperCase(Locale.ROOT) + Integer.toHexString(index.hashCode());
+                jdbc.execute("alter table " + row.get("tbl") + " rename index " + index + " to " + generated);
+            });
+        }
+        if (existing == ExistingSchema.WITH_HISTORY_INDEXES) {
+            jdbc.execute("create index idx_customer_order_store_created on customer_order (store_id, created_at, id)");
+            jdbc.execute("create index idx_customer_order_table_created on customer_order (table_id, created_at, id)");
+        }
+
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration")
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load()
+                .migrate();
+
+        assertThat(jdbc.queryForObject("""
+                select count(*) from information_schema.columns
+                where table_schema = database() and table_name = 'app_user' and column_name = 'token_version'
+                """, Integer.class)).isEqualTo(1);
+        if (existing != ExistingSchema.EMPTY) {
+            assertThat(jdbc.queryForObject("select token_version from app_user where id = 1", Integer.class)).isZero();
+            assertThat(jdbc.queryForObject("select menu_version from store where id = 1", Long.class)).isZero();
+            jdbc.update("insert into table_info (id, name, capacity, access_key, store_id) values (1, 'A1', 4, 'key-1', 1)");
+            assertThat(jdbc.queryForObject("select session_version from table_info where id = 1", Integer.class)).isZero();
+        }
+
+        List<String> indexes = jdbc.queryForList("""
+                select distinct index_name from information_schema.statistics
+                where table_schema = database() and index_name like 'idx\\_%'
+                """, String.class);
+        assertThat(indexes).containsExactlyInAnyOrder(
+                "idx_customer_order_store_status", "idx_customer_order_table_status", "idx_customer_order_status",
+                "idx_customer_order_store_created", "idx_customer_order_table_created",
+                "idx_order_item_order", "idx_menu_item_store_deleted", "idx_menu_item_category_store");
+    }
+
+    private static DriverManagerDataSource dataSource(String database) {
+        String url = "jdbc:mysql://" + mysql.getHost() + ":" + mysql.getMappedPort(MySQLContainer.MYSQL_PORT) + "/" + database;
+        return new DriverManagerDataSource(url, mysql.getUsername(), mysql.getPassword());
+    }
+}
@@ -0,0 +1,95 @@
+package qrorder.system.service;
+
+import org.junit.jupiter.api.Test;
+import qrorder.system.dto.response.OrderResponse;
+import qrorder.system.enums.OrderStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KitchenBoardTest {
+
+    private static final long STORE = 1L;
+
+    private final KitchenBoard board = new KitchenBoard();
+
+    @Test
+    void activeOrdersAreListedUntilTheyLeaveTheKitchen() {
+        board.applyAfterCommit(order(2, OrderStatus.PENDING));
+        board.applyAfterCommit(order(1, OrderStatus.PENDING));
+        board.applyAfterCommit(order(1, OrderStatus.PREPARING));
+
+        assertThat(board.snapshot(STORE)).extracting(OrderResponse::id).containsExactly(1L, 2L);
+        assertThat(board.snapshot(STORE).get(0).status()).isEqualTo(OrderStatus.PREPARING);
+
+        board.applyAfterCommit(order(1, OrderStatus.COMPLETED));
+        board.applyAfterCommit(order(2, OrderStatus.PAID));
+
+        assertThat(board.snapshot(STORE)).isEmpty();
+        assertThat(board.snapshot(99L)).isEmpty();
+    }
+
+    @Test
+    void staleWriteDoesNotResurrectOrder() {
+        // afterCommit của hai transaction chạy lệch thứ tự: bản PAID (stamp 2) đến trước bản PENDING (stamp 1)
+        board.apply(order(7, OrderStatus.PAID), 2);
+        board.apply(order(7, OrderStatus.PENDING), 1);
+
+        assertThat(board.snapshot(STORE)).isEmpty();
+    }
+
+    @Test
+    void rebuildDoesNotOverwriteLiveWrites() {
+        board.apply(order(3, OrderStatus.PREPARING), 5);
+        board.apply(order(3, OrderStatus.PENDING), 0); // Bản dựng lại từ DB
+
+        assertThat(board.snapshot(STORE)).singleElement()
+                .extracting(OrderResponse::status).isEqualTo(OrderStatus.PREPARING);
+    }
+
+    @Test
+    void concurrentWritersKeepBoardConsistent() throws InterruptedException {
+        int writers = 8;
+        int ordersPerWriter = 500;
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int w = 0; w < writers; w++) {
+            long base = (long) w * ordersPerWriter;
+            pool.submit(() -> {
+                start.await();
+                for (long id = base; id < base + ordersPerWriter; id++) {
+                    board.applyAfterCommit(order(id, OrderStatus.PENDING));
+                    board.applyAfterCommit(order(id, OrderStatus.PREPARING));
+                    // Một nửa số đơn rời bảng
+                    if (id % 2 == 0) {
+                        board.applyAfterCommit(order(id, OrderStatus.SERVED));
+                    }
+                    board.snapshot(STORE);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        List<OrderResponse> snapshot = board.snapshot(STORE);
+        assertThat(snapshot).hasSize(writers * ordersPerWriter / 2)
+                .allSatisfy(o -> assertThat(o.status()).isEqualTo(OrderStatus.PREPARING))
+                .extracting(OrderResponse::id).isSorted();
+    }
+
+    private static OrderResponse order(long id, OrderStatus status) {
+        return new OrderResponse(id, 10L, "A1", STORE, status, BigDecimal.ZERO,
+                LocalDateTime.now(), new ArrayList<>(), BigDecimal.ZERO, null);
+    }
+}
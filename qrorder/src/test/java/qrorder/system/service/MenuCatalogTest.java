@@ -0,0 +1,229 @@
+package qrorder.system.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import qrorder.system.dto.event.MenuEvent;
+import qrorder.system.dto.request.CreateCategoryRequest;
+import qrorder.system.dto.request.MenuItemRequest;
+import qrorder.system.dto.response.CategoryResponse;
+import qrorder.system.dto.response.MenuItemResponse;
+import qrorder.system.entity.Store;
+import qrorder.system.enums.MenuEventType;
+import qrorder.system.repository.StoreRepository;
+import qrorder.system.support.SqlStatementCounter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Ảnh chụp thực đơn: đọc lại không truy vấn DB, mỗi thao tác ghi của MenuService (đã commit)
+ * làm tăng phiên bản lưu ở store.menu_version và đổi ETag; JSON mã hóa sẵn (gốc/gzip) khớp với nội dung ảnh chụp;
+ * mỗi thao tác ghi gửi đúng một MenuEvent mang phiên bản của chính nó.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false", // Migration viết cho MySQL; H2 dùng schema Hibernate tạo
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=qrorder.system.support.SqlStatementCounter"
+})
+@Import({MenuService.class, MenuCatalog.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // Các thao tác ghi commit thật để afterCommit chạy
+class MenuCatalogTest {
+
+    @Autowired
+    private MenuService menuService;
+
+    @Autowired
+    private MenuCatalog menuCatalog;
+
+    @Autowired
+    private StoreRepository storeRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockitoBean
+    private OrderEventDispatcher orderEventDispatcher;
+
+    private Long storeId;
+    private CategoryResponse hotpot;
+    private MenuItemResponse thaiHotpot;
+
+    @BeforeEach
+    void seed() {
+        Store store = new Store();
+        store.setSubdomain("menu-" + System.nanoTime());
+        store.setName("Gogi");
+        storeId = storeRepository.save(store).getId();
+
+        hotpot = menuService.createCategory(new CreateCategoryRequest("Lẩu"), storeId);
+        CategoryResponse drinks = menuService.createCategory(new CreateCategoryRequest("Đồ uống"), storeId);
+        thaiHotpot = menuService.createMenuItem(item("Lẩu Thái", 150_000, hotpot.id()), storeId);
+        menuService.createMenuItem(item("Trà đá", 5_000, drinks.id()), storeId);
+        clearInvocations(orderEventDispatcher);
+    }
+
+    @Test
+    void versionIsStoredWithTheStoreAndCountsEveryWrite() {
+        MenuCatalog.Snapshot snapshot = menuCatalog.get(storeId);
+
+        assertThat(snapshot.version()).isEqualTo(4); // 2 danh mục + 2 món, chưa lần đọc nào ở giữa
+        assertThat(storeRepository.findMenuVersion(storeId)).contains(snapshot.version());
+    }
+
+    @Test
+    void snapshotIsServedFromMemoryUntilMenuChanges() throws IOException {
+        MenuCatalog.Snapshot first = menuCatalog.get(storeId);
+        assertThat(categoriesOf(first)).extracting(CategoryResponse::name).containsExactly("Lẩu", "Đồ uống");
+        assertThat(itemsOf(first)).extracting(MenuItemResponse::categoryName).containsExactly("Lẩu", "Đồ uống");
+        assertThat(itemsOf(first, hotpot.id())).extracting(MenuItemResponse::name).containsExactly("Lẩu Thái");
+
+        SqlStatementCounter.reset();
+        assertThat(menuCatalog.get(storeId)).isSameAs(first);
+        assertThat(SqlStatementCounter.total()).isZero();
+
+        menuService.toggleMenuItemStock(thaiHotpot.id(), storeId);
+        MenuCatalog.Snapshot afterToggle = menuCatalog.get(storeId);
+        assertThat(afterToggle.version()).isEqualTo(first.version() + 1);
+        assertThat(afterToggle.etag()).isNotEqualTo(first.etag());
+        assertThat(itemsOf(afterToggle).get(0).isOutOfStock()).isTrue();
+
+        // Bật lại: nội dung giống ảnh chụp đầu nhưng là phiên bản mới -> ETag mới
+        // (bản 304 của trình duyệt không được mang header X-Menu-Version cũ)
+        menuService.toggleMenuItemStock(thaiHotpot.id(), storeId);
+        MenuCatalog.Snapshot restored = menuCatalog.get(storeId);
+        assertThat(restored.version()).isEqualTo(first.version() + 2);
+        assertThat(restored.etag()).isNotEqualTo(first.etag()).isNotEqualTo(afterToggle.etag());
+
+        menuService.deleteMenuItem(thaiHotpot.id(), storeId);
+        assertThat(itemsOf(menuCatalog.get(storeId))).extracting(MenuItemResponse::name).containsExactly("Trà đá");
+    }
+
+    @Test
+    void stockAndPriceChangesArePublishedWithNewVersion() {
+        long version = menuCatalog.get(storeId).version();
+
+        menuService.toggleMenuItemStock(thaiHotpot.id(), storeId);
+        menuService.updateMenuItem(thaiHotpot.id(),
+                new MenuItemRequest("Lẩu Thái", null, BigDecimal.valueOf(165_000), null, hotpot.id(), true), storeId);
+        // Đổi tên: khách không vá tại chỗ được -> MENU_CHANGED (tải lại thực đơn)
+        menuService.updateMenuItem(thaiHotpot.id(),
+                new MenuItemRequest("Lẩu Thái chua cay", null, BigDecimal.valueOf(165_000), null, hotpot.id(), true), storeId);
+        assertThat(menuCatalog.get(storeId).version()).isEqualTo(version + 3);
+
+        List<MenuEvent> events = publishedEvents(3);
+        assertThat(events).extracting(MenuEvent::type)
+                .containsExactly(MenuEventType.ITEM_UPDATED, MenuEventType.ITEM_UPDATED, MenuEventType.MENU_CHANGED);
+        assertThat(events).extracting(MenuEvent::menuVersion).containsExactly(version + 1, version + 2, version + 3);
+        assertThat(events.subList(0, 2)).extracting(MenuEvent::itemId).containsOnly(thaiHotpot.id());
+        assertThat(events.subList(0, 2)).extracting(MenuEvent::isOutOfStock).containsExactly(true, true);
+        assertThat(events.get(0).price()).isEqualByComparingTo("150000");
+        assertThat(events.get(1).price()).isEqualByComparingTo("165000");
+    }
+
+    @Test
+    void everyWriteGetsItsOwnVersionWithoutReadsInBetween() throws IOException {
+        long version = menuCatalog.get(storeId).version();
+
+        // Không có get() giữa hai lần ghi: mỗi lần ghi vẫn có phiên bản và sự kiện riêng,
+        // khách ở phiên bản cũ không thể bỏ qua lần đổi tên khi vá tình trạng món
+        menuService.updateMenuItem(thaiHotpot.id(),
+                new MenuItemRequest("Lẩu Thái chua cay", null, BigDecimal.valueOf(150_000), null, hotpot.id(), false), storeId);
+        menuService.toggleMenuItemStock(thaiHotpot.id(), storeId);
+
+        List<MenuEvent> events = publishedEvents(2);
+        assertThat(events).extracting(MenuEvent::type)
+                .containsExactly(MenuEventType.MENU_CHANGED, MenuEventType.ITEM_UPDATED);
+        assertThat(events).extracting(MenuEvent::menuVersion).containsExactly(version + 1, version + 2);
+
+        MenuCatalog.Snapshot snapshot = menuCatalog.get(storeId);
+        assertThat(snapshot.version()).isEqualTo(version + 2);
+        assertThat(itemsOf(snapshot, hotpot.id()).get(0).name()).isEqualTo("Lẩu Thái chua cay");
+        assertThat(itemsOf(snapshot, hotpot.id()).get(0).isOutOfStock()).isTrue();
+    }
+
+    @Test
+    void snapshotRebuildUsesThreeStatements() throws IOException {
+        menuService.updateCategory(hotpot.id(), new CreateCategoryRequest("Lẩu nướng"), storeId);
+
+        SqlStatementCounter.reset();
+        MenuCatalog.Snapshot snapshot = menuCatalog.get(storeId);
+
+        assertThat(SqlStatementCounter.selects()).isEqualTo(3); // Phiên bản + danh mục + món (join danh mục), không lazy load
+        assertThat(itemsOf(snapshot).get(0).categoryName()).isEqualTo("Lẩu nướng");
+    }
+
+    @Test
+    void preEncodedPayloadsMatchMenu() throws IOException {
+        MenuCatalog.Snapshot snapshot = menuCatalog.get(storeId);
+
+        assertThat(snapshot.itemsPayload().json())
+                .isEqualTo(objectMapper.writeValueAsBytes(menuService.getMenuItemsByStore(storeId)));
+        assertThat(gunzip(snapshot.itemsPayload().gzip())).isEqualTo(snapshot.itemsPayload().json());
+        assertThat(gunzip(snapshot.categoriesPayload().gzip()))
+                .isEqualTo(objectMapper.writeValueAsBytes(menuService.getCategoriesByStore(storeId)));
+
+        List<MenuItemResponse> hotpotItems = objectMapper.readValue(
+                gunzip(snapshot.itemsPayloadOf(hotpot.id()).gzip()), new TypeReference<>() {});
+        assertThat(hotpotItems).isEqualTo(menuService.getMenuItemsByCategory(hotpot.id(), storeId));
+
+        assertThat(snapshot.etag(true)).isNotEqualTo(snapshot.etag(false)).endsWith("-gz\"");
+    }
+
+    @Test
+    void categoryOfAnotherStoreIsRejected() {
+        assertThatThrownBy(() -> menuCatalog.get(storeId).itemsPayloadOf(-1L))
+                .hasMessageContaining("Danh mục không hợp lệ");
+    }
+
+    private List<MenuEvent> publishedEvents(int count) {
+        ArgumentCaptor<MenuEvent> events = ArgumentCaptor.forClass(MenuEvent.class);
+        verify(orderEventDispatcher, times(count)).publishMenuEvent(eq(storeId), events.capture());
+        return events.getAllValues();
+    }
+
+    // Đọc lại đúng JSON mà API trả về cho khách
+    private List<CategoryResponse> categoriesOf(MenuCatalog.Snapshot snapshot) throws IOException {
+        return objectMapper.readValue(snapshot.categoriesPayload().json(), new TypeReference<>() {});
+    }
+
+    private List<MenuItemResponse> itemsOf(MenuCatalog.Snapshot snapshot) throws IOException {
+        return objectMapper.readValue(snapshot.itemsPayload().json(), new TypeReference<>() {});
+    }
+
+    private List<MenuItemResponse> itemsOf(MenuCatalog.Snapshot snapshot, Long categoryId) throws IOException {
+        return objectMapper.readValue(snapshot.itemsPayloadOf(categoryId).json(), new TypeReference<>() {});
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static MenuItemRequest item(String name, long price, Long categoryId) {
+        return new MenuItemRequest(name, null, BigDecimal.valueOf(price), null, categoryId, false);
+    }
+}
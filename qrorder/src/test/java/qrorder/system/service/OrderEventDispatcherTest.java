@@ -0,0 +1,235 @@
+package qrorder.system.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import qrorder.system.dto.event.OrderEvent;
+import qrorder.system.dto.response.OrderItemResponse;
+import qrorder.system.dto.response.OrderResponse;
+import qrorder.system.enums.OrderEventType;
+import qrorder.system.enums.OrderStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class OrderEventDispatcherTest {
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    @InjectMocks
+    private OrderEventDispatcher dispatcher;
+
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(dispatcher, "coalesceWindowMillis", 100L);
+        converter.setObjectMapper(mapper);
+        lenient().when(messagingTemplate.getMessageConverter()).thenReturn(converter);
+    }
+
+    @AfterEach
+    void shutdown() {
+        dispatcher.shutdown();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void eachTopicHasItsOwnSequence() {
+        dispatcher.publish(1L, OrderEvent.statusChanged(order(100L, 10L)));
+        dispatcher.publish(1L, OrderEvent.statusChanged(order(101L, 11L)));
+
+        assertThat(dispatcher.currentSeq("/topic/kitchen/1")).isEqualTo(2);
+        assertThat(dispatcher.currentSeq("/topic/table/10")).isEqualTo(1);
+        assertThat(dispatcher.currentSeq("/topic/table/11")).isEqualTo(1);
+        assertThat(dispatcher.currentSeq("/topic/table/12")).isZero();
+
+        ArgumentCaptor<Message<?>> sent = ArgumentCaptor.forClass(Message.class);
+        verify(messagingTemplate, times(2)).send(eq("/topic/kitchen/1"), sent.capture());
+        assertThat(sent.getAllValues())
+                .extracting(m -> SimpMessageHeaderAccessor.wrap(m).getFirstNativeHeader(OrderEventDispatcher.SEQ_HEADER))
+                .containsExactly("1", "2");
+    }
+
+    @Test
+    void eventIsEncodedOnceForAllTopics() {
+        dispatcher.publish(1L, OrderEvent.placed(order(100L, 10L)));
+
+        ArgumentCaptor<Message<?>> kitchen = ArgumentCaptor.forClass(Message.class);
+        ArgumentCaptor<Message<?>> table = ArgumentCaptor.forClass(Message.class);
+        verify(messagingTemplate).send(eq("/topic/kitchen/1"), kitchen.capture());
+        verify(messagingTemplate).send(eq("/topic/table/10"), table.capture());
+
+        // Cùng một mảng byte cho cả hai topic
+        assertThat(kitchen.getValue().getPayload()).isSameAs(table.getValue().getPayload());
+        OrderEvent decoded = (OrderEvent) converter.fromMessage(table.getValue(), OrderEvent.class);
+        assertThat(decoded.order().items()).hasSize(8);
+    }
+
+    @Test
+    void surchargeIsNotSentToKitchen() {
+        dispatcher.publish(1L, OrderEvent.surchargeChanged(order(100L, 10L)));
+
+        verify(messagingTemplate, never()).send(eq("/topic/kitchen/1"), any(Message.class));
+        assertThat(dispatcher.currentSeq("/topic/table/10")).isEqualTo(1);
+    }
+
+    @Test
+    void statusEventIsMuchSmallerThanFullOrder() throws Exception {
+        OrderResponse order = order(100L, 10L);
+
+        String full = mapper.writeValueAsString(order);
+        String delta = mapper.writeValueAsString(OrderEvent.statusChanged(order));
+
+        assertThat(delta).doesNotContain("items").doesNotContain("surcharge");
+        assertThat(delta.length()).isLessThan(full.length() / 5);
+    }
+
+    @Test
+    void updatesOfSameOrderWithinWindowAreCoalesced() {
+        OrderResponse order = order(100L, 10L);
+        OrderItemResponse changedLine = new OrderItemResponse(3L, 3L, "Món 3", 5, null, BigDecimal.valueOf(45_000));
+
+        dispatcher.dispatchAfterCommit(1L, OrderEvent.statusChanged(order));
+        dispatcher.dispatchAfterCommit(1L, OrderEvent.itemsChanged(order, List.of(changedLine), List.of(4L)));
+        dispatcher.dispatchAfterCommit(1L, OrderEvent.surchargeChanged(order));
+
+        ArgumentCaptor<Message<?>> sent = ArgumentCaptor.forClass(Message.class);
+        verify(messagingTemplate, timeout(2000)).send(eq("/topic/table/10"), sent.capture());
+        verify(messagingTemplate, after(300).times(1)).send(eq("/topic/table/10"), any(Message.class));
+        verify(messagingTemplate, times(1)).send(eq("/topic/kitchen/1"), any(Message.class));
+
+        OrderEvent event = (OrderEvent) converter.fromMessage(sent.getValue(), OrderEvent.class);
+        assertThat(event.type()).isEqualTo(OrderEventType.ORDER_UPDATED);
+        assertThat(event.status()).isEqualTo(OrderStatus.PREPARING);
+        assertThat(event.items()).containsExactly(changedLine);
+        assertThat(event.removedItemIds()).containsExactly(4L);
+        assertThat(event.surcharge()).isEqualByComparingTo("0");
+        assertThat(dispatcher.getCoalescedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void eventsWaitForCommitAndAreDroppedOnRollback() {
+        // Transaction bị rollback -> không gửi gì
+        TransactionSynchronizationManager.initSynchronization();
+        dispatcher.dispatchAfterCommit(1L, OrderEvent.statusChanged(order(100L, 10L)));
+        TransactionSynchronizationUtils.invokeAfterCompletion(
+                TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_ROLLED_BACK);
+        TransactionSynchronizationManager.clearSynchronization();
+
+        verify(messagingTemplate, after(300).never()).send(any(String.class), any(Message.class));
+
+        // Transaction commit -> gửi (sau cửa sổ gộp)
+        TransactionSynchronizationManager.initSynchronization();
+        dispatcher.dispatchAfterCommit(1L, OrderEvent.statusChanged(order(101L, 11L)));
+        verify(messagingTemplate, after(200).never()).send(any(String.class), any(Message.class));
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationUtils.invokeAfterCommit(synchronizations);
+        TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations, TransactionSynchronization.STATUS_COMMITTED);
+        TransactionSynchronizationManager.clearSynchronization();
+
+        verify(messagingTemplate, timeout(2000)).send(eq("/topic/table/11"), any(Message.class));
+        assertThat(TransactionSynchronizationManager.getResourceMap()).isEmpty();
+    }
+
+    @Test
+    void tableSettlementIsSentAfterOlderPendingEventsOfItsOrders() {
+        ReflectionTestUtils.setField(dispatcher, "coalesceWindowMillis", 5_000L);
+
+        dispatcher.dispatchAfterCommit(1L, OrderEvent.statusChanged(order(100L, 10L)));
+        dispatcher.dispatchAfterCommit(1L, OrderEvent.tableSettled(10L, List.of(100L, 101L), BigDecimal.valueOf(1_440_000)));
+
+        // Không chờ hết cửa sổ gộp: sự kiện cũ của đơn 100 được gửi ngay, trước sự kiện thanh toán
+        ArgumentCaptor<Message<?>> sent = ArgumentCaptor.forClass(Message.class);
+        verify(messagingTemplate, timeout(2000).times(2)).send(eq("/topic/table/10"), sent.capture());
+        assertThat(sent.getAllValues())
+                .extracting(m -> ((OrderEvent) converter.fromMessage(m, OrderEvent.class)).type())
+                .containsExactly(OrderEventType.STATUS_CHANGED, OrderEventType.TABLE_SETTLED);
+
+        OrderEvent settled = (OrderEvent) converter.fromMessage(sent.getAllValues().get(1), OrderEvent.class);
+        assertThat(settled.orderIds()).containsExactly(100L, 101L);
+        assertThat(settled.settledTotal()).isEqualByComparingTo("1440000");
+        assertThat(settled.status()).isEqualTo(OrderStatus.PAID);
+    }
+
+    @Test
+    void lateEventIsMergedWithNewerChangesInsteadOfDropped() {
+        OrderResponse order = order(100L, 10L);
+        OrderItemResponse added = new OrderItemResponse(9L, 9L, "Món 9", 1, null, BigDecimal.valueOf(10_000));
+
+        // Transaction A (gọi thêm món) lấy stamp trước nhưng afterCommit chạy sau transaction B (Bếp đổi trạng thái)
+        TransactionSynchronizationManager.initSynchronization();
+        dispatcher.dispatchAfterCommit(1L, OrderEvent.itemsChanged(order, List.of(added), List.of()));
+        List<TransactionSynchronization> late = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.unbindResource(dispatcher);
+        TransactionSynchronizationManager.clearSynchronization();
+
+        OrderResponse cooked = new OrderResponse(order.id(), order.tableId(), order.tableName(), order.storeId(),
+                OrderStatus.COMPLETED, order.totalPrice(), order.createdAt(), order.items(), order.surcharge(), null);
+        dispatcher.dispatchAfterCommit(1L, OrderEvent.statusChanged(cooked));
+        verify(messagingTemplate, timeout(2000)).send(eq("/topic/table/10"), any(Message.class));
+
+        TransactionSynchronizationUtils.invokeAfterCommit(late);
+
+        ArgumentCaptor<Message<?>> sent = ArgumentCaptor.forClass(Message.class);
+        verify(messagingTemplate, timeout(2000).times(2)).send(eq("/topic/table/10"), sent.capture());
+        OrderEvent merged = (OrderEvent) converter.fromMessage(sent.getAllValues().get(1), OrderEvent.class);
+        assertThat(merged.items()).containsExactly(added);
+        assertThat(merged.status()).isEqualTo(OrderStatus.COMPLETED); // Không lùi về trạng thái trong bản đến muộn
+    }
+
+    @Test
+    void placedOrderAbsorbsLaterChanges() {
+        OrderResponse order = order(100L, 10L);
+        OrderItemResponse added = new OrderItemResponse(9L, 9L, "Món 9", 1, null, BigDecimal.valueOf(10_000));
+
+        OrderEvent merged = OrderEvent.placed(order)
+                .mergedWith(OrderEvent.itemsChanged(order, List.of(added), List.of(1L)));
+
+        assertThat(merged.type()).isEqualTo(OrderEventType.ORDER_PLACED);
+        assertThat(merged.order().items()).hasSize(8).contains(added)
+                .noneMatch(line -> line.id().equals(1L));
+    }
+
+    private static OrderResponse order(Long id, Long tableId) {
+        List<OrderItemResponse> items = new ArrayList<>();
+        for (long i = 1; i <= 8; i++) {
+            items.add(new OrderItemResponse(i, i, "Món " + i, 2, "Ít cay", BigDecimal.valueOf(45_000)));
+        }
+        return new OrderResponse(id, tableId, "A1", 1L, OrderStatus.PREPARING, BigDecimal.valueOf(720_000),
+                LocalDateTime.now(), items, BigDecimal.ZERO, null);
+    }
+}
@@ -0,0 +1,98 @@
+package qrorder.system.service;
+
+import org.junit.jupiter.api.Test;
+import qrorder.system.dto.response.OrderResponse;
+import qrorder.system.enums.OrderStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OrderIdempotencyStoreTest {
+
+    private final OrderIdempotencyStore store = new OrderIdempotencyStore();
+
+    @Test
+    void concurrentDuplicatesPlaceOneOrder() throws Exception {
+        AtomicInteger placed = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+
+        List<Future<OrderResponse>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(pool.submit(() -> store.placeOnce(1L, "table-key", "tap-1", () -> {
+                await(release); // Giữ request đầu tiên "trong transaction" để các bản gửi lại phải chờ
+                return order(100L + placed.incrementAndGet());
+            })));
+        }
+        Thread.sleep(100);
+        release.countDown();
+
+        for (Future<OrderResponse> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS).id()).isEqualTo(101L);
+        }
+        assertThat(placed).hasValue(1);
+        pool.shutdown();
+
+        // Gửi lại sau đó: trả về đơn cũ, không gọi placement
+        assertThat(store.placeOnce(1L, "table-key", "tap-1", () -> order(999L)).id()).isEqualTo(101L);
+    }
+
+    @Test
+    void keysAreScopedPerTable() {
+        assertThat(store.placeOnce(1L, "table-a", "tap-1", () -> order(1L)).id()).isEqualTo(1L);
+        assertThat(store.placeOnce(1L, "table-b", "tap-1", () -> order(2L)).id()).isEqualTo(2L);
+        assertThat(store.placeOnce(2L, "table-a", "tap-1", () -> order(3L)).id()).isEqualTo(3L);
+    }
+
+    @Test
+    void failedPlacementCanBeRetried() {
+        assertThatThrownBy(() -> store.placeOnce(1L, "table-key", "tap-1", () -> {
+            throw new RuntimeException("Món 'Phở' đã hết hàng");
+        })).hasMessageContaining("hết hàng");
+
+        assertThat(store.placeOnce(1L, "table-key", "tap-1", () -> order(7L)).id()).isEqualTo(7L);
+    }
+
+    @Test
+    void placementFailingWithErrorDoesNotLeaveKeyStuck() {
+        assertThatThrownBy(() -> store.placeOnce(1L, "table-key", "tap-1", () -> {
+            throw new StackOverflowError();
+        })).isInstanceOf(StackOverflowError.class);
+
+        // Không phải chờ WAIT_SECONDS rồi nhận "đang được xử lý"
+        assertThat(store.placeOnce(1L, "table-key", "tap-1", () -> order(8L)).id()).isEqualTo(8L);
+    }
+
+    @Test
+    void requestsWithoutKeyAreNotDeduplicated() {
+        AtomicInteger placed = new AtomicInteger();
+        store.placeOnce(1L, "table-key", null, () -> order(placed.incrementAndGet()));
+        store.placeOnce(1L, "table-key", " ", () -> order(placed.incrementAndGet()));
+
+        assertThat(placed).hasValue(2);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static OrderResponse order(long id) {
+        return new OrderResponse(id, 10L, "A1", 1L, OrderStatus.PENDING, BigDecimal.valueOf(45_000),
+                LocalDateTime.now(), List.of(), BigDecimal.ZERO, null);
+    }
+}
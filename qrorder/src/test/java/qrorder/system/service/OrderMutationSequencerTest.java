@@ -0,0 +1,125 @@
+package qrorder.system.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import qrorder.system.dto.response.SequencerStatsResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OrderMutationSequencerTest {
+
+    private final OrderMutationSequencer sequencer = new OrderMutationSequencer();
+    private final ExecutorService pool = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void mutationsOfSameStoreDoNotLoseUpdates() throws Exception {
+        long[] totalPrice = {0}; // Đọc - sửa - ghi không đồng bộ, giống totalPrice của đơn hàng
+
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            results.add(pool.submit(() -> sequencer.run(1L, () -> {
+                long read = totalPrice[0];
+                Thread.yield();
+                totalPrice[0] = read + 10_000;
+                return null;
+            })));
+        }
+        for (Future<?> result : results) {
+            result.get(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(totalPrice[0]).isEqualTo(2_000_000);
+        SequencerStatsResponse stats = sequencer.getStats();
+        assertThat(stats.executed()).isEqualTo(200);
+        assertThat(stats.activeStores()).isZero();
+        assertThat(stats.queueDepth()).isZero();
+    }
+
+    @Test
+    void differentStoresRunInParallel() throws Exception {
+        // Hai chi nhánh phải cùng vào được vùng ghi thì barrier mới mở
+        CyclicBarrier bothInside = new CyclicBarrier(2);
+
+        Future<?> store1 = pool.submit(() -> sequencer.run(1L, () -> awaitBarrier(bothInside)));
+        Future<?> store2 = pool.submit(() -> sequencer.run(2L, () -> awaitBarrier(bothInside)));
+
+        store1.get(5, TimeUnit.SECONDS);
+        store2.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void queueDepthAndWaitTimeAreReported() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        Future<?> holder = pool.submit(() -> sequencer.run(1L, () -> {
+            started.countDown();
+            awaitLatch(release);
+            return null;
+        }));
+        started.await(5, TimeUnit.SECONDS);
+
+        List<Future<?>> queued = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            queued.add(pool.submit(() -> sequencer.run(1L, () -> null)));
+        }
+        while (sequencer.queueDepth(1L) < 3) {
+            Thread.sleep(5);
+        }
+        assertThat(sequencer.getStats().queueDepth()).isEqualTo(3);
+        assertThat(sequencer.queueDepth(2L)).isZero();
+
+        Thread.sleep(50);
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        for (Future<?> result : queued) {
+            result.get(5, TimeUnit.SECONDS);
+        }
+
+        SequencerStatsResponse stats = sequencer.getStats();
+        assertThat(stats.peakQueueDepth()).isGreaterThanOrEqualTo(3);
+        assertThat(stats.maxWaitMicros()).isGreaterThanOrEqualTo(50_000);
+        assertThat(stats.queueDepth()).isZero();
+    }
+
+    @Test
+    void failedMutationReleasesTheLane() {
+        assertThatThrownBy(() -> sequencer.run(1L, () -> {
+            throw new RuntimeException("Không tìm thấy đơn hàng");
+        })).hasMessage("Không tìm thấy đơn hàng");
+
+        assertThat(sequencer.run(1L, () -> "ok")).isEqualTo("ok");
+        assertThat(sequencer.getStats().activeStores()).isZero();
+    }
+
+    private static Object awaitBarrier(CyclicBarrier barrier) {
+        try {
+            barrier.await(2, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return null;
+    }
+
+    private static void awaitLatch(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
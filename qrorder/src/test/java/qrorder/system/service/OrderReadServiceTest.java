@@ -0,0 +1,190 @@
+package qrorder.system.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import qrorder.system.dto.request.OrderHistoryQuery;
+import qrorder.system.dto.response.OrderPageResponse;
+import qrorder.system.dto.response.OrderResponse;
+import qrorder.system.entity.Category;
+import qrorder.system.entity.CustomerOrder;
+import qrorder.system.entity.MenuItem;
+import qrorder.system.entity.OrderItem;
+import qrorder.system.entity.Store;
+import qrorder.system.entity.TableInfo;
+import qrorder.system.enums.OrderStatus;
+import qrorder.system.support.SqlStatementCounter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false", // Migration viết cho MySQL; H2 dùng schema Hibernate tạo
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=qrorder.system.support.SqlStatementCounter"
+})
+@Import(OrderReadService.class)
+class OrderReadServiceTest {
+
+    private static final List<OrderStatus> KITCHEN = List.of(OrderStatus.PENDING, OrderStatus.PREPARING);
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private OrderReadService orderReadService;
+
+    private Store store;
+    private TableInfo firstTable;
+
+    @BeforeEach
+    void seed() {
+        store = new Store();
+        store.setSubdomain("gogi");
+        store.setName("Gogi");
+        em.persist(store);
+
+        Category category = new Category();
+        category.setName("Lẩu");
+        category.setStore(store);
+        em.persist(category);
+
+        MenuItem[] menu = new MenuItem[3];
+        for (int i = 0; i < menu.length; i++) {
+            menu[i] = new MenuItem();
+            menu[i].setName("Món " + i);
+            menu[i].setPrice(BigDecimal.valueOf(25_000));
+            menu[i].setCategory(category);
+            menu[i].setStore(store);
+            em.persist(menu[i]);
+        }
+
+        // 10 bàn x 4 đơn đang làm, mỗi đơn 3 món = 40 đơn cho Bếp
+        for (int t = 0; t < 10; t++) {
+            TableInfo table = new TableInfo();
+            table.setName("B" + t);
+            table.setCapacity(4);
+            table.setStore(store);
+            em.persist(table);
+            if (firstTable == null) {
+                firstTable = table;
+            }
+
+            for (int o = 0; o < 5; o++) {
+                CustomerOrder order = new CustomerOrder();
+                order.setTable(table);
+                order.setStore(store);
+                order.setStatus(o < 4 ? OrderStatus.PENDING : OrderStatus.PAID);
+                order.setCreatedAt(LocalDateTime.now());
+                em.persist(order);
+
+                for (MenuItem menuItem : menu) {
+                    OrderItem item = new OrderItem();
+                    item.setOrder(order);
+                    item.setMenuItem(menuItem);
+                    item.setQuantity(2);
+                    item.setPricePerItem(menuItem.getPrice());
+                    em.persist(item);
+                }
+            }
+        }
+        em.flush();
+        em.clear();
+        SqlStatementCounter.reset();
+    }
+
+    @Test
+    void kitchenListingUsesTwoStatementsForFortyOrders() {
+        List<OrderResponse> orders = orderReadService.findByStore(store.getId(), KITCHEN);
+
+        assertThat(orders).hasSize(40);
+        assertThat(SqlStatementCounter.selects()).isEqualTo(2);
+
+        OrderResponse first = orders.get(0);
+        assertThat(first.items()).hasSize(3);
+        assertThat(first.items().get(0).menuItemName()).isEqualTo("Món 0");
+        assertThat(first.tableName()).isEqualTo("B0");
+        assertThat(first.totalPrice()).isEqualByComparingTo("150000");
+    }
+
+    @Test
+    void tableListingUsesTwoStatements() {
+        List<OrderResponse> active = orderReadService.findByTable(firstTable.getId(), store.getId(), KITCHEN);
+        assertThat(active).hasSize(4);
+        assertThat(SqlStatementCounter.selects()).isEqualTo(2);
+    }
+
+    @Test
+    void tableHistoryIsKeysetPaginatedNewestFirst() {
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            SqlStatementCounter.reset();
+            OrderPageResponse page = orderReadService.findHistoryByTable(firstTable.getId(), store.getId(),
+                    new OrderHistoryQuery(null, null, null, cursor, 2));
+            assertThat(SqlStatementCounter.selects()).isEqualTo(2); // Mỗi trang: đơn hàng + món, không COUNT
+            page.orders().forEach(order -> seen.add(order.id()));
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(seen).hasSize(5).doesNotHaveDuplicates();
+        assertThat(seen).isSortedAccordingTo(Comparator.reverseOrder());
+    }
+
+    @Test
+    void storeHistoryFiltersByStatusAndTime() {
+        OrderPageResponse paid = orderReadService.findHistoryByStore(store.getId(),
+                new OrderHistoryQuery(List.of(OrderStatus.PAID), null, null, null, 20));
+        assertThat(paid.orders()).hasSize(10).allMatch(order -> order.status() == OrderStatus.PAID);
+        assertThat(paid.nextCursor()).isNull();
+        assertThat(paid.orders().get(0).items()).hasSize(3);
+
+        OrderPageResponse future = orderReadService.findHistoryByStore(store.getId(),
+                new OrderHistoryQuery(null, LocalDateTime.now().plusDays(1), null, null, null));
+        assertThat(future.orders()).isEmpty();
+
+        OrderPageResponse past = orderReadService.findHistoryByStore(store.getId(),
+                new OrderHistoryQuery(null, null, LocalDateTime.now().minusDays(1), null, null));
+        assertThat(past.orders()).isEmpty();
+    }
+
+    @Test
+    void invalidCursorIsRejectedAsBadRequest() {
+        String cursor = orderReadService.findHistoryByStore(store.getId(),
+                new OrderHistoryQuery(null, null, null, null, 2)).nextCursor();
+        assertThat(cursor).isNotNull();
+
+        // Con trỏ của trang trước nằm sau mốc "to" mới -> 400, không lặng lẽ quay về trang đầu
+        assertThatThrownBy(() -> orderReadService.findHistoryByStore(store.getId(),
+                new OrderHistoryQuery(null, null, LocalDateTime.now().minusDays(1), cursor, 2)))
+                .isInstanceOf(ResponseStatusException.class)
+                .satisfies(e -> assertThat(((ResponseStatusException) e).getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+        assertThatThrownBy(() -> orderReadService.findHistoryByStore(store.getId(),
+                new OrderHistoryQuery(null, null, null, "khong-phai-con-tro", 2)))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("Con trỏ phân trang không hợp lệ");
+    }
+
+    @Test
+    void emptyListingSkipsItemQuery() {
+        List<OrderResponse> orders = orderReadService.findByStore(store.getId(), List.of(OrderStatus.CANCELLED));
+
+        assertThat(orders).isEmpty();
+        assertThat(SqlStatementCounter.selects()).isEqualTo(1);
+    }
+}
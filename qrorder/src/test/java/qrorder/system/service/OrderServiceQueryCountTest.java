@@ -0,0 +1,309 @@
+package qrorder.system.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import qrorder.system.config.tenant.TenantContext;
+import qrorder.system.config.security.StoreUserDetails;
+import qrorder.system.dto.event.OrderEvent;
+import qrorder.system.dto.projection.TableRef;
+import qrorder.system.dto.request.OrderItemRequest;
+import qrorder.system.dto.request.OrderPlacementRequest;
+import qrorder.system.dto.response.OrderResponse;
+import qrorder.system.entity.Category;
+import qrorder.system.entity.CustomerOrder;
+import qrorder.system.entity.MenuItem;
+import qrorder.system.entity.Store;
+import qrorder.system.entity.TableInfo;
+import qrorder.system.enums.OrderEventType;
+import qrorder.system.enums.OrderStatus;
+import qrorder.system.repository.OrderItemBatchRepository;
+import qrorder.system.support.JdbcRoundTripCounter;
+import qrorder.system.support.SqlStatementCounter;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false", // Migration viết cho MySQL; H2 dùng schema Hibernate tạo
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=qrorder.system.support.SqlStatementCounter"
+})
+@Import({OrderService.class, OrderReadService.class, KitchenBoard.class, TableOccupancy.class, OrderEventDispatcher.class, OrderMutationSequencer.class,
+        OrderItemBatchRepository.class, TableDirectory.class, TableSessionService.class, JdbcRoundTripCounter.class,
+        MenuCatalog.class, TableBootstrapService.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+class OrderServiceQueryCountTest {
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private OrderService orderService;
+
+    @MockitoBean
+    private SimpMessagingTemplate messagingTemplate;
+
+    @MockitoSpyBean
+    private OrderEventDispatcher orderEventDispatcher;
+
+    @Autowired
+    private TableDirectory tableDirectory;
+
+    @Autowired
+    private TableSessionService tableSessionService;
+
+    @Autowired
+    private TableBootstrapService tableBootstrapService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Store store;
+    private TableInfo table;
+    private final List<MenuItem> menu = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        store = new Store();
+        store.setSubdomain("gogi");
+        store.setName("Gogi");
+        em.persist(store);
+
+        table = new TableInfo();
+        table.setName("A1");
+        table.setCapacity(4);
+        table.setStore(store);
+        em.persist(table);
+
+        Category category = new Category();
+        category.setName("Món chính");
+        category.setStore(store);
+        em.persist(category);
+
+        for (int i = 0; i < 12; i++) {
+            MenuItem item = new MenuItem();
+            item.setName("Món " + i);
+            item.setPrice(BigDecimal.valueOf(10_000L * (i + 1)));
+            item.setCategory(category);
+            item.setStore(store);
+            menu.add(em.persist(item));
+        }
+        em.flush();
+        em.clear();
+
+        TenantContext.setTenantId(store.getId());
+    }
+
+    @AfterEach
+    void clearTenant() {
+        TenantContext.clear();
+    }
+
+    @Test
+    void menuLookupQueryCountDoesNotGrowWithOrderLines() {
+        warmTableDirectory();
+        int selectsForOneLine = selectsFor(lines(1));
+        int selectsForTwelveLines = selectsFor(lines(12));
+
+        assertThat(selectsForTwelveLines).isEqualTo(selectsForOneLine);
+    }
+
+    @Test
+    void orderWriteRoundTripsDoNotGrowWithOrderLines() {
+        warmTableDirectory();
+        int roundTripsForOneLine = roundTripsFor(lines(1));
+        int roundTripsForTwelveLines = roundTripsFor(lines(12));
+
+        // Lấy món + INSERT đơn + một batch INSERT món (bàn đã có trong danh bạ)
+        assertThat(roundTripsForTwelveLines).isEqualTo(roundTripsForOneLine).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void batchInsertedItemsReceiveIds() {
+        OrderResponse response = orderService.placeOrder(new OrderPlacementRequest(table.getAccessKey(), lines(5)));
+
+        assertThat(response.items()).allSatisfy(item -> assertThat(item.id()).isNotNull());
+        assertThat(response.totalPrice()).isEqualByComparingTo("150000");
+    }
+
+    @Test
+    void duplicateLinesAreFolded() {
+        List<OrderItemRequest> items = List.of(
+                new OrderItemRequest(menu.get(0).getId(), 1, null),
+                new OrderItemRequest(menu.get(0).getId(), 2, null),
+                new OrderItemRequest(menu.get(0).getId(), 1, "Ít cay"),
+                new OrderItemRequest(menu.get(1).getId(), 1, null)
+        );
+
+        OrderResponse response = orderService.placeOrder(new OrderPlacementRequest(table.getAccessKey(), items));
+
+        assertThat(response.items()).hasSize(3);
+        assertThat(response.items().get(0).quantity()).isEqualTo(3);
+        assertThat(response.totalPrice()).isEqualByComparingTo("60000");
+    }
+
+    @Test
+    void outOfStockItemIsRejected() {
+        MenuItem soldOut = em.find(MenuItem.class, menu.get(3).getId());
+        soldOut.setOutOfStock(true);
+        em.flush();
+
+        List<OrderItemRequest> items = List.of(new OrderItemRequest(soldOut.getId(), 1, null));
+
+        assertThatThrownBy(() -> orderService.placeOrder(new OrderPlacementRequest(table.getAccessKey(), items)))
+                .hasMessageContaining("đã hết hàng");
+    }
+
+    @Test
+    void tableSettlementIsOneUpdateRegardlessOfOrderCount() {
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            orderIds.add(orderService.placeOrder(new OrderPlacementRequest(table.getAccessKey(), lines(3))).id());
+        }
+        em.flush();
+        em.clear();
+
+        SqlStatementCounter.reset();
+        clearInvocations(orderEventDispatcher);
+        orderService.markTableOrdersAsPaid(table.getId(), staffOf(store));
+
+        // Lấy ID + một UPDATE + tính tổng tiền
+        assertThat(SqlStatementCounter.updates()).isEqualTo(1);
+        assertThat(SqlStatementCounter.total()).isEqualTo(3);
+        assertThat(orderIds).allSatisfy(id ->
+                assertThat(em.find(CustomerOrder.class, id).getStatus()).isEqualTo(OrderStatus.PAID));
+
+        // Một sự kiện cho cả bàn
+        ArgumentCaptor<OrderEvent> event = ArgumentCaptor.forClass(OrderEvent.class);
+        verify(orderEventDispatcher).dispatchAfterCommit(eq(store.getId()), event.capture());
+        assertThat(event.getValue().type()).isEqualTo(OrderEventType.TABLE_SETTLED);
+        assertThat(event.getValue().orderIds()).containsExactlyElementsOf(orderIds);
+        assertThat(event.getValue().settledTotal()).isEqualByComparingTo("360000");
+
+        assertThatThrownBy(() -> orderService.markTableOrdersAsPaid(table.getId(), staffOf(store)))
+                .hasMessageContaining("Không có đơn hàng nào");
+    }
+
+    @Test
+    void tableLookupIsSkippedForCachedKeyAndSessionToken() {
+        int selectsOnMiss = selectsFor(lines(1)); // Tìm bàn + lấy món
+        assertThat(selectsFor(lines(1))).isEqualTo(selectsOnMiss - 1);
+
+        // Bàn vừa được sửa: danh bạ bị xóa; token cấp sau đó chỉ cần nạp lại bàn theo ID một lần
+        TableInfo renamed = em.find(TableInfo.class, table.getId());
+        bumpSessionVersion(renamed);
+        String session = tableSessionService.issue(tableDirectory.findById(renamed.getId()));
+        assertThat(selectsFor(lines(1), session)).isEqualTo(selectsOnMiss - 1);
+
+        // Token bị sửa -> tra theo Access Key như cũ
+        assertThat(selectsFor(lines(1), session.substring(0, session.length() - 2) + "xx")).isEqualTo(selectsOnMiss);
+
+        // Token cấp trước khi bàn bị sửa lần nữa bị từ chối
+        bumpSessionVersion(em.find(TableInfo.class, table.getId()));
+        assertThat(tableDirectory.fromSession(session)).isEmpty();
+    }
+
+    @Test
+    void sessionTokenIsCheckedAgainstStoredVersionAfterRestart() {
+        String session = tableSessionService.issue(tableDirectory.findById(table.getId()));
+        assertThat(tableDirectory.fromSession(session)).isPresent();
+
+        // Bàn được sửa trên node khác / trước khi khởi động lại: node này không nhận việc làm mới danh bạ,
+        // nhưng session_version nằm trong DB nên lần nạp danh bạ tiếp theo từ chối token cũ
+        TableInfo edited = em.find(TableInfo.class, table.getId());
+        edited.setSessionVersion(edited.getSessionVersion() + 1);
+        em.flush();
+        tableDirectory.preload();
+
+        assertThat(tableDirectory.fromSession(session)).isEmpty();
+        assertThatThrownBy(() -> tableDirectory.resolve("khong-co", store.getId(), session))
+                .hasMessageContaining("Mã bàn không hợp lệ"); // Không dùng bàn trong token, tra theo Access Key
+    }
+
+    // Giống TableService.updateTable: tăng session_version rồi làm mới danh bạ
+    private void bumpSessionVersion(TableInfo edited) {
+        edited.setSessionVersion(edited.getSessionVersion() + 1);
+        em.flush();
+        tableDirectory.invalidateAfterCommit(edited);
+    }
+
+    // Đo riêng phần phụ thuộc số dòng món: lần tra bàn đầu tiên (danh bạ trống) không tính
+    @Test
+    void bootstrapReadsOnlyTableOrdersWhenTableAndMenuAreCached() throws Exception {
+        orderService.placeOrder(new OrderPlacementRequest(table.getAccessKey(), lines(2)));
+        TableBootstrapService.Bootstrap first = tableBootstrapService.bootstrap(table.getAccessKey(), null);
+        em.clear();
+
+        JdbcRoundTripCounter.reset();
+        TableBootstrapService.Bootstrap bootstrap = tableBootstrapService.bootstrap(table.getAccessKey(), first.tableSession());
+        // Đơn hàng của bàn + món của các đơn đó; bàn và thực đơn lấy từ bộ nhớ
+        assertThat(JdbcRoundTripCounter.roundTrips()).isLessThanOrEqualTo(2);
+
+        JsonNode json = objectMapper.readTree(bootstrap.json());
+        assertThat(json.path("table").path("id").asLong()).isEqualTo(table.getId());
+        assertThat(json.path("menuVersion").asLong()).isEqualTo(bootstrap.menuVersion());
+        assertThat(json.path("menuEtag").asText()).startsWith("\"");
+        assertThat(json.path("categories")).hasSize(1);
+        assertThat(json.path("items")).hasSize(menu.size());
+        assertThat(json.path("orders").path("orders")).hasSize(1);
+        assertThat(json.path("orders").path("orders").get(0).path("items")).hasSize(2);
+        assertThat(tableDirectory.fromSession(bootstrap.tableSession())).isPresent();
+    }
+
+    private void warmTableDirectory() {
+        tableDirectory.resolve(table.getAccessKey(), store.getId(), null);
+    }
+
+    private int selectsFor(List<OrderItemRequest> items) {
+        return selectsFor(items, null);
+    }
+
+    private int selectsFor(List<OrderItemRequest> items, String tableSession) {
+        em.clear();
+        SqlStatementCounter.reset();
+        OrderResponse response = orderService.placeOrder(new OrderPlacementRequest(table.getAccessKey(), items), tableSession);
+        assertThat(response.tableName()).isEqualTo(table.getName());
+        return SqlStatementCounter.selects();
+    }
+
+    private int roundTripsFor(List<OrderItemRequest> items) {
+        em.clear();
+        JdbcRoundTripCounter.reset();
+        orderService.placeOrder(new OrderPlacementRequest(table.getAccessKey(), items));
+        em.flush();
+        return JdbcRoundTripCounter.roundTrips();
+    }
+
+    private static StoreUserDetails staffOf(Store store) {
+        return new StoreUserDetails("staff", "", List.of(), store.getId());
+    }
+
+    private List<OrderItemRequest> lines(int count) {
+        List<OrderItemRequest> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(new OrderItemRequest(menu.get(i).getId(), 1, null));
+        }
+        return items;
+    }
+}
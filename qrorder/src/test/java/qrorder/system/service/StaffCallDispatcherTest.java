@@ -0,0 +1,124 @@
+package qrorder.system.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import qrorder.system.dto.projection.TableRef;
+import qrorder.system.dto.request.StaffCallRequest;
+import qrorder.system.dto.response.StaffCallResponse;
+import qrorder.system.dto.response.StaffCallStatsResponse;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StaffCallDispatcherTest {
+
+    private static final TableRef TABLE = new TableRef(7L, "A7", 4, 1L, "key-7", 0);
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Mock
+    private TableDirectory tableDirectory;
+
+    @InjectMocks
+    private StaffCallDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(dispatcher, "debounceWindowMillis", 200L);
+        dispatcher.init();
+        lenient().when(tableDirectory.fromSession(any())).thenReturn(Optional.empty());
+    }
+
+    @AfterEach
+    void shutdown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void repeatedCallsWithinWindowAreSentOnce() throws InterruptedException {
+        when(tableDirectory.findById(7L)).thenReturn(TABLE);
+
+        for (int i = 0; i < 5; i++) {
+            dispatcher.submit(new StaffCallRequest(7L, "SERVICE"));
+        }
+        dispatcher.submit(new StaffCallRequest(7L, "PAYMENT")); // Loại gọi khác -> gửi riêng
+
+        ArgumentCaptor<StaffCallResponse> sent = ArgumentCaptor.forClass(StaffCallResponse.class);
+        verify(messagingTemplate, timeout(1000).times(2)).convertAndSend(eq("/topic/staff/1"), sent.capture());
+        assertThat(sent.getAllValues()).extracting(StaffCallResponse::callType).containsExactly("SERVICE", "PAYMENT");
+        assertThat(sent.getValue().tableName()).isEqualTo("A7");
+
+        // Hết cửa sổ -> gọi lại được gửi
+        Thread.sleep(250);
+        dispatcher.submit(new StaffCallRequest(7L, "SERVICE"));
+        verify(messagingTemplate, timeout(1000).times(3)).convertAndSend(eq("/topic/staff/1"), any(StaffCallResponse.class));
+
+        // delivered tăng sau convertAndSend trên luồng "staff-calls" -> chờ bộ đếm, không đọc ngay
+        await().atMost(Duration.ofSeconds(1)).until(() -> dispatcher.getStats().delivered() == 3);
+        StaffCallStatsResponse stats = dispatcher.getStats();
+        assertThat(stats.received()).isEqualTo(7);
+        assertThat(stats.delivered()).isEqualTo(3);
+        assertThat(stats.suppressed()).isEqualTo(4);
+    }
+
+    @Test
+    void unknownCallTypesCannotBypassDebounce() {
+        when(tableDirectory.findById(7L)).thenReturn(TABLE);
+
+        dispatcher.submit(new StaffCallRequest(7L, "SERVICE"));
+        for (int i = 0; i < 5; i++) {
+            dispatcher.submit(new StaffCallRequest(7L, "SERVICE-" + i)); // Chuỗi tự chế -> bị bỏ, không gửi
+        }
+        dispatcher.submit(new StaffCallRequest(7L, null));
+
+        verify(messagingTemplate, after(100).times(1)).convertAndSend(eq("/topic/staff/1"), any(StaffCallResponse.class));
+        assertThat(dispatcher.getStats().failed()).isEqualTo(6);
+    }
+
+    @Test
+    void sessionTokenSkipsLookupById() {
+        when(tableDirectory.fromSession("token")).thenReturn(Optional.of(TABLE));
+
+        dispatcher.submit(new StaffCallRequest(7L, "SERVICE", "token"));
+
+        verify(messagingTemplate, timeout(1000)).convertAndSend(eq("/topic/staff/1"), any(StaffCallResponse.class));
+        verify(tableDirectory, never()).findById(any());
+    }
+
+    @Test
+    void failedLookupReopensWindow() {
+        when(tableDirectory.findById(7L)).thenThrow(new RuntimeException("DB timeout")).thenReturn(TABLE);
+
+        dispatcher.submit(new StaffCallRequest(7L, "SERVICE"));
+        verify(tableDirectory, timeout(1000)).findById(7L);
+        verify(messagingTemplate, after(100).never()).convertAndSend(any(String.class), any(Object.class));
+
+        // Lần bấm tiếp theo không bị coi là lặp lại
+        dispatcher.submit(new StaffCallRequest(7L, "SERVICE"));
+        verify(messagingTemplate, timeout(1000)).convertAndSend(eq("/topic/staff/1"), any(StaffCallResponse.class));
+        verify(tableDirectory, times(2)).findById(7L);
+        assertThat(dispatcher.getStats().failed()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,263 @@
+package qrorder.system.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import qrorder.system.config.security.StoreUserDetails;
+import qrorder.system.config.tenant.TenantContext;
+import qrorder.system.dto.TableStatusDTO;
+import qrorder.system.dto.event.TableStatusEvent;
+import qrorder.system.dto.request.OrderItemRequest;
+import qrorder.system.dto.request.OrderPlacementRequest;
+import qrorder.system.dto.request.TableRequest;
+import qrorder.system.dto.request.UpdateOrderStatusRequest;
+import qrorder.system.dto.response.OrderResponse;
+import qrorder.system.dto.response.TableMapSnapshotResponse;
+import qrorder.system.entity.Category;
+import qrorder.system.entity.CustomerOrder;
+import qrorder.system.entity.MenuItem;
+import qrorder.system.entity.Store;
+import qrorder.system.entity.TableInfo;
+import qrorder.system.enums.OrderStatus;
+import qrorder.system.enums.TableStatus;
+import qrorder.system.repository.CategoryRepository;
+import qrorder.system.repository.CustomerOrderRepository;
+import qrorder.system.repository.MenuItemRepository;
+import qrorder.system.repository.OrderItemBatchRepository;
+import qrorder.system.repository.StoreRepository;
+import qrorder.system.repository.TableRepository;
+import qrorder.system.support.SqlStatementCounter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Đối chiếu trạng thái bàn trong bộ nhớ (TableOccupancy) với truy vấn gộp trên DB
+ * sau từng bước của vòng đời đơn hàng (các thao tác commit thật để afterCommit chạy),
+ * và kiểm tra chỉ các lần chuyển trạng thái bàn mới được gửi tới /topic/staff/{storeId}/tables.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false", // Migration viết cho MySQL; H2 dùng schema Hibernate tạo
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=qrorder.system.support.SqlStatementCounter"
+})
+@Import({OrderService.class, OrderReadService.class, KitchenBoard.class, TableOccupancy.class, OrderEventDispatcher.class,
+        OrderMutationSequencer.class, OrderItemBatchRepository.class, TableDirectory.class, TableSessionService.class, TableService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TableOccupancyTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private TableService tableService;
+
+    @Autowired
+    private TableOccupancy tableOccupancy;
+
+    @Autowired
+    private CustomerOrderRepository orderRepository;
+
+    @Autowired
+    private StoreRepository storeRepository;
+
+    @Autowired
+    private TableRepository tableRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private MenuItemRepository menuItemRepository;
+
+    @MockitoBean
+    private SimpMessagingTemplate messagingTemplate;
+
+    @MockitoSpyBean
+    private OrderEventDispatcher orderEventDispatcher;
+
+    private Store store;
+    private final List<TableInfo> tables = new ArrayList<>();
+    private MenuItem menuItem;
+
+    @BeforeEach
+    void seed() {
+        store = new Store();
+        store.setSubdomain("occupancy-" + System.nanoTime());
+        store.setName("Gogi");
+        store = storeRepository.save(store);
+
+        for (int i = 0; i < 4; i++) {
+            TableInfo table = new TableInfo();
+            table.setName("B" + i);
+            table.setCapacity(4);
+            table.setStore(store);
+            tables.add(tableRepository.save(table));
+        }
+
+        Category category = new Category();
+        category.setName("Lẩu");
+        category.setStore(store);
+        category = categoryRepository.save(category);
+
+        menuItem = new MenuItem();
+        menuItem.setName("Lẩu Thái");
+        menuItem.setPrice(BigDecimal.valueOf(150_000));
+        menuItem.setCategory(category);
+        menuItem.setStore(store);
+        menuItem = menuItemRepository.save(menuItem);
+
+        TenantContext.setTenantId(store.getId());
+    }
+
+    @AfterEach
+    void clearTenant() {
+        TenantContext.clear();
+    }
+
+    @Test
+    void inMemoryOccupancyMatchesGroupedQueryThroughOrderLifecycle() {
+        // Đơn có sẵn trước khi dựng lại (giống dữ liệu trong DB lúc khởi động)
+        CustomerOrder existing = new CustomerOrder();
+        existing.setTable(tables.get(3));
+        existing.setStore(store);
+        existing.setStatus(OrderStatus.SERVED);
+        existing.setCreatedAt(LocalDateTime.now());
+        orderRepository.save(existing);
+
+        tableOccupancy.rebuild();
+        assertOccupied(tables.get(3));
+
+        OrderResponse first = place(tables.get(0));
+        assertOccupied(tables.get(0), tables.get(3));
+
+        OrderResponse second = place(tables.get(1));
+        place(tables.get(1));
+        assertOccupied(tables.get(0), tables.get(1), tables.get(3));
+
+        orderService.updateOrderStatus(first.id(), new UpdateOrderStatusRequest(OrderStatus.SERVED), staff());
+        assertOccupied(tables.get(0), tables.get(1), tables.get(3));
+
+        orderService.markOrderAsPaid(first.id(), staff());
+        assertOccupied(tables.get(1), tables.get(3));
+
+        // Thanh toán một trong hai đơn: bàn vẫn còn khách
+        orderService.markOrderAsPaid(second.id(), staff());
+        assertOccupied(tables.get(1), tables.get(3));
+
+        orderService.markTableOrdersAsPaid(tables.get(1).getId(), staff());
+        assertOccupied(tables.get(3));
+
+        // Hủy món cuối cùng -> đơn bị hủy -> bàn trống
+        OrderResponse cancelled = place(tables.get(2));
+        assertOccupied(tables.get(2), tables.get(3));
+        orderService.cancelOrderItem(cancelled.items().get(0).id(), staff());
+        assertOccupied(tables.get(3));
+    }
+
+    @Test
+    void onlyTableTransitionsArePublished() {
+        tableOccupancy.rebuild();
+        TableInfo table = tables.get(0);
+
+        OrderResponse first = place(table); // Bàn trống -> có khách
+        OrderResponse second = place(table);
+        orderService.updateOrderStatus(second.id(), new UpdateOrderStatusRequest(OrderStatus.PREPARING), staff());
+        orderService.markOrderAsPaid(first.id(), staff()); // Còn một đơn: không đổi trạng thái
+        orderService.markTableOrdersAsPaid(table.getId(), staff()); // Đơn cuối cùng -> bàn trống
+
+        OrderResponse cancelled = place(tables.get(1));
+        orderService.cancelOrderItem(cancelled.items().get(0).id(), staff());
+
+        ArgumentCaptor<TableStatusEvent> events = ArgumentCaptor.forClass(TableStatusEvent.class);
+        verify(orderEventDispatcher, times(4)).publishTableStatus(eq(store.getId()), events.capture());
+        assertThat(events.getAllValues()).containsExactly(
+                new TableStatusEvent(table.getId(), TableStatus.ACTIVE),
+                new TableStatusEvent(table.getId(), TableStatus.EMPTY),
+                new TableStatusEvent(tables.get(1).getId(), TableStatus.ACTIVE),
+                new TableStatusEvent(tables.get(1).getId(), TableStatus.EMPTY));
+
+        TableMapSnapshotResponse snapshot = tableService.getTableMapSnapshot(staff());
+        assertThat(snapshot.live()).isTrue();
+        assertThat(snapshot.tables()).hasSize(4).allMatch(status -> status.status() == TableStatus.EMPTY);
+    }
+
+    @Test
+    void tableMapIsServedFromMemoryUntilTablesChange() {
+        tableOccupancy.rebuild();
+        assertThat(tableService.getTableStatusesForStore(staff())).extracting(TableStatusDTO::name)
+                .containsExactly("B0", "B1", "B2", "B3");
+
+        SqlStatementCounter.reset();
+        tableService.getTableStatusesForStore(staff());
+        assertThat(SqlStatementCounter.selects()).isZero();
+
+        // Thêm/sửa bàn -> Sơ đồ bàn đọc lại danh sách
+        tableService.updateTable(tables.get(0).getId(), new TableRequest("VIP 1", 8), store.getId());
+        tableService.createTable(new TableRequest("B4", 2), staff());
+        assertThat(tableService.getTableStatusesForStore(staff())).extracting(TableStatusDTO::name)
+                .containsExactly("VIP 1", "B1", "B2", "B3", "B4");
+    }
+
+    @Test
+    void staleWriteDoesNotReoccupyTable() {
+        OrderResponse paid = place(tables.get(0));
+        OrderResponse pending = new OrderResponse(paid.id(), paid.tableId(), paid.tableName(), paid.storeId(),
+                OrderStatus.PENDING, paid.totalPrice(), paid.createdAt(), paid.items(), BigDecimal.ZERO, null);
+        OrderResponse settled = new OrderResponse(paid.id(), paid.tableId(), paid.tableName(), paid.storeId(),
+                OrderStatus.PAID, paid.totalPrice(), paid.createdAt(), paid.items(), BigDecimal.ZERO, null);
+
+        // afterCommit lệch thứ tự: bản PAID (stamp lớn) đến trước bản PENDING (stamp nhỏ)
+        tableOccupancy.apply(settled, Long.MAX_VALUE);
+        tableOccupancy.apply(pending, Long.MAX_VALUE - 1);
+
+        assertThat(tableOccupancy.occupiedTables(store.getId())).isEmpty();
+    }
+
+    private OrderResponse place(TableInfo table) {
+        return orderService.placeOrder(new OrderPlacementRequest(table.getAccessKey(),
+                List.of(new OrderItemRequest(menuItem.getId(), 1, null))));
+    }
+
+    // Bộ nhớ, truy vấn gộp và Sơ đồ bàn phải cho cùng một kết quả
+    private void assertOccupied(TableInfo... expected) {
+        Set<Long> expectedIds = new HashSet<>();
+        for (TableInfo table : expected) {
+            expectedIds.add(table.getId());
+        }
+
+        Set<Long> fromQuery = new HashSet<>(
+                orderRepository.findTableIdsWithOrderStatus(store.getId(), TableOccupancy.OCCUPYING_STATUSES));
+        assertThat(tableOccupancy.occupiedTables(store.getId())).isEqualTo(fromQuery).isEqualTo(expectedIds);
+
+        Set<Long> active = tableService.getTableStatusesForStore(staff()).stream()
+                .filter(status -> status.status() == TableStatus.ACTIVE)
+                .map(TableStatusDTO::id)
+                .collect(Collectors.toSet());
+        assertThat(active).isEqualTo(expectedIds);
+    }
+
+    private StoreUserDetails staff() {
+        return new StoreUserDetails("staff", "", List.of(), store.getId());
+    }
+}
@@ -0,0 +1,39 @@
+package qrorder.system.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import qrorder.system.dto.projection.TableRef;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TableSessionServiceTest {
+
+    private static final TableRef TABLE = new TableRef(7L, "A7", 4, 1L, "key-7", 0);
+
+    private TableSessionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new TableSessionService();
+        ReflectionTestUtils.setField(service, "secret", "test-table-session-secret-0123456789abcdef");
+        ReflectionTestUtils.setField(service, "expirationMillis", 60_000L);
+        service.init();
+    }
+
+    @Test
+    void tokenCarriesTableAndSessionVersion() {
+        TableRef edited = new TableRef(7L, "A7", 4, 1L, "key-7", 3);
+
+        assertThat(service.verify(service.issue(edited))).contains(edited);
+    }
+
+    @Test
+    void tamperedOrForeignTokenIsRejected() {
+        String token = service.issue(TABLE);
+
+        assertThat(service.verify(token.substring(0, token.length() - 2) + "xx")).isEmpty();
+        assertThat(service.verify(null)).isEmpty();
+        assertThat(service.verify("")).isEmpty();
+    }
+}
@@ -0,0 +1,60 @@
+package qrorder.system.support;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.util.ClassUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bọc DataSource để đếm số lần thực thi câu lệnh (execute/executeQuery/executeUpdate/executeBatch),
+ * tức số round trip xuống DB, bất kể đi qua Hibernate hay JdbcTemplate.
+ * Dùng bằng @Import(JdbcRoundTripCounter.class) trong test.
+ */
+public class JdbcRoundTripCounter implements BeanPostProcessor {
+
+    private static final AtomicInteger roundTrips = new AtomicInteger();
+
+    public static void reset() {
+        roundTrips.set(0);
+    }
+
+    public static int roundTrips() {
+        return roundTrips.get();
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource) {
+            return wrap(bean, ClassUtils.getAllInterfaces(bean));
+        }
+        return bean;
+    }
+
+    private static Object wrap(Object target, Class<?>[] interfaces) {
+        return Proxy.newProxyInstance(JdbcRoundTripCounter.class.getClassLoader(), interfaces,
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("execute") && target instanceof Statement) {
+                        roundTrips.incrementAndGet();
+                    }
+                    Object result = invoke(target, method, args);
+                    if (result instanceof Connection || result instanceof Statement) {
+                        return wrap(result, ClassUtils.getAllInterfaces(result));
+                    }
+                    return result;
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package qrorder.system.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Đếm số câu lệnh SQL mà Hibernate gửi xuống DB (dùng trong test để "ghim" số truy vấn).
+ * Khai báo qua property: spring.jpa.properties.hibernate.session_factory.statement_inspector
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final AtomicInteger selects = new AtomicInteger();
+    private static final AtomicInteger inserts = new AtomicInteger();
+    private static final AtomicInteger updates = new AtomicInteger();
+    private static final AtomicInteger deletes = new AtomicInteger();
+
+    @Override
+    public String inspect(String sql) {
+        String statement = sql.stripLeading().toLowerCase();
+        if (statement.startsWith("select") || statement.startsWith("with")) {
+            selects.incrementAndGet();
+        } else if (statement.startsWith("insert")) {
+            inserts.incrementAndGet();
+        } else if (statement.startsWith("update")) {
+            updates.incrementAndGet();
+        } else if (statement.startsWith("delete")) {
+            deletes.incrementAndGet();
+        }
+        return sql;
+    }
+
+    public static void reset() {
+        selects.set(0);
+        inserts.set(0);
+        updates.set(0);
+        deletes.set(0);
+    }
+
+    public static int selects() {
+        return selects.get();
+    }
+
+    public static int inserts() {
+        return inserts.get();
+    }
+
+    public static int updates() {
+        return updates.get();
+    }
+
+    public static int deletes() {
+        return deletes.get();
+    }
+
+    public static int total() {
+        return selects() + inserts() + updates() + deletes();
+    }
+}
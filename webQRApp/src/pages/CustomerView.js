@@ -1,4 +1,5 @@
 import React, { useState, useEffect, useMemo, useRef } from 'react';
+import { applyOrderEvent, subscribeOrderTopic } from '../utils/orderEvents.js';
 
 // Giả định các thư viện (axios, sockjs, stomp) đã được tải qua CDN
 
@@ -27,6 +28,11 @@ const formatCurrency = (value) => {
   return new Intl.NumberFormat('vi-VN', { style: 'currency', currency: 'VND' }).format(value);
 };
 
+// [MỚI] Mã chống đặt trùng (crypto.randomUUID chỉ có trên HTTPS/localhost)
+const newIdempotencyKey = () => (window.crypto?.randomUUID
+  ? window.crypto.randomUUID()
+  : `${Date.now().toString(36)}-${Math.random().toString(36).slice(2, 12)}`);
+
 export default function CustomerView() {
   const [categories, setCategories] = useState([]);
   const [menuItems, setMenuItems] = useState([]);
@@ -48,6 +54,11 @@ export default function CustomerView() {
   const stompClientRef = useRef(null);
   const apiIntervalRef = useRef(null);
   const wsIntervalRef = useRef(null);
+  const orderKeyRef = useRef(null); // Mã chống trùng của giỏ hàng hiện tại
+  const menuVersionRef = useRef(null); // [MỚI] Phiên bản thực đơn đang hiển thị
+
+  // Giỏ hàng thay đổi -> lần đặt tiếp theo là một đơn mới
+  useEffect(() => { orderKeyRef.current = null; }, [cart]);
 
   // === 1. TẢI DỮ LIỆU BAN ĐẦU ===
   useEffect(() => {
@@ -68,19 +79,21 @@ export default function CustomerView() {
 
         const fetchMenu = async () => {
           try {
-            const tableRes = await apiClient.get(`/public/tables/${tableAccessKey}/info`);
-            setTableInfo(tableRes.data); 
-
-            const [catRes, itemRes, ordersRes] = await Promise.all([
-              apiClient.get('/public/categories'),
-              apiClient.get('/public/menu-items'),
-              apiClient.get(`/public/tables/${tableAccessKey}/orders`)
-            ]);
-            
-            setCategories(catRes.data);
-            setMenuItems(itemRes.data);
-            setPlacedOrders(ordersRes.data);
-            if (catRes.data.length > 0) setSelectedCategoryId(catRes.data[0].id);
+            // [MỚI] Một request duy nhất: bàn + thực đơn + đơn hàng của bàn (thay cho /info, /categories, /menu-items, /orders)
+            const res = await apiClient.get(`/public/tables/${tableAccessKey}/bootstrap`);
+            const { table, menuVersion, categories: cats, items, orders } = res.data;
+            // Token phiên bàn: gửi kèm mọi request sau đó để server không phải tra lại mã bàn
+            const tableSession = res.headers['x-table-session'];
+            if (tableSession) apiClient.defaults.headers.common['X-Table-Session'] = tableSession;
+
+            // Đơn hàng kèm bootstrap chỉ để hiển thị ngay; sau khi đăng ký topic bàn vẫn tải snapshot
+            // (sự kiện xảy ra giữa bootstrap và lúc đăng ký không có seq nào để phát hiện)
+            setPlacedOrders(orders.orders);
+            menuVersionRef.current = menuVersion;
+            setTableInfo(table);
+            setCategories(cats);
+            setMenuItems(items);
+            if (cats.length > 0) setSelectedCategoryId(cats[0].id);
             setError(null);
           } catch (err) { 
             console.error(err);
@@ -121,17 +134,16 @@ export default function CustomerView() {
           onConnect: () => {
             console.log("ĐÃ KẾT NỐI WEBSOCKET");
             const tableTopic = `/topic/table/${tableInfo.id}`;
-            stompClient.subscribe(tableTopic, (message) => {
-              const updatedOrder = JSON.parse(message.body);
-              setPlacedOrders(prev => {
-                const exists = prev.find(o => o.id === updatedOrder.id);
-                if (exists) {
-                     return prev.map(o => o.id === updatedOrder.id ? updatedOrder : o);
-                } else {
-                     return [updatedOrder, ...prev];
-                }
-              });
+            subscribeOrderTopic(stompClient, tableTopic, {
+              loadSnapshot: async () => (await apiClient.get(`/public/tables/${tableAccessKey}/orders/snapshot`)).data,
+              onSnapshot: setPlacedOrders,
+              onEvent: (event) => setPlacedOrders(prev => applyOrderEvent(prev, event)),
             });
+            // [MỚI] Món hết hàng / đổi giá: cập nhật thực đơn và giỏ hàng ngay
+            stompClient.subscribe(`/topic/menu/${tableInfo.storeId}`, (message) => applyMenuEvent(JSON.parse(message.body)));
+            // Thay đổi thực đơn giữa bootstrap (hoặc lúc mất kết nối) và lúc đăng ký không có sự kiện nào báo lại
+            // -> tải lại ngay sau khi đăng ký; thực đơn không đổi thì server trả 304 (ETag)
+            refreshMenu();
           },
         });
         stompClient.activate();
@@ -144,6 +156,49 @@ export default function CustomerView() {
     return () => { if (wsIntervalRef.current) clearInterval(wsIntervalRef.current); stompCleanup(); };
   }, [tableInfo.id]);
 
+  // [MỚI] Tải lại toàn bộ thực đơn (MENU_CHANGED hoặc lỡ sự kiện). Yêu cầu tải lại trong lúc đang tải -> tải thêm một lần sau đó
+  const menuRefreshRef = useRef(null);
+  const menuRefreshPendingRef = useRef(false);
+  const refreshMenu = () => {
+    if (!apiClient) return;
+    if (menuRefreshRef.current) { menuRefreshPendingRef.current = true; return; }
+    menuRefreshRef.current = Promise.all([apiClient.get('/public/categories'), apiClient.get('/public/menu-items')])
+      .then(([catRes, itemRes]) => {
+        const version = Number(itemRes.headers['x-menu-version']);
+        // Hai request rơi vào hai phiên bản khác nhau, hoặc cũ hơn thực đơn đang hiển thị -> không dùng, tải lại
+        if (version !== Number(catRes.headers['x-menu-version'])
+            || (menuVersionRef.current !== null && version < menuVersionRef.current)) {
+          menuRefreshPendingRef.current = true;
+          return;
+        }
+        menuVersionRef.current = version;
+        setCategories(catRes.data);
+        setMenuItems(itemRes.data);
+        const latest = new Map(itemRes.data.map(i => [i.id, i]));
+        setCart(prev => prev.map(i => (latest.has(i.id) ? { ...i, price: latest.get(i.id).price, isOutOfStock: latest.get(i.id).isOutOfStock } : i)));
+      })
+      .catch(err => console.error('Lỗi tải lại thực đơn:', err))
+      .finally(() => {
+        menuRefreshRef.current = null;
+        if (menuRefreshPendingRef.current) {
+          menuRefreshPendingRef.current = false;
+          setTimeout(refreshMenu, 500);
+        }
+      });
+  };
+
+  // [MỚI] Sự kiện thực đơn { type, menuVersion, itemId?, isOutOfStock?, price? }: mỗi thao tác ghi một phiên bản (lưu trong DB).
+  // Chỉ vá tại chỗ ITEM_UPDATED đúng phiên bản kế tiếp; MENU_CHANGED hoặc nhảy cóc (lỡ sự kiện) -> tải lại thực đơn
+  const applyMenuEvent = (event) => {
+    const current = menuVersionRef.current;
+    if (current !== null && event.menuVersion <= current) return; // Đã có trong thực đơn đang hiển thị
+    if (current === null || event.type !== 'ITEM_UPDATED' || event.menuVersion !== current + 1) { refreshMenu(); return; }
+    menuVersionRef.current = event.menuVersion;
+    const patch = (i) => (i.id === event.itemId ? { ...i, isOutOfStock: event.isOutOfStock, price: event.price } : i);
+    setMenuItems(prev => prev.map(patch));
+    setCart(prev => (prev.some(i => i.id === event.itemId) ? prev.map(patch) : prev));
+  };
+
   // === 3. LOGIC GIỎ HÀNG ===
   
   const addToCart = (item, quantity, note) => {
@@ -165,12 +220,15 @@ export default function CustomerView() {
   };
 
   const handlePlaceOrder = async () => {
-    if (cart.length === 0) return;
+    if (cart.length === 0 || cart.some(i => i.isOutOfStock)) return;
     if (!apiClient) return;
-    
+
+    // [MỚI] Cùng một giỏ hàng -> cùng một mã chống trùng: bấm lại sau khi lỗi mạng không tạo đơn thứ hai
+    if (!orderKeyRef.current) orderKeyRef.current = newIdempotencyKey();
     const orderRequest = {
       tableAccessKey: tableAccessKey, 
-      items: cart.map(i => ({ menuItemId: i.id, quantity: i.quantity, note: i.note }))
+      items: cart.map(i => ({ menuItemId: i.id, quantity: i.quantity, note: i.note })),
+      idempotencyKey: orderKeyRef.current
     };
 
     try {
@@ -184,7 +242,7 @@ export default function CustomerView() {
     if (stompClientRef.current?.connected && tableInfo.id) {
       stompClientRef.current.publish({ 
           destination: '/app/call-staff', 
-          body: JSON.stringify({ tableId: tableInfo.id, callType: type }) 
+          body: JSON.stringify({ tableId: tableInfo.id, callType: type, tableSession: apiClient?.defaults.headers.common['X-Table-Session'] }) 
       });
       alert(type === 'PAYMENT' ? 'Đã gọi thanh toán!' : 'Đã gọi nhân viên!');
     } else alert('Lỗi kết nối.');
@@ -192,6 +250,7 @@ export default function CustomerView() {
 
   const outstandingTotal = useMemo(() => placedOrders.filter(o => o.status !== 'PAID' && o.status !== 'CANCELLED').reduce((sum, o) => sum + o.totalPrice + (o.surcharge || 0), 0), [placedOrders]);
   const cartTotal = useMemo(() => cart.reduce((sum, i) => sum + i.price * i.quantity, 0), [cart]);
+  const cartHasOutOfStock = cart.some(i => i.isOutOfStock); // [MỚI] Không gửi đơn chắc chắn bị từ chối
   const totalQuantity = useMemo(() => cart.reduce((sum, i) => sum + i.quantity, 0), [cart]);
   const filteredItems = selectedCategoryId ? menuItems.filter(item => item.categoryId === selectedCategoryId) : [];
 
@@ -260,7 +319,7 @@ export default function CustomerView() {
                     {cart.map((item, idx) => (
                       <div key={idx} className="flex flex-col bg-white p-3 rounded-lg border border-gray-100 shadow-sm">
                         <div className="flex justify-between items-start">
-                          <div className="flex-1"><p className="font-semibold text-gray-800">{item.name} <span className="text-orange-600 font-bold">x{item.quantity}</span></p><p className="text-sm text-gray-500">{formatCurrency(item.price * item.quantity)}</p></div>
+                          <div className="flex-1"><p className="font-semibold text-gray-800">{item.name} <span className="text-orange-600 font-bold">x{item.quantity}</span>{item.isOutOfStock && <span className="ml-2 bg-red-600 text-white text-[10px] font-bold px-2 py-0.5 rounded uppercase">Hết hàng</span>}</p><p className="text-sm text-gray-500">{formatCurrency(item.price * item.quantity)}</p></div>
                           <button onClick={() => removeFromCart(idx)} className="text-red-500 font-bold px-2">✕</button>
                         </div>
                         {item.note && <p className="text-xs text-gray-600 italic bg-gray-50 mt-2 p-1 rounded border border-gray-100">📝 {item.note}</p>}
@@ -268,7 +327,7 @@ export default function CustomerView() {
                     ))}
                   </div>
                   <div className="mt-4 flex justify-between items-center px-2 font-bold text-gray-700"><span>Tạm tính:</span><span>{formatCurrency(cartTotal)}</span></div>
-                  <button onClick={handlePlaceOrder} className="w-full mt-4 bg-orange-600 text-white py-3 rounded-xl font-bold shadow-md hover:bg-orange-700 active:scale-95 transition">Xác nhận gọi món</button>
+                  <button onClick={handlePlaceOrder} disabled={cartHasOutOfStock} className="w-full mt-4 bg-orange-600 text-white py-3 rounded-xl font-bold shadow-md hover:bg-orange-700 active:scale-95 transition disabled:bg-gray-300">{cartHasOutOfStock ? 'Bỏ món hết hàng để gọi món' : 'Xác nhận gọi món'}</button>
                 </div>
               )}
               {/* Lịch sử gọi món */}
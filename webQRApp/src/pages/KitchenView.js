@@ -1,9 +1,13 @@
 import React, { useState, useEffect, useRef, useMemo } from 'react';
+import { applyOrderEvent, subscribeOrderTopic } from '../utils/orderEvents.js';
 
 // Giả định các thư viện (axios, sockjs, stomp) đã được tải qua CDN trong public/index.html
 
 let apiClient; 
 
+// Các trạng thái Bếp cần xem
+const KITCHEN_STATUSES = ['PENDING', 'PREPARING'];
+
 // Helper lấy URL API tự động (Hỗ trợ cả Local và Production HTTPS)
 const getApiBaseUrl = () => {
     const { hostname, port, protocol } = window.location;
@@ -24,6 +28,9 @@ export default function KitchenView() {
   const [error, setError] = useState(null);
 
   const stompClientRef = useRef(null);
+  const activeOrdersRef = useRef([]); // Bản sao đồng bộ của activeOrders (để xử lý sự kiện WebSocket)
+
+  useEffect(() => { activeOrdersRef.current = activeOrders; }, [activeOrders]);
 
   // === 1. ĐĂNG NHẬP ===
   const handleLogin = async (username, password) => {
@@ -60,26 +67,42 @@ export default function KitchenView() {
     } finally { setLoading(false); }
   };
 
-  // === 2. TẢI DỮ LIỆU ===
-  const fetchActiveOrders = async () => {
-    if (!apiClient) return;
+  // === 2. TẢI DỮ LIỆU (ảnh chụp + seq để đồng bộ với WebSocket) ===
+  const fetchSnapshot = async () => {
     setLoading(true);
     try { 
-        const res = await apiClient.get('/kitchen/orders');
-        setActiveOrders(res.data); 
+        const res = await apiClient.get('/kitchen/orders/snapshot');
+        setError(null);
+        return res.data;
     } catch (err) { 
         console.error(err);
         setError("Không thể tải danh sách đơn hàng."); 
+        throw err;
     } finally {
         setLoading(false);
     }
   };
 
+  const showOrders = (orders) => {
+    activeOrdersRef.current = orders;
+    setActiveOrders(orders);
+  };
+
+  // Áp dụng sự kiện delta; trả về false nếu cần đồng bộ lại
+  const handleOrderEvent = (event) => {
+    console.log("Bếp nhận sự kiện:", event);
+    const known = event.type === 'TABLE_SETTLED' || activeOrdersRef.current.some(o => o.id === event.orderId);
+    if (!known && event.type !== 'ORDER_PLACED') {
+        // Đơn quay lại Bếp nhưng màn hình chưa có danh sách món -> đồng bộ lại
+        return !KITCHEN_STATUSES.includes(event.status);
+    }
+    // Đơn hoàn tất/thanh toán/hủy -> tự rời khỏi màn hình bếp
+    showOrders(applyOrderEvent(activeOrdersRef.current, event).filter(o => KITCHEN_STATUSES.includes(o.status)));
+  };
+
   // === 3. KẾT NỐI WEBSOCKET ===
   useEffect(() => {
     if (token && apiClient) {
-      fetchActiveOrders();
-      
       if (window.StompJs && window.SockJS) {
         // [HTTPS FIX] Logic tạo URL WebSocket an toàn
         const baseUrl = getApiBaseUrl();
@@ -94,34 +117,19 @@ export default function KitchenView() {
           onConnect: () => {
             console.log('BẾP: ĐÃ KẾT NỐI WEBSOCKET!');
             
+            // Mỗi lần (kết nối lại) -> tải ảnh chụp rồi chỉ nhận sự kiện delta
             const kitchenTopic = `/topic/kitchen/${storeId}`;
-            stompClient.subscribe(kitchenTopic, (message) => {
-              const newOrder = JSON.parse(message.body);
-              console.log("Bếp nhận đơn:", newOrder);
-              
-              setActiveOrders(prevOrders => {
-                 const exists = prevOrders.find(o => o.id === newOrder.id);
-                 
-                 if (exists) {
-                     // Nếu đơn hàng chuyển sang trạng thái hoàn tất/thanh toán/hủy -> Xóa khỏi màn hình bếp
-                     if (['COMPLETED', 'PAID', 'SERVED', 'CANCELLED'].includes(newOrder.status)) {
-                         return prevOrders.filter(o => o.id !== newOrder.id);
-                     }
-                     // Nếu cập nhật (ví dụ thêm món) -> Update
-                     return prevOrders.map(o => o.id === newOrder.id ? newOrder : o);
-                 } else {
-                     // Nếu là đơn mới (PENDING/PREPARING) -> Thêm vào
-                     if (['PENDING', 'PREPARING'].includes(newOrder.status)) {
-                         return [newOrder, ...prevOrders]; // Đưa đơn mới lên đầu
-                     }
-                     return prevOrders;
-                 }
-              });
+            subscribeOrderTopic(stompClient, kitchenTopic, {
+              loadSnapshot: fetchSnapshot,
+              onSnapshot: showOrders,
+              onEvent: handleOrderEvent,
             });
           },
         });
         stompClient.activate();
         stompClientRef.current = stompClient;
+      } else {
+        fetchSnapshot().then(snapshot => showOrders(snapshot.orders)).catch(() => {});
       }
     }
     return () => { if (stompClientRef.current) stompClientRef.current.deactivate(); };
@@ -1,4 +1,5 @@
 import React, { useState, useEffect, useMemo, useRef } from 'react';
+import { applyOrderEvent, subscribeOrderTopic, subscribeSequencedTopic } from '../utils/orderEvents.js';
 
 // Giả định các thư viện (axios, sockjs, stomp) có sẵn
 let apiClient; 
@@ -53,6 +54,8 @@ export default function StaffView() {
 
   const stompClientRef = useRef(null);
   const tableSubscriptionRef = useRef(null);
+  const tableMapRef = useRef([]);
+  const liveTableMapRef = useRef(false); // true: server đẩy trạng thái bàn qua /topic/staff/{storeId}/tables
 
   // === 1. LOGIN & FETCH DATA ===
   const handleLogin = async (username, password) => {
@@ -88,6 +91,11 @@ export default function StaffView() {
     try { setTableMap((await apiClient.get('/staff/tables')).data); } catch (err) { setError("Lỗi tải sơ đồ bàn."); }
   };
   
+  // Chỉ tải lại sơ đồ bàn khi server không đẩy trạng thái bàn (chạy nhiều node / chưa kết nối WebSocket)
+  const refreshTableMapIfNotLive = () => { if (!liveTableMapRef.current) fetchTableMap(); };
+
+  useEffect(() => { tableMapRef.current = tableMap; }, [tableMap]);
+
   const fetchMenu = async () => {
     if (!apiClient) return;
     try { setMenuItems((await apiClient.get('/public/menu-items')).data); } catch (err) {}
@@ -123,10 +131,19 @@ export default function StaffView() {
                 const newCall = JSON.parse(msg.body);
                 setNotifications(prev => [newCall, ...prev]);
             });
+            // [MỚI] Sơ đồ bàn: ảnh chụp + seq, sau đó server chỉ gửi khi một bàn đổi EMPTY <-> ACTIVE
+            subscribeSequencedTopic(stompClient, `/topic/staff/${storeId}/tables`, {
+               loadSnapshot: async () => (await apiClient.get('/staff/tables/snapshot')).data,
+               onSnapshot: (snapshot) => { liveTableMapRef.current = snapshot.live; setTableMap(snapshot.tables); },
+               onEvent: (event) => {
+                  if (!tableMapRef.current.some(t => t.id === event.tableId)) return false; // Bàn mới -> đồng bộ lại
+                  setTableMap(prev => prev.map(t => (t.id === event.tableId ? { ...t, status: event.status } : t)));
+               },
+            });
+            // Dự phòng khi server không đẩy trạng thái bàn: làm mới sơ đồ khi có đơn mới / vừa thanh toán
             stompClient.subscribe(`/topic/kitchen/${storeId}`, (msg) => {
-               const order = JSON.parse(msg.body);
-               if(order.status === 'PENDING' || order.status === 'PAID') fetchTableMap(); 
-               if (selectedTable) updateLocalOrder(order);
+               const event = JSON.parse(msg.body);
+               if (event.type === 'ORDER_PLACED' || event.status === 'PAID') refreshTableMapIfNotLive();
             });
           },
         });
@@ -141,7 +158,11 @@ export default function StaffView() {
       if (selectedTable && stompClientRef.current?.connected) {
           if (tableSubscriptionRef.current) tableSubscriptionRef.current.unsubscribe();
           const tableTopic = `/topic/table/${selectedTable.id}`;
-          tableSubscriptionRef.current = stompClientRef.current.subscribe(tableTopic, (msg) => updateLocalOrder(JSON.parse(msg.body)));
+          tableSubscriptionRef.current = subscribeOrderTopic(stompClientRef.current, tableTopic, {
+              loadSnapshot: async () => (await apiClient.get(`/staff/tables/${selectedTable.id}/orders/snapshot`)).data,
+              onSnapshot: setTableOrders,
+              onEvent: (event) => setTableOrders(prev => applyOrderEvent(prev, event)),
+          });
       }
       return () => { if (tableSubscriptionRef.current) tableSubscriptionRef.current.unsubscribe(); };
   }, [selectedTable]);
@@ -158,6 +179,8 @@ export default function StaffView() {
   const handleSelectTable = async (table) => {
     if (!apiClient) return;
     setSelectedTable(table);
+    // Đã kết nối WebSocket -> đơn hàng được tải qua ảnh chụp khi đăng ký topic của bàn
+    if (stompClientRef.current?.connected) { setTableOrders([]); return; }
     setLoading(true);
     try { setTableOrders((await apiClient.get(`/staff/tables/${table.id}/orders`)).data); } 
     catch (err) { setError(`Lỗi tải đơn hàng.`); } finally { setLoading(false); }
@@ -167,7 +190,7 @@ export default function StaffView() {
     if (!apiClient) return;
     try {
       const res = await apiClient.post(`/staff/order/${orderId}/pay`);
-      updateLocalOrder(res.data); fetchTableMap(); setPaymentModalData(null);
+      updateLocalOrder(res.data); refreshTableMapIfNotLive(); setPaymentModalData(null);
     } catch (err) { alert("Lỗi thanh toán."); }
   };
 
@@ -177,7 +200,7 @@ export default function StaffView() {
          await apiClient.post(`/staff/tables/${tableId}/pay-all`);
          const res = await apiClient.get(`/staff/tables/${tableId}/orders`);
          setTableOrders(res.data);
-         fetchTableMap(); 
+         refreshTableMapIfNotLive();
          setPaymentModalData(null);
      } catch (e) { alert("Lỗi thanh toán tổng hợp."); }
   };
@@ -316,9 +339,22 @@ function AddItemModal({ order, menuItems, onClose, onSave }) {const [localCart,
 function StatusBadge({ status }) { const map = { PENDING: 'bg-yellow-200 text-yellow-800', PREPARING: 'bg-blue-200 text-blue-800', COMPLETED: 'bg-green-200 text-green-800', SERVED: 'bg-green-300 text-green-900', PAID: 'bg-gray-300 text-gray-900', CANCELLED: 'bg-red-200 text-red-800' }; return <span className={`px-2 py-1 rounded-full font-semibold text-xs ${map[status] || ''}`}>{status}</span>; }
 function TableDetailModal({ table, orders, onClose, onOpenPayment, onPrintKitchen, onCancelItem, onEditSurcharge, onUpdateQuantity, onAddItem, loading }) {
   const activeOrders = orders.filter(o => o.status !== 'PAID' && o.status !== 'CANCELLED');
-  const paidOrders = orders.filter(o => o.status === 'PAID');
+  // Lịch sử đã thanh toán tải theo trang (mới nhất trước) khi mở mục lịch sử
+  const [history, setHistory] = useState({ orders: [], nextCursor: null, loaded: false });
+  const loadHistory = async (cursor) => {
+    try {
+      const page = (await apiClient.get(`/staff/tables/${table.id}/orders/history`, { params: { status: 'PAID', limit: 10, cursor } })).data;
+      setHistory(prev => ({ orders: cursor ? [...prev.orders, ...page.orders] : page.orders, nextCursor: page.nextCursor, loaded: true }));
+    } catch (e) { alert("Lỗi tải lịch sử đơn hàng."); }
+  };
+  // Đơn vừa thanh toán (qua WebSocket) vẫn nằm trong orders -> gộp với lịch sử, không trùng
+  const paidOrders = useMemo(() => {
+    const live = orders.filter(o => o.status === 'PAID');
+    const liveIds = new Set(live.map(o => o.id));
+    return [...live, ...history.orders.filter(o => !liveIds.has(o.id))];
+  }, [orders, history.orders]);
   const grandTotal = useMemo(() => activeOrders.reduce((sum, order) => sum + order.totalPrice + (order.surcharge || 0), 0), [activeOrders]);
-  return (<div className="fixed inset-0 z-40 flex justify-end print:hidden"><div className="absolute inset-0 bg-black/50 backdrop-blur-sm" onClick={onClose}></div><div className="relative bg-white w-full max-w-md h-full shadow-2xl flex flex-col animate-slide-left"><div className="p-4 border-b bg-gray-50 flex justify-between items-center"><div><h2 className="text-xl font-bold text-gray-800">{table.name}</h2><p className="text-xs text-gray-500">Chi tiết đơn hàng</p></div><button onClick={onClose} className="w-8 h-8 flex items-center justify-center bg-gray-200 rounded-full hover:bg-gray-300">✕</button></div><div className="flex-1 overflow-y-auto p-4 bg-gray-100 space-y-4">{loading && <p className="text-center text-gray-500">Đang tải...</p>}{activeOrders.map(order => (<OrderDetailCard key={order.id} order={order} onOpenPayment={onOpenPayment} onPrintKitchen={onPrintKitchen} onCancelItem={onCancelItem} onEditSurcharge={onEditSurcharge} onUpdateQuantity={onUpdateQuantity} onAddItem={() => onAddItem(order)} />))}{paidOrders.length > 0 && (<details className="group"><summary className="list-none flex justify-between items-center cursor-pointer bg-white p-3 rounded-lg shadow-sm text-gray-500 font-semibold select-none mt-4"><span>Lịch sử đã thanh toán ({paidOrders.length})</span><span className="group-open:rotate-180 transition">▼</span></summary><div className="mt-3 space-y-3">{paidOrders.map(order => <OrderDetailCard key={order.id} order={order} />)}</div></details>)}</div><div className="p-4 border-t bg-white shadow-lg z-10"><div className="flex justify-between items-center mb-3"><span className="text-gray-600 font-medium">Tạm tính (Chưa TT):</span><span className="text-2xl font-bold text-blue-600">{formatCurrency(grandTotal)}</span></div><div className="grid grid-cols-2 gap-3"><button onClick={onClose} className="bg-gray-200 text-gray-700 py-3 rounded-xl font-bold hover:bg-gray-300">Đóng</button><button disabled={activeOrders.length === 0} onClick={() => onOpenPayment(activeOrders, 'ALL')} className="bg-green-600 text-white py-3 rounded-xl font-bold hover:bg-green-700 shadow-md disabled:bg-gray-300">Thanh toán Hết ({activeOrders.length})</button></div></div></div></div>);
+  return (<div className="fixed inset-0 z-40 flex justify-end print:hidden"><div className="absolute inset-0 bg-black/50 backdrop-blur-sm" onClick={onClose}></div><div className="relative bg-white w-full max-w-md h-full shadow-2xl flex flex-col animate-slide-left"><div className="p-4 border-b bg-gray-50 flex justify-between items-center"><div><h2 className="text-xl font-bold text-gray-800">{table.name}</h2><p className="text-xs text-gray-500">Chi tiết đơn hàng</p></div><button onClick={onClose} className="w-8 h-8 flex items-center justify-center bg-gray-200 rounded-full hover:bg-gray-300">✕</button></div><div className="flex-1 overflow-y-auto p-4 bg-gray-100 space-y-4">{loading && <p className="text-center text-gray-500">Đang tải...</p>}{activeOrders.map(order => (<OrderDetailCard key={order.id} order={order} onOpenPayment={onOpenPayment} onPrintKitchen={onPrintKitchen} onCancelItem={onCancelItem} onEditSurcharge={onEditSurcharge} onUpdateQuantity={onUpdateQuantity} onAddItem={() => onAddItem(order)} />))}<details className="group" onToggle={(e) => { if (e.currentTarget.open) loadHistory(null); }}><summary className="list-none flex justify-between items-center cursor-pointer bg-white p-3 rounded-lg shadow-sm text-gray-500 font-semibold select-none mt-4"><span>Lịch sử đã thanh toán{history.loaded && ` (${paidOrders.length}${history.nextCursor ? '+' : ''})`}</span><span className="group-open:rotate-180 transition">▼</span></summary><div className="mt-3 space-y-3">{paidOrders.map(order => <OrderDetailCard key={order.id} order={order} />)}{history.nextCursor && <button onClick={() => loadHistory(history.nextCursor)} className="w-full bg-white text-gray-600 py-2 rounded-lg text-sm font-semibold shadow-sm hover:bg-gray-50">Xem thêm</button>}</div></details></div><div className="p-4 border-t bg-white shadow-lg z-10"><div className="flex justify-between items-center mb-3"><span className="text-gray-600 font-medium">Tạm tính (Chưa TT):</span><span className="text-2xl font-bold text-blue-600">{formatCurrency(grandTotal)}</span></div><div className="grid grid-cols-2 gap-3"><button onClick={onClose} className="bg-gray-200 text-gray-700 py-3 rounded-xl font-bold hover:bg-gray-300">Đóng</button><button disabled={activeOrders.length === 0} onClick={() => onOpenPayment(activeOrders, 'ALL')} className="bg-green-600 text-white py-3 rounded-xl font-bold hover:bg-green-700 shadow-md disabled:bg-gray-300">Thanh toán Hết ({activeOrders.length})</button></div></div></div></div>);
 }
 function OrderDetailCard({ order, onOpenPayment, onPrintKitchen, onCancelItem, onEditSurcharge, onUpdateQuantity, onAddItem }) {
   const totalWithSurcharge = order.totalPrice + (order.surcharge || 0); const canEdit = order.status !== 'PAID' && order.status !== 'CANCELLED';
@@ -0,0 +1,100 @@
+// Xử lý sự kiện đơn hàng (delta) từ WebSocket
+// Server gửi OrderEvent { type, orderId, tableId, status?, totalPrice?, items?, removedItemIds?, surcharge?, surchargeNotes?, order? }
+// kèm header STOMP "seq" tăng dần theo từng topic và header "node" (node backend đã gửi).
+// Khi chạy nhiều node sau broker relay, mỗi node đếm seq riêng -> client theo dõi seq theo từng node.
+// Ngoài ORDER_PLACED, thay đổi được nhận biết theo sự có mặt của trường (server có thể gộp nhiều sự kiện thành ORDER_UPDATED).
+// TABLE_SETTLED không có orderId: áp dụng cho mọi đơn trong orderIds.
+
+// Áp dụng một sự kiện vào danh sách đơn hàng (trả về danh sách mới)
+export const applyOrderEvent = (orders, event) => {
+  if (event.type === 'TABLE_SETTLED') {
+    // Thanh toán gộp cả bàn: một sự kiện cho nhiều đơn { orderIds, settledTotal }
+    return orders.map(o => (event.orderIds.includes(o.id) ? { ...o, status: event.status } : o));
+  }
+  if (event.type === 'ORDER_PLACED') {
+    if (orders.some(o => o.id === event.orderId)) {
+      return orders.map(o => (o.id === event.orderId ? event.order : o));
+    }
+    return [event.order, ...orders]; // Đưa đơn mới lên đầu
+  }
+  return orders.map(o => (o.id === event.orderId ? mergeOrder(o, event) : o));
+};
+
+const mergeOrder = (order, event) => {
+  let items = order.items;
+  if (event.removedItemIds) {
+    items = items.filter(i => !event.removedItemIds.includes(i.id));
+  }
+  if (event.items) {
+    event.items.forEach(line => {
+      items = items.some(i => i.id === line.id)
+        ? items.map(i => (i.id === line.id ? line : i))
+        : [...items, line];
+    });
+  }
+
+  const merged = { ...order, items };
+  if (event.status) merged.status = event.status;
+  if (event.totalPrice !== undefined) merged.totalPrice = event.totalPrice;
+  if (event.surcharge !== undefined) {
+    merged.surcharge = event.surcharge ?? 0;
+    merged.surchargeNotes = event.surchargeNotes ?? null;
+  }
+  return merged;
+};
+
+// Đăng ký topic đơn hàng có kiểm tra seq:
+// - Vừa đăng ký hoặc phát hiện mất sự kiện (seq nhảy cóc) -> tải snapshot { node, seq, orders } rồi áp dụng tiếp các sự kiện mới hơn.
+// - Sự kiện đầu tiên từ một node khác node của snapshot được lấy làm mốc seq cho node đó.
+// - onEvent trả về false nếu không áp dụng được (ví dụ đơn chưa có trong danh sách) -> đồng bộ lại.
+export const subscribeOrderTopic = (stompClient, topic, { loadSnapshot, onSnapshot, onEvent }) =>
+  subscribeSequencedTopic(stompClient, topic, {
+    loadSnapshot,
+    onSnapshot: (snapshot) => onSnapshot(snapshot.orders),
+    onEvent,
+  });
+
+// [MỚI] Giống subscribeOrderTopic nhưng onSnapshot nhận nguyên snapshot { node, seq, ... }
+// (dùng cho topic không phải danh sách đơn hàng, ví dụ /topic/staff/{storeId}/tables)
+export const subscribeSequencedTopic = (stompClient, topic, { loadSnapshot, onSnapshot, onEvent }) => {
+  let lastSeq = null; // null = đang chờ snapshot; sau đó { node: seq cuối cùng }
+  let pending = [];
+  let syncing = false;
+
+  const handle = ({ node, seq, event }) => {
+    if (lastSeq === null) { pending.push({ node, seq, event }); return; }
+    const last = lastSeq[node];
+    if (last !== undefined && seq <= last) return; // Đã nằm trong snapshot
+    if (last !== undefined && seq !== last + 1) { pending.push({ node, seq, event }); resync(); return; } // Mất sự kiện
+    lastSeq[node] = seq;
+    if (onEvent(event) === false) resync();
+  };
+
+  const resync = async () => {
+    if (syncing) return;
+    syncing = true;
+    lastSeq = null;
+    let snapshot;
+    try {
+      snapshot = await loadSnapshot();
+    } catch (err) {
+      console.error('Lỗi đồng bộ đơn hàng:', err);
+      syncing = false;
+      setTimeout(resync, 3000); // Thử lại
+      return;
+    }
+    syncing = false;
+
+    onSnapshot(snapshot);
+    lastSeq = { [snapshot.node]: snapshot.seq };
+    const queued = pending;
+    pending = [];
+    queued.sort((a, b) => a.seq - b.seq).forEach(handle);
+  };
+
+  const subscription = stompClient.subscribe(topic, (message) => {
+    handle({ node: message.headers.node, seq: Number(message.headers.seq), event: JSON.parse(message.body) });
+  });
+  resync();
+  return subscription;
+};